@@ -153,7 +153,7 @@ export function createStoreApi(tokenProvider: TokenProvider, options: CreateStor
 
     /**
      * Create a node (file or folder) under parent `id`.
-     * If `file` is provided it will POST multipart/form-data with fields 'data' and 'name'.
+     * If `file` is provided it will POST multipart/form-data with fields 'name' and 'data' to the streaming route.
      * If no file is provided it will POST JSON { name } to create an empty folder.
      * Returns the created resource URI (Location header) or null.
      */
@@ -163,7 +163,7 @@ export function createStoreApi(tokenProvider: TokenProvider, options: CreateStor
         const fd = new FormData()
         fd.append('name', name)
         fd.append('data', file)
-        const res = await fetchWithAuth(tokenProvider, `/api/nodes/${encodeURIComponent(parentId)}`, { method: 'POST', body: fd }, baseUrl)
+        const res = await fetchWithAuth(tokenProvider, `/api/stream/nodes/${encodeURIComponent(parentId)}`, { method: 'POST', body: fd }, baseUrl)
         if (!res.ok) {
           const text = await res.text()
           throw new Error(`Create failed (${res.status}): ${text}`)
@@ -182,13 +182,13 @@ export function createStoreApi(tokenProvider: TokenProvider, options: CreateStor
 
     /**
      * Update (create a new version) of an existing node identified by parent id and name.
-     * Expects multipart/form-data with field 'data'.
+     * Sends multipart/form-data with field 'data' to the streaming route.
      */
     async update(parentId: string, name: string, file: File | Blob): Promise<void> {
       if (!baseUrl) throw new Error('Store base URL is not configured')
       const fd = new FormData()
       fd.append('data', file)
-      const path = `/api/nodes/${encodeURIComponent(parentId)}/${encodeURIComponent(name)}`
+      const path = `/api/stream/nodes/${encodeURIComponent(parentId)}/${encodeURIComponent(name)}`
       const res = await fetchWithAuth(tokenProvider, path, { method: 'PUT', body: fd }, baseUrl)
       if (!res.ok) {
         const text = await res.text()
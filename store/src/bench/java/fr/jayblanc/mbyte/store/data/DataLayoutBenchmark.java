@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Lookup latency (exists + size, as done by the data store for every read) against the number of blobs in the store,
+ * for the flat and the sharded layouts.
+ * <p>
+ * Run with: ./mvnw -Pbenchmark test -Dbenchmark=DataLayoutBenchmark
+ *
+ * @author Jerome Blanchard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DataLayoutBenchmark {
+
+    @Param({"1000", "10000", "100000", "500000"})
+    int blobs;
+
+    @Param({"FLAT", "SHARDED"})
+    DataLayout layout;
+
+    private Path base;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        base = Files.createTempDirectory("mbyte-bench-layout");
+        keys = new String[blobs];
+        for (int i = 0; i < blobs; i++) {
+            keys[i] = DigestUtils.sha256Hex(Integer.toString(i));
+            Path file = layout.resolve(base, keys[i]);
+            Files.createDirectories(file.getParent());
+            Files.createFile(file);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException {
+        try (Stream<Path> paths = Files.walk(base)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public long lookup() throws IOException {
+        Path file = layout.resolve(base, keys[ThreadLocalRandom.current().nextInt(blobs)]);
+        if (!Files.exists(file)) {
+            throw new IllegalStateException("missing blob " + file);
+        }
+        return Files.size(file);
+    }
+
+    @Benchmark
+    public boolean miss() {
+        return Files.exists(layout.resolve(base, DigestUtils.sha256Hex("missing-" + ThreadLocalRandom.current().nextInt())));
+    }
+
+}
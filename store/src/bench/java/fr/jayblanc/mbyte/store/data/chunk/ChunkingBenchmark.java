@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.chunk;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deduplication ratio and throughput of content defined chunking against whole file and fixed size chunking, on
+ * successive versions of a document:
+ * <ul>
+ *     <li>EDIT: a 4 KiB page is rewritten in place,</li>
+ *     <li>INSERT: a sentence is inserted, shifting everything after it,</li>
+ *     <li>APPEND: log lines are appended at the end.</li>
+ * </ul>
+ * The logical and stored counters are bytes per second, their ratio is the deduplication ratio.
+ * <p>
+ * Run with: ./mvnw -Pbenchmark test -Dbenchmark=ChunkingBenchmark
+ *
+ * @author Jerome Blanchard
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkingBenchmark {
+
+    private static final String[] WORDS = ("lorem ipsum dolor sit amet consectetur adipiscing elit sed do eiusmod tempor incididunt ut labore "
+            + "et dolore magna aliqua store node blob chunk manifest folder content hash index").split(" ");
+
+    @Param({"16384", "65536"})
+    int average;
+
+    @Param({"EDIT", "INSERT", "APPEND"})
+    String workload;
+
+    @Param({"8388608"})
+    int size;
+
+    private Chunker chunker;
+    private Random random;
+    private byte[] version;
+    private Set<String> stored;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Bytes {
+        public long logical;
+        public long stored;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            logical = 0;
+            stored = 0;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        chunker = new Chunker(average);
+        random = new Random(42);
+        version = text(size);
+        stored = new HashSet<>();
+    }
+
+    @Setup(Level.Invocation)
+    public void mutate() {
+        switch (workload) {
+            case "EDIT" -> {
+                byte[] page = text(4096);
+                System.arraycopy(page, 0, version, random.nextInt(version.length - page.length), page.length);
+            }
+            case "INSERT" -> {
+                byte[] sentence = text(64 + random.nextInt(64));
+                int at = random.nextInt(version.length);
+                byte[] next = new byte[version.length + sentence.length];
+                System.arraycopy(version, 0, next, 0, at);
+                System.arraycopy(sentence, 0, next, at, sentence.length);
+                System.arraycopy(version, at, next, at + sentence.length, version.length - at);
+                version = next;
+            }
+            default -> {
+                byte[] lines = text(16384);
+                byte[] next = new byte[version.length + lines.length];
+                System.arraycopy(version, 0, next, 0, version.length);
+                System.arraycopy(lines, 0, next, version.length, lines.length);
+                version = next;
+            }
+        }
+    }
+
+    @Benchmark
+    public int contentDefined(Bytes bytes) throws IOException {
+        Chunker.Reader reader = chunker.reader(new ByteArrayInputStream(version));
+        int chunks = 0;
+        byte[] chunk;
+        while ((chunk = reader.next()) != null) {
+            if (stored.add(DigestUtils.sha256Hex(chunk))) {
+                bytes.stored += chunk.length;
+            }
+            chunks++;
+        }
+        bytes.logical += version.length;
+        return chunks;
+    }
+
+    @Benchmark
+    public int fixedSize(Bytes bytes) {
+        int chunks = 0;
+        for (int offset = 0; offset < version.length; offset += average) {
+            int length = Math.min(average, version.length - offset);
+            if (stored.add(DigestUtils.sha256Hex(new ByteArrayInputStream(version, offset, length).readAllBytes()))) {
+                bytes.stored += length;
+            }
+            chunks++;
+        }
+        bytes.logical += version.length;
+        return chunks;
+    }
+
+    @Benchmark
+    public String wholeFile(Bytes bytes) {
+        String key = DigestUtils.sha256Hex(version);
+        if (stored.add(key)) {
+            bytes.stored += version.length;
+        }
+        bytes.logical += version.length;
+        return key;
+    }
+
+    private byte[] text(int length) {
+        StringBuilder builder = new StringBuilder(length + 16);
+        while (builder.length() < length) {
+            builder.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(10) == 0 ? ".\n" : " ");
+        }
+        return builder.substring(0, length).getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.hash;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashing throughput per algorithm and per update size (the buffer size the ingest path hands to the hasher).
+ * The bytes counter is in bytes per second.
+ * <p>
+ * Run with: ./mvnw -Pbenchmark test -Dbenchmark=HashBenchmark
+ * <br>
+ * Compare with -jvmArgs -XX:-UseSHA256Intrinsics to see what the SHA extensions of the CPU bring.
+ *
+ * @author Jerome Blanchard
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashBenchmark {
+
+    private static final int CONTENT_SIZE = 16 * 1024 * 1024;
+
+    @Param({"SHA-256", "BLAKE3", "XXH64"})
+    String algorithm;
+
+    @Param({"4096", "65536", "1048576"})
+    int bufferSize;
+
+    private HashAlgorithm hash;
+    private byte[] content;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Bytes {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        hash = HashAlgorithm.forName(algorithm);
+        content = new byte[CONTENT_SIZE];
+        new Random(42).nextBytes(content);
+    }
+
+    @Benchmark
+    public String hash(Bytes counter) {
+        Hasher hasher = hash.create();
+        for (int offset = 0; offset < content.length; offset += bufferSize) {
+            hasher.update(content, offset, Math.min(bufferSize, content.length - offset));
+        }
+        counter.bytes += content.length;
+        return hasher.digest();
+    }
+
+}
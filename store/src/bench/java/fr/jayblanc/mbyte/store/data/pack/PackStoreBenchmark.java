@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.pack;
+
+import fr.jayblanc.mbyte.store.data.DataLayout;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Ingest and random read throughput of small blobs, stored one file per blob in the sharded layout (as the data store
+ * does without packs) or appended to pack segments.
+ * <p>
+ * Run with: ./mvnw -Pbenchmark test -Dbenchmark=PackStoreBenchmark
+ *
+ * @author Jerome Blanchard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PackStoreBenchmark {
+
+    private static final int BLOBS = 20000;
+
+    public enum Engine { FILES, PACK }
+
+    @Param({"FILES", "PACK"})
+    Engine engine;
+
+    @Param({"1024", "8192"})
+    int blobSize;
+
+    private Path base;
+    private Path tmp;
+    private PackStore packs;
+    private String[] keys;
+    private byte[] content;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        base = Files.createTempDirectory("mbyte-bench-pack");
+        tmp = Files.createDirectories(base.resolve("tmp"));
+        packs = new PackStore(base.resolve("packs"), 64L * 1024 * 1024);
+        content = new byte[blobSize];
+        ThreadLocalRandom.current().nextBytes(content);
+        keys = new String[BLOBS];
+        for (int i = 0; i < BLOBS; i++) {
+            keys[i] = DigestUtils.sha256Hex(Integer.toString(i));
+            this.store(keys[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException {
+        packs.close();
+        try (Stream<Path> paths = Files.walk(base)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void ingest() throws IOException {
+        this.store(DigestUtils.sha256Hex(UUID.randomUUID().toString()));
+    }
+
+    @Benchmark
+    public byte[] read() throws IOException {
+        String key = keys[ThreadLocalRandom.current().nextInt(BLOBS)];
+        if (engine == Engine.PACK) {
+            return packs.get(key).orElseThrow();
+        }
+        return Files.readAllBytes(DataLayout.SHARDED.resolve(base, key));
+    }
+
+    private void store(String key) throws IOException {
+        if (engine == Engine.PACK) {
+            packs.put(key, content);
+        } else {
+            // same steps as the data store: temporary file, then atomic move to the sharded location
+            Path file = DataLayout.SHARDED.resolve(base, key);
+            Files.createDirectories(file.getParent());
+            Path tmpfile = tmp.resolve(UUID.randomUUID().toString());
+            Files.write(tmpfile, content);
+            Files.move(tmpfile, file, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.s3;
+
+import fr.jayblanc.mbyte.store.data.DataLayout;
+import fr.jayblanc.mbyte.store.data.FileRangeInputStream;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Upload, full read and ranged read throughput of blobs kept on the local file system (sharded layout) or in an S3
+ * compatible bucket. The S3 engine needs a live server, for instance a local MinIO with an existing bucket:
+ * <p>
+ * Run with: S3_ENDPOINT=http://localhost:9000 S3_BUCKET=mbyte ./mvnw -Pbenchmark test -Dbenchmark=S3BackendBenchmark
+ *
+ * @author Jerome Blanchard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class S3BackendBenchmark {
+
+    private static final int BLOBS = 50;
+    private static final int RANGE = 64 * 1024;
+
+    public enum Engine { FILES, S3 }
+
+    @Param({"FILES", "S3"})
+    Engine engine;
+
+    @Param({"65536", "8388608"})
+    int blobSize;
+
+    private Path base;
+    private Path source;
+    private S3Client client;
+    private String prefix;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        base = Files.createTempDirectory("mbyte-bench-s3");
+        byte[] content = new byte[blobSize];
+        ThreadLocalRandom.current().nextBytes(content);
+        source = Files.write(base.resolve("source"), content);
+        if (engine == Engine.S3) {
+            String endpoint = Optional.ofNullable(System.getenv("S3_ENDPOINT"))
+                    .orElseThrow(() -> new IllegalStateException("S3_ENDPOINT must point to an S3 compatible server"));
+            client = new S3Client(URI.create(endpoint), env("S3_REGION", "us-east-1"), env("S3_BUCKET", "mbyte"),
+                    env("S3_ACCESS_KEY", "minioadmin"), env("S3_SECRET_KEY", "minioadmin"));
+            prefix = "bench-" + UUID.randomUUID() + "/";
+        }
+        keys = new String[BLOBS];
+        for (int i = 0; i < BLOBS; i++) {
+            keys[i] = DigestUtils.sha256Hex(Integer.toString(i));
+            this.store(keys[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException {
+        if (client != null) {
+            for (String name : client.list(prefix).toList()) {
+                client.delete(name);
+            }
+        }
+        try (Stream<Path> paths = Files.walk(base)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void upload() throws IOException {
+        this.store(DigestUtils.sha256Hex(UUID.randomUUID().toString()));
+    }
+
+    @Benchmark
+    public long read() throws IOException {
+        try (InputStream is = this.open(keys[ThreadLocalRandom.current().nextInt(BLOBS)], 0, -1)) {
+            return is.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    @Benchmark
+    public long range() throws IOException {
+        long offset = ThreadLocalRandom.current().nextLong(Math.max(1, blobSize - RANGE));
+        try (InputStream is = this.open(keys[ThreadLocalRandom.current().nextInt(BLOBS)], offset, RANGE)) {
+            return is.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    private void store(String key) throws IOException {
+        if (engine == Engine.S3) {
+            client.put(this.name(key), source, blobSize);
+        } else {
+            // same steps as the data store: staged copy, then atomic move to the sharded location
+            Path file = DataLayout.SHARDED.resolve(base, key);
+            Files.createDirectories(file.getParent());
+            Path tmpfile = base.resolve(UUID.randomUUID().toString());
+            Files.copy(source, tmpfile);
+            Files.move(tmpfile, file, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private InputStream open(String key, long offset, long length) throws IOException {
+        if (engine == Engine.S3) {
+            return client.get(this.name(key), offset, length);
+        }
+        return new FileRangeInputStream(DataLayout.SHARDED.resolve(base, key), offset, length < 0 ? Long.MAX_VALUE : length);
+    }
+
+    private String name(String key) {
+        return prefix + key.substring(0, 2) + "/" + key.substring(2, 4) + "/" + key;
+    }
+
+    private static String env(String name, String fallback) {
+        return Optional.ofNullable(System.getenv(name)).orElse(fallback);
+    }
+
+}
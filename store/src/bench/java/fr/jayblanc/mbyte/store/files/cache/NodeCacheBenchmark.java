@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.files.cache;
+
+import fr.jayblanc.mbyte.store.files.Listing;
+import fr.jayblanc.mbyte.store.files.entity.Node;
+import fr.jayblanc.mbyte.store.metrics.MetricsServiceBean;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Latency of a folder browse as done by the GUI (the folder, a page of its children and its path) served by the node
+ * cache, against the same browse going to the database, simulated by a fixed round trip per query. Without the cache a
+ * browse costs three queries (node, page, ancestors); writes invalidate a share of the folders between browses.
+ * <p>
+ * Run with: ./mvnw -Pbenchmark test -Dbenchmark=NodeCacheBenchmark
+ *
+ * @author Jerome Blanchard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NodeCacheBenchmark {
+
+    private static final int FOLDERS = 2000;
+    private static final int DEPTH = 6;
+    private static final int PAGE = 20;
+    private static final String PAGE_KEY = "NAME.ASC/null/0/" + PAGE;
+
+    @Param({"0", "250"})
+    long roundTripMicros;
+
+    @Param({"0", "5"})
+    int writePercent;
+
+    private NodeCache cache;
+    private Node[] folders;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        cache = new NodeCache(10000, Duration.ofMinutes(10), new MetricsServiceBean());
+        folders = new Node[FOLDERS];
+        for (int i = 0; i < FOLDERS; i++) {
+            String ancestry = "/root";
+            for (int d = 1; d < DEPTH; d++) {
+                ancestry += "/a" + (i % (d * 10));
+            }
+            Node folder = new Node(Node.Type.TREE, "a" + (i % 50), "f" + i, "folder " + i);
+            folder.setAncestry(ancestry + "/f" + i);
+            folders[i] = folder;
+        }
+    }
+
+    @Benchmark
+    public int browseUncached() {
+        Node folder = folders[ThreadLocalRandom.current().nextInt(FOLDERS)];
+        return this.load(folder).getName().length() + this.loadPage(folder).nodes().size() + this.loadPath(folder).size();
+    }
+
+    @Benchmark
+    public int browseCached() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Node folder = folders[random.nextInt(FOLDERS)];
+        if (random.nextInt(100) < writePercent) {
+            cache.invalidate(folder.getId());
+        }
+        long stamp = cache.stamp();
+        Node node = cache.get(folder.getId()).orElseGet(() -> {
+            Node loaded = this.load(folder);
+            cache.put(loaded, stamp);
+            return loaded;
+        });
+        Listing page = cache.getListing(node.getId(), PAGE_KEY).orElseGet(() -> {
+            Listing loaded = this.loadPage(node);
+            cache.putListing(node.getId(), PAGE_KEY, loaded, stamp);
+            return loaded;
+        });
+        List<Node> path = new ArrayList<>();
+        boolean missing = false;
+        for (String id : node.getAncestry().substring(1).split("/")) {
+            Optional<Node> ancestor = cache.get(id);
+            missing |= ancestor.isEmpty();
+            ancestor.ifPresent(path::add);
+        }
+        if (missing) {
+            path = this.loadPath(node);
+            path.forEach(ancestor -> cache.put(ancestor, stamp));
+        }
+        return node.getName().length() + page.nodes().size() + path.size();
+    }
+
+    //INTERNAL OPERATIONS
+
+    private Node load(Node folder) {
+        this.roundTrip();
+        Node node = new Node(Node.Type.TREE, folder.getParent(), folder.getId(), folder.getName());
+        node.setAncestry(folder.getAncestry());
+        return node;
+    }
+
+    private Listing loadPage(Node folder) {
+        this.roundTrip();
+        List<Node> nodes = new ArrayList<>(PAGE);
+        for (int i = 0; i < PAGE; i++) {
+            nodes.add(new Node(Node.Type.BLOB, folder.getId(), folder.getId() + "-" + i, "file " + i));
+        }
+        return new Listing(nodes, PAGE, null);
+    }
+
+    private List<Node> loadPath(Node folder) {
+        this.roundTrip();
+        List<Node> path = new ArrayList<>();
+        String ancestry = "";
+        for (String id : folder.getAncestry().substring(1).split("/")) {
+            ancestry += "/" + id;
+            Node ancestor = new Node(Node.Type.TREE, "", id, id);
+            ancestor.setAncestry(ancestry);
+            path.add(ancestor);
+        }
+        return path;
+    }
+
+    private void roundTrip() {
+        if (roundTripMicros > 0) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(roundTripMicros));
+        }
+    }
+
+}
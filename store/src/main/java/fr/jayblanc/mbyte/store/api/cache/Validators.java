@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.api.cache;
+
+import fr.jayblanc.mbyte.store.files.entity.Node;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.ext.RuntimeDelegate;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * HTTP validators (RFC 9110 section 8.8) of the node representations, used to answer conditional requests with 304.
+ * <p>
+ * Content is addressed by the hash of its bytes which is used as is as a strong entity tag. Metadata relies on the
+ * optimistic lock version of the node, which is incremented on every update, including the size and modification
+ * updates of a folder when a child is added or removed. A listing tag covers the folder and the id and version of every
+ * child of the page so that a change of a child attribute (size of a sub folder, mimetype, ...) is also seen.
+ *
+ * @author Jerome Blanchard
+ */
+public class Validators {
+
+    public static final String HASH_PARAM = "hash";
+    public static final String IMMUTABLE = "private, max-age=31536000, immutable";
+    public static final String REVALIDATE = "private, no-cache";
+    public static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.ENGLISH).withZone(ZoneOffset.UTC);
+
+    private Validators() {
+    }
+
+    public static EntityTag content(Node node) {
+        return new EntityTag(node.getContent());
+    }
+
+    public static EntityTag metadata(Node node) {
+        return new EntityTag(node.getId() + "." + node.getVersion());
+    }
+
+    public static EntityTag listing(Node folder, List<Node> children) {
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        digest.update((folder.getId() + "." + folder.getVersion()).getBytes(StandardCharsets.UTF_8));
+        for (Node child : children) {
+            digest.update(("/" + child.getId() + "." + child.getVersion()).getBytes(StandardCharsets.UTF_8));
+        }
+        return new EntityTag(folder.getId() + "." + folder.getVersion() + "." + Hex.encodeHexString(digest.digest()).substring(0, 16));
+    }
+
+    /**
+     * Header value of an entity tag, as the JAX-RS runtime writes it.
+     */
+    public static String format(EntityTag tag) {
+        return RuntimeDelegate.getInstance().createHeaderDelegate(EntityTag.class).toString(tag);
+    }
+
+    /**
+     * HTTP dates have a one second precision, the modification date is truncated so that If-Modified-Since with the
+     * exact Last-Modified value sent matches.
+     */
+    public static Date lastModified(Node node) {
+        return new Date(node.getModification() - Math.floorMod(node.getModification(), 1000L));
+    }
+
+    /**
+     * Evaluates If-None-Match, or If-Modified-Since when there is none (RFC 9110 section 13.2.2), for a GET served
+     * outside JAX-RS, where Request.evaluatePreconditions is not available.
+     *
+     * @return true when the cached representation of the client is still current and 304 must be answered
+     */
+    public static boolean isNotModified(String ifNoneMatch, String ifModifiedSince, EntityTag tag, Date lastModified) {
+        if (ifNoneMatch != null && !ifNoneMatch.isBlank()) {
+            String current = format(tag);
+            for (String value : ifNoneMatch.split(",")) {
+                value = value.trim();
+                // weak comparison
+                if (value.startsWith("W/")) {
+                    value = value.substring(2);
+                }
+                if (value.equals("*") || value.equals(current)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (ifModifiedSince != null && !ifModifiedSince.isBlank()) {
+            try {
+                return !lastModified.toInstant().isAfter(Instant.from(HTTP_DATE.parse(ifModifiedSince.trim())));
+            } catch (DateTimeParseException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A range request is only honored when the If-Range validator (strong entity tag or date) still matches the content.
+     */
+    public static boolean matchesIfRange(String ifRange, EntityTag tag, Date lastModified) {
+        if (ifRange == null || ifRange.isBlank()) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(format(tag));
+        }
+        if (ifRange.startsWith("W/")) {
+            return false;
+        }
+        try {
+            return Instant.from(HTTP_DATE.parse(ifRange.trim())).equals(lastModified.toInstant());
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * A content URL is hash addressed when it carries the hash of the current content: the bytes behind it can never
+     * change, so it can be cached forever.
+     */
+    public static boolean isHashAddressed(Node node, String hash) {
+        return hash != null && node.getContent() != null && hash.equals(node.getContent());
+    }
+
+}
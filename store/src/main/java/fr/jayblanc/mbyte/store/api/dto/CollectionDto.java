@@ -25,6 +25,7 @@ public class CollectionDto<T> {
     private int limit;
     private int offset;
     private long size;
+    private String next;
 
     public CollectionDto() {
         values = new ArrayList<>();
@@ -66,5 +67,13 @@ public class CollectionDto<T> {
     public void setSize(long size) {
         this.size = size;
     }
+
+    public String getNext() {
+        return next;
+    }
+
+    public void setNext(String next) {
+        this.next = next;
+    }
 }
 
@@ -16,6 +16,7 @@
  */
 package fr.jayblanc.mbyte.store.api.dto;
 
+import fr.jayblanc.mbyte.store.limit.RateLimitService;
 import fr.jayblanc.mbyte.store.metrics.MetricsService;
 
 import java.util.HashMap;
@@ -32,10 +33,12 @@ public class Status {
     private long availableMemory;
     private long maxMemory;
     private Map<String, Long> latestMetrics;
+    private Map<String, Long> limits;
     private Map<String, Long> metrics;
 
     public Status() {
         latestMetrics = new HashMap<>();
+        limits = new HashMap<>();
         metrics = new HashMap<>();
     }
 
@@ -88,6 +91,14 @@ public class Status {
         this.latestMetrics = latestMetrics;
     }
 
+    public Map<String, Long> getLimits() {
+        return limits;
+    }
+
+    public void setLimits(Map<String, Long> limits) {
+        this.limits = limits;
+    }
+
     public Map<String, Long> getMetrics() {
         return metrics;
     }
@@ -110,4 +121,9 @@ public class Status {
         this.latestMetrics = service.listLatestMetrics();
         return this;
     }
+
+    public Status withLimits(RateLimitService service) {
+        this.limits = service.listMetrics();
+        return this;
+    }
 }
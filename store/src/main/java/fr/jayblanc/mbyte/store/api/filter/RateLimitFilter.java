@@ -16,22 +16,28 @@
  */
 package fr.jayblanc.mbyte.store.api.filter;
 
-import fr.jayblanc.mbyte.store.metrics.MetricsService;
+import fr.jayblanc.mbyte.store.auth.AuthenticationService;
+import fr.jayblanc.mbyte.store.limit.RateLimitService;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.container.ContainerRequestContext;
 import jakarta.ws.rs.container.ContainerRequestFilter;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.ext.Provider;
 
+import java.util.concurrent.TimeUnit;
+
 @Provider
-public class MetricsFilter implements ContainerRequestFilter {
+public class RateLimitFilter implements ContainerRequestFilter {
 
-    @Inject MetricsService metrics;
+    @Inject AuthenticationService auth;
+    @Inject RateLimitService limits;
 
     @Override
     public void filter(ContainerRequestContext ctx) {
-        if (metrics.getLatestMetric("upload") > 20) {
-            ctx.abortWith(Response.status(Response.Status.TOO_MANY_REQUESTS).build());
+        long wait = limits.tryAcquire(auth.getConnectedIdentifier(), RateLimitService.Route.of(ctx.getMethod()));
+        if (wait > 0) {
+            ctx.abortWith(Response.status(Response.Status.TOO_MANY_REQUESTS)
+                    .header("Retry-After", Math.max(1L, TimeUnit.NANOSECONDS.toSeconds(wait + 999_999_999L))).build());
         }
     }
 
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.api.range;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A satisfiable byte range of a representation, as requested with an HTTP Range header (RFC 9110 section 14).
+ *
+ * @author Jerome Blanchard
+ */
+public class ByteRange {
+
+    public static final String UNIT = "bytes";
+    public static final int MAX_RANGES = 32;
+
+    private final long first;
+    private final long last;
+
+    public ByteRange(long first, long last) {
+        this.first = first;
+        this.last = last;
+    }
+
+    public long getFirst() {
+        return first;
+    }
+
+    public long getLast() {
+        return last;
+    }
+
+    public long getLength() {
+        return last - first + 1;
+    }
+
+    public String toContentRange(long size) {
+        return UNIT + " " + first + "-" + last + "/" + size;
+    }
+
+    public static String toUnsatisfiedContentRange(long size) {
+        return UNIT + " */" + size;
+    }
+
+    /**
+     * Parse a Range header value against a representation of the given size.
+     * <p>
+     * Unsatisfiable specs are dropped, overlapping or adjacent ranges are coalesced and sorted.
+     *
+     * @return the satisfiable ranges (empty when none is satisfiable) or null when the header is absent, malformed,
+     * uses another unit or asks for too many ranges, in which case the whole representation must be served.
+     */
+    public static List<ByteRange> parse(String header, long size) {
+        if (header == null || !header.startsWith(UNIT + "=")) {
+            return null;
+        }
+        String[] specs = header.substring(UNIT.length() + 1).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<ByteRange> ranges = new ArrayList<>();
+        for (String spec : specs) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            try {
+                String start = spec.substring(0, dash).trim();
+                String end = spec.substring(dash + 1).trim();
+                if (start.isEmpty()) {
+                    // suffix range: last N bytes
+                    long suffix = Long.parseLong(end);
+                    if (suffix > 0 && size > 0) {
+                        ranges.add(new ByteRange(Math.max(0, size - suffix), size - 1));
+                    }
+                } else {
+                    long first = Long.parseLong(start);
+                    long last = end.isEmpty() ? size - 1 : Math.min(Long.parseLong(end), size - 1);
+                    if (!end.isEmpty() && Long.parseLong(end) < first) {
+                        return null;
+                    }
+                    if (first < size) {
+                        ranges.add(new ByteRange(first, last));
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return coalesce(ranges);
+    }
+
+    private static List<ByteRange> coalesce(List<ByteRange> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+        ranges.sort(Comparator.comparingLong(ByteRange::getFirst));
+        List<ByteRange> coalesced = new ArrayList<>();
+        ByteRange current = ranges.get(0);
+        for (ByteRange next : ranges.subList(1, ranges.size())) {
+            if (next.first <= current.last + 1) {
+                current = new ByteRange(current.first, Math.max(current.last, next.last));
+            } else {
+                coalesced.add(current);
+                current = next;
+            }
+        }
+        coalesced.add(current);
+        return coalesced;
+    }
+
+    @Override
+    public String toString() {
+        return first + "-" + last;
+    }
+}
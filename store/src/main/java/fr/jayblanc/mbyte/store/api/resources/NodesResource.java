@@ -16,31 +16,46 @@
  */
 package fr.jayblanc.mbyte.store.api.resources;
 
+import fr.jayblanc.mbyte.store.api.cache.Validators;
 import fr.jayblanc.mbyte.store.api.dto.CollectionDto;
 import fr.jayblanc.mbyte.store.api.dto.NodeCreateDto;
 import fr.jayblanc.mbyte.store.api.dto.NodeDto;
 import fr.jayblanc.mbyte.store.api.filter.OnlyOwner;
+import fr.jayblanc.mbyte.store.api.range.ByteRange;
 import fr.jayblanc.mbyte.store.auth.AuthenticationService;
 import fr.jayblanc.mbyte.store.data.exception.DataNotFoundException;
 import fr.jayblanc.mbyte.store.data.exception.DataStoreException;
 import fr.jayblanc.mbyte.store.files.FileService;
+import fr.jayblanc.mbyte.store.files.ImportSummary;
+import fr.jayblanc.mbyte.store.files.Listing;
+import fr.jayblanc.mbyte.store.files.ListingOrder;
 import fr.jayblanc.mbyte.store.files.entity.Node;
 import fr.jayblanc.mbyte.store.files.exceptions.*;
+import fr.jayblanc.mbyte.store.limit.RateLimitService;
 import fr.jayblanc.mbyte.store.notification.NotificationServiceException;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
 import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import jakarta.ws.rs.core.UriInfo;
 import org.jboss.resteasy.annotations.providers.multipart.MultipartForm;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -49,8 +64,11 @@ import java.util.logging.Logger;
 public class NodesResource {
 
     private static final Logger LOGGER = Logger.getLogger(NodesResource.class.getName());
+    private static final int MAX_LIMIT = 1000;
 
     @Inject FileService service;
+    @Inject AuthenticationService auth;
+    @Inject RateLimitService limits;
 
     @GET
     @Transactional(Transactional.TxType.REQUIRED)
@@ -66,9 +84,16 @@ public class NodesResource {
     @Path("{id}")
     @Transactional(Transactional.TxType.REQUIRED)
     @Produces({MediaType.APPLICATION_JSON})
-    public Node get(@PathParam("id") final String id) throws NodeNotFoundException {
+    public Response get(@PathParam("id") final String id, @Context Request request) throws NodeNotFoundException {
         LOGGER.log(Level.INFO, "GET /api/nodes/{0}", id);
-        return service.get(id);
+        Node node = service.get(id);
+        EntityTag tag = Validators.metadata(node);
+        Date modified = Validators.lastModified(node);
+        Response.ResponseBuilder builder = request.evaluatePreconditions(modified, tag);
+        if (builder == null) {
+            builder = Response.ok(node);
+        }
+        return builder.tag(tag).lastModified(modified).header("Cache-Control", Validators.REVALIDATE).build();
     }
 
     @GET
@@ -80,48 +105,137 @@ public class NodesResource {
         return service.path(id);
     }
 
+    /**
+     * Suspended so that a blob sent by Vert.x (sendfile) is never followed by a response of RESTEasy: the request is only
+     * resumed once Vert.x has ended the response, and RESTEasy writes nothing for an ended response.
+     */
     @GET
     @Path("{id}/content")
     @Transactional(Transactional.TxType.REQUIRED)
     @Produces(MediaType.WILDCARD)
-    public Response content(@PathParam("id") final String id, @QueryParam("download") @DefaultValue("false") final boolean download) throws NodeNotFoundException, NodeTypeException,
+    public void content(@PathParam("id") final String id, @QueryParam("download") @DefaultValue("false") final boolean download,
+                        @QueryParam(Validators.HASH_PARAM) final String hash, @HeaderParam("Range") String range, @HeaderParam("If-Range") String ifRange,
+                        @Context Request request, @Context RoutingContext ctx, @Suspended AsyncResponse async) throws NodeNotFoundException, NodeTypeException,
             DataNotFoundException, DataStoreException {
         LOGGER.log(Level.INFO, "GET /api/nodes/{0}/content", id);
         Node node = service.get(id);
         if (node.getType().equals(Node.Type.BLOB)) {
-            return Response.ok(service.getContent(id))
-                    .header("Content-Type", node.getMimetype())
-                    .header("Content-Length", node.getSize())
-                    .header("Content-Disposition", ((download) ? "attachment; " : "") + "filename=" + node.getName()).build();
+            Map<String, String> headers = this.contentHeaders(node, download, hash);
+            Response.ResponseBuilder notModified = request.evaluatePreconditions(Validators.lastModified(node), Validators.content(node));
+            if (notModified != null) {
+                async.resume(notModified.tag(Validators.content(node)).header("Last-Modified", headers.get("Last-Modified"))
+                        .header("Cache-Control", headers.get("Cache-Control")).build());
+                return;
+            }
+            List<ByteRange> ranges = Validators.matchesIfRange(ifRange, Validators.content(node), Validators.lastModified(node)) ? ByteRange.parse(range, node.getSize()) : null;
+            if (ranges != null && ranges.isEmpty()) {
+                async.resume(Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header("Content-Range", ByteRange.toUnsatisfiedContentRange(node.getSize())).build());
+                return;
+            }
+            if (ranges != null && ranges.size() > 1) {
+                async.resume(this.multipartContent(node, ranges, headers));
+                return;
+            }
+            ByteRange single = (ranges != null) ? ranges.get(0) : null;
+            // zero copy transfers cannot be shaped
+            Optional<java.nio.file.Path> file = limits.isShaped(RateLimitService.Direction.DOWNLOAD) ? Optional.empty() : service.getContentFile(id);
+            if (file.isPresent()) {
+                this.sendFile(ctx, async, file.get(), headers, single, node.getSize());
+                return;
+            }
+            Response.ResponseBuilder builder;
+            if (single != null) {
+                builder = Response.status(Response.Status.PARTIAL_CONTENT).entity(this.shape(service.getContent(id, single.getFirst(), single.getLength())))
+                        .header("Content-Length", single.getLength())
+                        .header("Content-Range", single.toContentRange(node.getSize()));
+            } else {
+                builder = Response.ok(this.shape(service.getContent(id))).header("Content-Length", node.getSize());
+            }
+            headers.forEach(builder::header);
+            async.resume(builder.build());
         } else {
             throw new NodeTypeException("Node is not a file");
         }
     }
 
+    @GET
+    @Path("{id}/archive")
+    @Transactional(Transactional.TxType.REQUIRED)
+    @Produces("application/zip")
+    public Response archive(@PathParam("id") final String id) throws NodeNotFoundException, NodeTypeException {
+        LOGGER.log(Level.INFO, "GET /api/nodes/{0}/archive", id);
+        Node node = service.get(id);
+        if (!node.getType().equals(Node.Type.TREE)) {
+            throw new NodeTypeException("Node is not a directory");
+        }
+        // the tree is walked while the archive is written, after the transaction of this method is over
+        StreamingOutput body = output -> {
+            try {
+                service.archive(node.getId(), output);
+            } catch (NodeNotFoundException | NodeTypeException e) {
+                throw new IOException("node removed while being archived: " + node.getId(), e);
+            }
+        };
+        String name = node.getName().isEmpty() ? "archive" : node.getName();
+        return Response.ok(body, "application/zip").header("Content-Disposition", "attachment; filename=" + name + ".zip").build();
+    }
+
+    /**
+     * Expands a zip or tar (optionally gzipped) stream in a folder. Not transactional: the content is stored while the
+     * stream is read and the nodes are created afterwards, in a transaction of their own.
+     */
+    @POST
+    @Path("{id}/archive")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes({"application/zip", "application/x-tar", "application/gzip", "application/x-gzip", MediaType.APPLICATION_OCTET_STREAM})
+    public ImportSummary expand(@PathParam("id") final String id, InputStream archive) throws NodeNotFoundException, NodeTypeException,
+            NodeAlreadyExistsException, ArchiveFormatException, DataStoreException, NodePersistenceException {
+        LOGGER.log(Level.INFO, "POST /api/nodes/{0}/archive", id);
+        return service.expand(id, limits.shape(auth.getConnectedIdentifier(), RateLimitService.Direction.UPLOAD, archive));
+    }
+
     @GET
     @Path("{id}/children")
     @Transactional(Transactional.TxType.REQUIRED)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response children(@PathParam("id") final String id, @QueryParam("limit") @DefaultValue("20") int limit, @QueryParam("offset") @DefaultValue("0") int offset) throws NodeNotFoundException,
-            NodeTypeException {
+    public Response children(@PathParam("id") final String id, @QueryParam("limit") @DefaultValue("20") int limit, @QueryParam("offset") @DefaultValue("0") int offset,
+                             @QueryParam("cursor") String cursor, @QueryParam("sort") @DefaultValue("name") String sort, @QueryParam("order") @DefaultValue("asc") String order,
+                             @Context Request request) throws NodeNotFoundException, NodeTypeException, ListingCursorException {
         LOGGER.log(Level.INFO, "GET /api/nodes/{0}/children", id);
         Node node = service.get(id);
         if (node.getType().equals(Node.Type.TREE)) {
-            CollectionDto<NodeDto> dto = new CollectionDto<>(limit, offset);
-            List<Node> nodes = service.list(node.getId());
-            dto.setValues(nodes.stream().skip(offset).limit(limit).map(NodeDto::fromNode).toList());
-            dto.setSize(nodes.size());
-            dto.setLimit(limit);
-            dto.setOffset(offset);
-            return Response.ok(dto).build();
+            ListingOrder listingOrder;
+            try {
+                listingOrder = ListingOrder.of(sort);
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("unknown sort: " + sort);
+            }
+            int size = Math.max(1, Math.min(limit, MAX_LIMIT));
+            Listing listing = service.list(node.getId(), listingOrder, "desc".equalsIgnoreCase(order), cursor, Math.max(0, offset), size);
+            EntityTag tag = Validators.listing(node, listing.nodes());
+            Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+            if (notModified != null) {
+                return notModified.tag(tag).header("Cache-Control", Validators.REVALIDATE).build();
+            }
+            CollectionDto<NodeDto> dto = new CollectionDto<>(size, offset);
+            dto.setValues(listing.nodes().stream().map(NodeDto::fromNode).toList());
+            dto.setSize(listing.size());
+            dto.setNext(listing.next());
+            return Response.ok(dto).tag(tag).header("Cache-Control", Validators.REVALIDATE).build();
         } else {
             throw new NodeTypeException("Node is not a directory");
         }
     }
 
+    /**
+     * Not transactional, the service creates the node in a short transaction once the content is stored.
+     * <p>
+     * Multipart bodies are decoded by RESTEasy before this method is called, they are kept for compatibility only: files
+     * should be sent to the streaming route POST {@value NodesStreamRoutes#PATH}/{id} instead, which accepts the same form.
+     */
     @POST
     @Path("{id}")
-    @Transactional(Transactional.TxType.REQUIRED)
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes({MediaType.APPLICATION_JSON, MediaType.MULTIPART_FORM_DATA})
     public Response create(@PathParam("id") final String id, @Valid @MultipartForm NodeCreateDto dto, @Context UriInfo info) throws NodeNotFoundException, NodeTypeException,
@@ -139,16 +253,21 @@ public class NodesResource {
         return Response.created(createdUri).build();
     }
 
+    /**
+     * Not transactional, the service replaces the node in a short transaction once the new content is stored.
+     *
+     * @deprecated the multipart body is decoded by RESTEasy before this method is called, use the streaming route
+     * PUT {@value NodesStreamRoutes#PATH}/{id}/{name} instead, which accepts the same form.
+     */
+    @Deprecated
     @PUT
     @Path("{id}/{name}")
-    @Transactional(Transactional.TxType.REQUIRED)
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.MULTIPART_FORM_DATA)
     public Response update(@PathParam("id") final String id, @PathParam("name") String name, @FormParam("data") InputStream data) throws
-            NodeNotEmptyException, NodeNotFoundException, NodeTypeException, NodeAlreadyExistsException, DataStoreException, DataNotFoundException, NodePersistenceException, NotificationServiceException {
+            NodeNotFoundException, NodeTypeException, DataStoreException, NodePersistenceException, NotificationServiceException {
         LOGGER.log(Level.INFO, "PUT /api/nodes/{0}/{1}", new Object[]{id, name});
-        service.remove(id, name);
-        service.add(id, name, data);
+        service.replace(id, name, data);
         return Response.noContent().build();
     }
 
@@ -162,4 +281,100 @@ public class NodesResource {
         return Response.noContent().build();
     }
 
+    private Map<String, String> contentHeaders(Node node, boolean download, String hash) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Content-Type", node.getMimetype());
+        headers.put("Content-Disposition", ((download) ? "attachment; " : "") + "filename=" + node.getName());
+        headers.put("Accept-Ranges", ByteRange.UNIT);
+        // content keys are hashes of the bytes, they make natural strong validators
+        headers.put("ETag", Validators.format(Validators.content(node)));
+        headers.put("Last-Modified", Validators.HTTP_DATE.format(Validators.lastModified(node).toInstant()));
+        headers.put("Cache-Control", Validators.isHashAddressed(node, hash) ? Validators.IMMUTABLE : Validators.REVALIDATE);
+        return headers;
+    }
+
+    private Response multipartContent(Node node, List<ByteRange> ranges, Map<String, String> headers) throws NodeNotFoundException, NodeTypeException,
+            DataNotFoundException, DataStoreException {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        byte[] end = ("--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        List<byte[]> preambles = new ArrayList<>();
+        long length = end.length;
+        for (ByteRange range : ranges) {
+            byte[] preamble = ("--" + boundary + "\r\nContent-Type: " + node.getMimetype() + "\r\nContent-Range: " + range.toContentRange(node.getSize()) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            preambles.add(preamble);
+            length += preamble.length + range.getLength() + 2;
+        }
+        List<InputStream> parts = new ArrayList<>();
+        try {
+            for (ByteRange range : ranges) {
+                parts.add(this.shape(service.getContent(node.getId(), range.getFirst(), range.getLength())));
+            }
+        } catch (NodeNotFoundException | NodeTypeException | DataNotFoundException | DataStoreException e) {
+            this.closeQuietly(parts);
+            throw e;
+        }
+        StreamingOutput body = output -> {
+            try {
+                for (int i = 0; i < parts.size(); i++) {
+                    output.write(preambles.get(i));
+                    parts.get(i).transferTo(output);
+                    output.write('\r');
+                    output.write('\n');
+                }
+                output.write(end);
+            } finally {
+                this.closeQuietly(parts);
+            }
+        };
+        Response.ResponseBuilder builder = Response.status(Response.Status.PARTIAL_CONTENT).entity(body);
+        headers.forEach(builder::header);
+        return builder.header("Content-Type", "multipart/byteranges; boundary=" + boundary).header("Content-Length", length).build();
+    }
+
+    private InputStream shape(InputStream content) {
+        return limits.shape(auth.getConnectedIdentifier(), RateLimitService.Direction.DOWNLOAD, content);
+    }
+
+    private void closeQuietly(List<InputStream> streams) {
+        for (InputStream stream : streams) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Unable to close content stream", e);
+            }
+        }
+    }
+
+    /**
+     * Hands a local blob file (or a single range of it) over to Vert.x which streams it with sendfile (zero copy) when
+     * the transport allows it. A failed transfer resets the connection once the response has started, so that the
+     * client sees a truncated transfer, and is answered with 500 otherwise. The suspended request is resumed in both
+     * cases, after the response has been ended or reset.
+     */
+    private void sendFile(RoutingContext ctx, AsyncResponse async, java.nio.file.Path file, Map<String, String> headers, ByteRange range, long size) {
+        HttpServerResponse response = ctx.response();
+        headers.forEach(response::putHeader);
+        long offset = 0;
+        long length = Long.MAX_VALUE;
+        if (range != null) {
+            response.setStatusCode(Response.Status.PARTIAL_CONTENT.getStatusCode());
+            response.putHeader("Content-Range", range.toContentRange(size));
+            offset = range.getFirst();
+            length = range.getLength();
+        }
+        response.sendFile(file.toString(), offset, length).onComplete(result -> {
+            if (result.failed()) {
+                LOGGER.log(Level.WARNING, "Unable to send content file: " + file, result.cause());
+                if (response.headWritten()) {
+                    response.reset();
+                } else if (!response.ended()) {
+                    response.headers().clear();
+                    response.setStatusCode(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode()).end();
+                }
+            }
+            async.resume(Response.noContent().build());
+        });
+    }
+
 }
@@ -0,0 +1,386 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.api.resources;
+
+import fr.jayblanc.mbyte.store.api.cache.Validators;
+import fr.jayblanc.mbyte.store.api.exception.*;
+import fr.jayblanc.mbyte.store.api.range.ByteRange;
+import fr.jayblanc.mbyte.store.api.validation.ValidationPattern;
+import fr.jayblanc.mbyte.store.auth.AuthenticationConfig;
+import fr.jayblanc.mbyte.store.auth.AuthenticationService;
+import fr.jayblanc.mbyte.store.data.AsyncDataStore;
+import fr.jayblanc.mbyte.store.data.DataDescriptor;
+import fr.jayblanc.mbyte.store.data.exception.DataNotFoundException;
+import fr.jayblanc.mbyte.store.data.exception.DataStoreException;
+import fr.jayblanc.mbyte.store.files.FileService;
+import fr.jayblanc.mbyte.store.files.entity.Node;
+import fr.jayblanc.mbyte.store.files.exceptions.NodeAlreadyExistsException;
+import fr.jayblanc.mbyte.store.files.exceptions.NodeNotFoundException;
+import fr.jayblanc.mbyte.store.files.exceptions.NodeTypeException;
+import fr.jayblanc.mbyte.store.limit.RateLimitService;
+import fr.jayblanc.mbyte.store.metrics.MetricsService;
+import io.quarkus.arc.Arc;
+import io.quarkus.arc.ManagedContext;
+import io.quarkus.oidc.UserInfo;
+import io.quarkus.vertx.http.runtime.RouteConstants;
+import io.quarkus.vertx.http.runtime.security.QuarkusHttpUser;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.json.Json;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.mutiny.core.buffer.Buffer;
+import io.vertx.mutiny.core.http.HttpServerFileUpload;
+import io.vertx.mutiny.core.http.HttpServerRequest;
+import io.vertx.mutiny.core.http.HttpServerResponse;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.context.ManagedExecutor;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Streaming counterparts of the content endpoints of {@link NodesResource}, served by plain Vert.x routes on the event
+ * loop: the request body is hashed and written to disk as it arrives and downloads are pushed as the client reads them,
+ * so thousands of slow clients do not need thousands of worker threads. Only the short database operations run on the
+ * worker pool.
+ * <p>
+ * GET /api/stream/nodes/{id}/content downloads the content of a file (conditional and single range requests included), POST /api/stream/nodes/{id}?name={name} creates a
+ * file in a folder and PUT /api/stream/nodes/{id}/{name} replaces it, both from the raw request body or from the data part
+ * of a multipart/form-data body. Authentication is enforced by the HTTP permissions on /api/*, the owner check mirrors
+ * {@link fr.jayblanc.mbyte.store.api.filter.SecurityFilter}.
+ *
+ * @author Jerome Blanchard
+ */
+@ApplicationScoped
+public class NodesStreamRoutes {
+
+    private static final Logger LOGGER = Logger.getLogger(NodesStreamRoutes.class.getName());
+    public static final String PATH = "/api/stream/nodes";
+
+    @Inject FileService service;
+    @Inject AsyncDataStore datastore;
+    @Inject AuthenticationConfig auth;
+    @Inject MetricsService metrics;
+    @Inject RateLimitService limits;
+    @Inject ManagedExecutor executor;
+
+    void init(@Observes Router router) {
+        router.get(PATH + "/:id/content").order(RouteConstants.ROUTE_ORDER_BEFORE_DEFAULT).handler(this::content);
+        router.post(PATH + "/:id").order(RouteConstants.ROUTE_ORDER_BEFORE_DEFAULT).handler(this::create);
+        router.put(PATH + "/:id/:name").order(RouteConstants.ROUTE_ORDER_BEFORE_DEFAULT).handler(this::update);
+    }
+
+    void content(RoutingContext ctx) {
+        String id = ctx.pathParam("id");
+        LOGGER.log(Level.INFO, "GET " + PATH + "/{0}/content", id);
+        if (!this.isOwner(ctx)) {
+            ctx.response().setStatusCode(Response.Status.UNAUTHORIZED.getStatusCode()).end();
+            return;
+        }
+        if (!this.admit(ctx)) {
+            return;
+        }
+        this.blocking(() -> {
+            Node node = service.get(id);
+            if (!node.getType().equals(Node.Type.BLOB)) {
+                throw new NodeTypeException("Node is not a file");
+            }
+            metrics.incMetric("download");
+            return node;
+        }).subscribe().with(node -> this.send(ctx, node), e -> this.fail(ctx, e));
+    }
+
+    void create(RoutingContext ctx) {
+        String id = ctx.pathParam("id");
+        String name = ctx.queryParams().get("name");
+        LOGGER.log(Level.INFO, "POST " + PATH + "/{0}", id);
+        if (!this.isOwner(ctx)) {
+            ctx.response().setStatusCode(Response.Status.UNAUTHORIZED.getStatusCode()).end();
+            return;
+        }
+        if (!this.admit(ctx)) {
+            return;
+        }
+        if (this.isMultipart(ctx)) {
+            this.multipart(ctx, name, (value, data) -> service.add(id, value, data), nid -> this.created(ctx, nid));
+            return;
+        }
+        if (!this.isValidName(name)) {
+            ctx.response().setStatusCode(Response.Status.BAD_REQUEST.getStatusCode()).end();
+            return;
+        }
+        // the parent is checked before the body is consumed, the check is repeated when the node is created
+        this.body(ctx, name, () -> {
+            if (service.getChild(id, name).isPresent()) {
+                throw new NodeAlreadyExistsException("A node with name: " + name + " already exists in tree with id: " + id);
+            }
+            return id;
+        }).onItem().transformToUni(data -> this.blocking(() -> service.add(id, name, data)))
+          .subscribe().with(nid -> this.created(ctx, nid), e -> this.fail(ctx, e));
+    }
+
+    void update(RoutingContext ctx) {
+        String id = ctx.pathParam("id");
+        String name = ctx.pathParam("name");
+        LOGGER.log(Level.INFO, "PUT " + PATH + "/{0}/{1}", new Object[]{id, name});
+        if (!this.isOwner(ctx)) {
+            ctx.response().setStatusCode(Response.Status.UNAUTHORIZED.getStatusCode()).end();
+            return;
+        }
+        if (!this.admit(ctx)) {
+            return;
+        }
+        if (this.isMultipart(ctx)) {
+            this.multipart(ctx, name, (value, data) -> service.replace(id, value, data), nid -> this.updated(ctx));
+            return;
+        }
+        if (!this.isValidName(name)) {
+            ctx.response().setStatusCode(Response.Status.BAD_REQUEST.getStatusCode()).end();
+            return;
+        }
+        // the parent is checked before the body is consumed, the check is repeated when the node is replaced
+        this.body(ctx, name, () -> {
+            if (service.getChild(id, name).filter(Node::isFolder).isPresent()) {
+                throw new NodeTypeException("A folder with name: " + name + " cannot be replaced by a file");
+            }
+            return id;
+        }).onItem().transformToUni(data -> this.blocking(() -> service.replace(id, name, data)))
+          .subscribe().with(nid -> this.updated(ctx), e -> this.fail(ctx, e));
+    }
+
+    //INTERNAL OPERATIONS
+
+    /**
+     * Node operation applied to the stored content of a multipart upload.
+     */
+    @FunctionalInterface
+    private interface NodeOperation {
+        String apply(String name, DataDescriptor data) throws Exception;
+    }
+
+    /**
+     * Stores the raw request body once the precheck has passed on the worker pool. The request is paused meanwhile:
+     * buffers arriving before the data store subscribes are queued by Vert.x instead of being dropped, and fetched once
+     * it does. When the precheck fails the body is read and dropped, so that the connection is not left stalled.
+     */
+    private Uni<DataDescriptor> body(RoutingContext ctx, String name, Callable<String> precheck) {
+        io.vertx.core.http.HttpServerRequest request = ctx.request();
+        request.pause();
+        return this.blocking(precheck)
+                .onFailure().invoke(() -> request.handler(ignored -> {}).resume())
+                .onItem().transformToUni(parent -> datastore.put(this.shape(ctx, RateLimitService.Direction.UPLOAD, HttpServerRequest.newInstance(request).toMulti()), name));
+    }
+
+    /**
+     * Multipart variant of create and update, with the same form as the JAX-RS endpoints: the data part is hashed and
+     * written to the data store temporary file as it is decoded, with back pressure, so an upload holds a few buffers of
+     * heap whatever its size. The node name is the given one (query or path parameter), the name part when sent before
+     * the data one, or the file name of the data part. Other parts are discarded.
+     */
+    private void multipart(RoutingContext ctx, String name, NodeOperation operation, Consumer<String> done) {
+        io.vertx.core.http.HttpServerRequest request = ctx.request();
+        AtomicBoolean received = new AtomicBoolean();
+        request.setExpectMultipart(true);
+        request.uploadHandler(upload -> {
+            if (!"data".equals(upload.name()) || !received.compareAndSet(false, true)) {
+                return;
+            }
+            // paused until the data store subscribes, once its temporary file is open
+            upload.pause();
+            String value = Optional.ofNullable(name).or(() -> Optional.ofNullable(request.getFormAttribute("name")))
+                    .filter(candidate -> !candidate.isBlank()).orElse(upload.filename());
+            if (!this.isValidName(value)) {
+                // the rest of the body is read and dropped, so that the connection is not left stalled
+                upload.handler(ignored -> {}).resume();
+                ctx.response().setStatusCode(Response.Status.BAD_REQUEST.getStatusCode()).end();
+                return;
+            }
+            datastore.put(this.shape(ctx, RateLimitService.Direction.UPLOAD, HttpServerFileUpload.newInstance(upload).toMulti()), value)
+                    .onItem().transformToUni(data -> this.blocking(() -> operation.apply(value, data)))
+                    .subscribe().with(done, e -> this.fail(ctx, e));
+        });
+        request.endHandler(ignored -> {
+            if (!received.get() && !ctx.response().ended()) {
+                ctx.response().setStatusCode(Response.Status.BAD_REQUEST.getStatusCode()).end();
+            }
+        });
+    }
+
+    /**
+     * Conditional and range handling of GET /api/nodes/{id}/content, through the same {@link Validators}: 304 for a
+     * matching If-None-Match or If-Modified-Since, 206 for a single satisfiable range (guarded by If-Range) and 416
+     * when no range is satisfiable. A request for several ranges is answered with the full body, which the Range
+     * semantics allow; multipart/byteranges is only produced by the JAX-RS endpoint.
+     */
+    private void send(RoutingContext ctx, Node node) {
+        io.vertx.core.http.HttpServerRequest request = ctx.request();
+        EntityTag tag = Validators.content(node);
+        Date modified = Validators.lastModified(node);
+        HttpServerResponse response = HttpServerResponse.newInstance(ctx.response());
+        response.putHeader("ETag", Validators.format(tag));
+        response.putHeader("Last-Modified", Validators.HTTP_DATE.format(modified.toInstant()));
+        response.putHeader("Cache-Control", Validators.isHashAddressed(node, ctx.queryParams().get(Validators.HASH_PARAM)) ? Validators.IMMUTABLE : Validators.REVALIDATE);
+        if (Validators.isNotModified(request.getHeader("If-None-Match"), request.getHeader("If-Modified-Since"), tag, modified)) {
+            response.setStatusCode(Response.Status.NOT_MODIFIED.getStatusCode()).endAndForget();
+            return;
+        }
+        response.putHeader("Accept-Ranges", ByteRange.UNIT);
+        List<ByteRange> ranges = Validators.matchesIfRange(request.getHeader("If-Range"), tag, modified) ? ByteRange.parse(request.getHeader("Range"), node.getSize()) : null;
+        if (ranges != null && ranges.isEmpty()) {
+            response.setStatusCode(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE.getStatusCode())
+                    .putHeader("Content-Range", ByteRange.toUnsatisfiedContentRange(node.getSize())).endAndForget();
+            return;
+        }
+        response.putHeader("Content-Type", node.getMimetype());
+        Multi<Buffer> content;
+        if (ranges != null && ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            response.setStatusCode(Response.Status.PARTIAL_CONTENT.getStatusCode());
+            response.putHeader("Content-Range", range.toContentRange(node.getSize()));
+            response.putHeader("Content-Length", Long.toString(range.getLength()));
+            content = datastore.get(node.getContent(), range.getFirst(), range.getLength());
+        } else {
+            response.putHeader("Content-Length", Long.toString(node.getSize()));
+            content = datastore.get(node.getContent());
+        }
+        response.send(this.shape(ctx, RateLimitService.Direction.DOWNLOAD, content)).subscribe().with(done -> {}, e -> this.fail(ctx, e));
+    }
+
+    private boolean isMultipart(RoutingContext ctx) {
+        String type = ctx.request().getHeader("Content-Type");
+        return type != null && type.toLowerCase(Locale.ROOT).startsWith(MediaType.MULTIPART_FORM_DATA);
+    }
+
+    private void created(RoutingContext ctx, String nid) {
+        ctx.response().setStatusCode(Response.Status.CREATED.getStatusCode())
+                .putHeader("Location", ctx.request().absoluteURI().replaceFirst(PATH + "/.*$", "/api/nodes/" + nid)).end();
+    }
+
+    private void updated(RoutingContext ctx) {
+        ctx.response().setStatusCode(Response.Status.NO_CONTENT.getStatusCode()).end();
+    }
+
+    private boolean isValidName(String name) {
+        return name != null && !name.isBlank() && name.matches(ValidationPattern.FILE_PATTERN);
+    }
+
+    /**
+     * Same per identity request limits as {@link fr.jayblanc.mbyte.store.api.filter.RateLimitFilter} for the JAX-RS
+     * resources.
+     */
+    private boolean admit(RoutingContext ctx) {
+        long wait = limits.tryAcquire(this.identity(ctx), RateLimitService.Route.of(ctx.request().method().name()));
+        if (wait > 0) {
+            ctx.response().setStatusCode(Response.Status.TOO_MANY_REQUESTS.getStatusCode())
+                    .putHeader("Retry-After", Long.toString(Math.max(1L, TimeUnit.NANOSECONDS.toSeconds(wait + 999_999_999L)))).end();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Delays each buffer for as long as the bandwidth of the identity requires. Delaying the items delays the requests
+     * upstream, so the socket is read (or written) at the shaped rate rather than buffered.
+     */
+    private Multi<Buffer> shape(RoutingContext ctx, RateLimitService.Direction direction, Multi<Buffer> content) {
+        if (!limits.isShaped(direction)) {
+            return content;
+        }
+        String identity = this.identity(ctx);
+        return content.onItem().call(buffer -> {
+            long wait = limits.reserve(identity, direction, buffer.length());
+            return (wait > 0) ? Uni.createFrom().voidItem().onItem().delayIt().by(Duration.ofNanos(wait)) : Uni.createFrom().voidItem();
+        });
+    }
+
+    private String identity(RoutingContext ctx) {
+        if (ctx.user() instanceof QuarkusHttpUser user && !user.getSecurityIdentity().isAnonymous()) {
+            return user.getSecurityIdentity().getPrincipal().getName();
+        }
+        return AuthenticationService.UNAUTHENTIFIED_IDENTIFIER;
+    }
+
+    private boolean isOwner(RoutingContext ctx) {
+        if (ctx.user() instanceof QuarkusHttpUser user) {
+            UserInfo info = user.getSecurityIdentity().getAttribute("userinfo");
+            return info != null && auth.owner().equals(info.getPreferredUserName());
+        }
+        return false;
+    }
+
+    /**
+     * Failures are answered with the same status and body as the JAX-RS exception mappers, unless the response has
+     * already started, in which case the connection is reset so that the client sees a truncated transfer.
+     */
+    private void fail(RoutingContext ctx, Throwable e) {
+        if (ctx.response().headWritten()) {
+            LOGGER.log(Level.WARNING, "Content transfer failed after the response started", e);
+            ctx.response().reset();
+            return;
+        }
+        Response response = switch (e) {
+            case NodeNotFoundException ex -> new NodeNotFoundExceptionMapper().toResponse(ex);
+            case NodeTypeException ex -> new NodeTypeExceptionMapper().toResponse(ex);
+            case NodeAlreadyExistsException ex -> new NodeAlreadyExistsExceptionMapper().toResponse(ex);
+            case DataNotFoundException ex -> new DataNotFoundExceptionMapper().toResponse(ex);
+            case DataStoreException ex -> new DataStoreExceptionMapper().toResponse(ex);
+            default -> {
+                LOGGER.log(Level.SEVERE, "Unexpected error on " + ctx.request().path(), e);
+                yield Response.serverError().build();
+            }
+        };
+        ctx.response().setStatusCode(response.getStatus());
+        if (response.getEntity() != null) {
+            ctx.response().putHeader("Content-Type", "application/json").end(Json.encode(response.getEntity()));
+        } else {
+            ctx.response().end();
+        }
+    }
+
+    /**
+     * Runs a service call on the worker pool, within a request context as JAX-RS resources do.
+     */
+    private <T> Uni<T> blocking(Callable<T> callable) {
+        return Uni.createFrom().<T>emitter(emitter -> {
+            ManagedContext context = Arc.container().requestContext();
+            context.activate();
+            try {
+                emitter.complete(callable.call());
+            } catch (Exception e) {
+                emitter.fail(e);
+            } finally {
+                context.terminate();
+            }
+        }).runSubscriptionOn(executor);
+    }
+
+}
@@ -18,6 +18,7 @@ package fr.jayblanc.mbyte.store.api.resources;
 
 import fr.jayblanc.mbyte.store.api.dto.Status;
 import fr.jayblanc.mbyte.store.auth.AuthenticationService;
+import fr.jayblanc.mbyte.store.limit.RateLimitService;
 import fr.jayblanc.mbyte.store.metrics.MetricsService;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.GET;
@@ -38,12 +39,13 @@ public class StatusResource {
 
     @Inject AuthenticationService auth;
     @Inject MetricsService metrics;
+    @Inject RateLimitService limits;
 
     @GET
     @Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
     public Status getStatus() {
         LOGGER.log(Level.INFO, "GET /api/status");
-        return Status.fromRuntime().withMetrics(metrics).withConnectedId(auth.getConnectedProfile().getId());
+        return Status.fromRuntime().withMetrics(metrics).withLimits(limits).withConnectedId(auth.getConnectedProfile().getId());
     }
 
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.api.resources;
+
+import fr.jayblanc.mbyte.store.api.dto.UploadSessionCreateDto;
+import fr.jayblanc.mbyte.store.api.filter.OnlyOwner;
+import fr.jayblanc.mbyte.store.data.exception.DataNotFoundException;
+import fr.jayblanc.mbyte.store.data.exception.DataStoreException;
+import fr.jayblanc.mbyte.store.files.exceptions.*;
+import fr.jayblanc.mbyte.store.notification.NotificationServiceException;
+import fr.jayblanc.mbyte.store.upload.UploadService;
+import fr.jayblanc.mbyte.store.upload.UploadSession;
+import fr.jayblanc.mbyte.store.upload.exceptions.UploadSessionException;
+import fr.jayblanc.mbyte.store.upload.exceptions.UploadSessionNotFoundException;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import jakarta.validation.Valid;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriInfo;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+@Path("uploads")
+@OnlyOwner
+public class UploadsResource {
+
+    private static final Logger LOGGER = Logger.getLogger(UploadsResource.class.getName());
+
+    @Inject UploadService service;
+
+    @POST
+    @Transactional(Transactional.TxType.REQUIRED)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Response create(@Valid UploadSessionCreateDto dto, @Context UriInfo info) throws UploadSessionException, NodeNotFoundException, NodeTypeException {
+        LOGGER.log(Level.INFO, "POST /api/uploads");
+        UploadSession session = service.create(dto.getParent(), dto.getName(), dto.getSize(), dto.getChunkSize());
+        URI createdUri = info.getBaseUriBuilder().path(UploadsResource.class).path(session.getId()).build();
+        return Response.created(createdUri).entity(session).build();
+    }
+
+    @GET
+    @Path("{sid}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public UploadSession get(@PathParam("sid") final String sid) throws UploadSessionNotFoundException {
+        LOGGER.log(Level.INFO, "GET /api/uploads/{0}", sid);
+        return service.get(sid);
+    }
+
+    @PUT
+    @Path("{sid}/chunks/{index}")
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    public Response chunk(@PathParam("sid") final String sid, @PathParam("index") final int index, InputStream data) throws UploadSessionNotFoundException,
+            UploadSessionException {
+        LOGGER.log(Level.INFO, "PUT /api/uploads/{0}/chunks/{1}", new Object[]{sid, index});
+        service.putChunk(sid, index, data);
+        return Response.noContent().build();
+    }
+
+    @POST
+    @Path("{sid}/commit")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response commit(@PathParam("sid") final String sid, @Context UriInfo info) throws UploadSessionNotFoundException, UploadSessionException, DataNotFoundException,
+            DataStoreException, NodeNotFoundException, NodeAlreadyExistsException, NodeTypeException, NodePersistenceException, NotificationServiceException {
+        LOGGER.log(Level.INFO, "POST /api/uploads/{0}/commit", sid);
+        String nid = service.commit(sid);
+        URI createdUri = info.getBaseUriBuilder().path(NodesResource.class).path(nid).build();
+        return Response.created(createdUri).build();
+    }
+
+    @DELETE
+    @Path("{sid}")
+    public Response abort(@PathParam("sid") final String sid) throws UploadSessionNotFoundException {
+        LOGGER.log(Level.INFO, "DELETE /api/uploads/{0}", sid);
+        service.abort(sid);
+        return Response.noContent().build();
+    }
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.buffer.Buffer;
+
+/**
+ * Non blocking variant of the {@link DataStore} transfers, for callers running on the Vert.x event loop: content is
+ * consumed and produced as streams of buffers with back pressure, so that a slow client holds no thread.
+ * <p>
+ * Failures are the ones of the blocking store ({@link fr.jayblanc.mbyte.store.data.exception.DataStoreException},
+ * {@link fr.jayblanc.mbyte.store.data.exception.DataNotFoundException}).
+ *
+ * @author Jerome Blanchard
+ */
+public interface AsyncDataStore {
+
+    Uni<DataDescriptor> put(Multi<Buffer> content, String name);
+
+    Multi<Buffer> get(String key);
+
+    Multi<Buffer> get(String key, long offset, long length);
+
+}
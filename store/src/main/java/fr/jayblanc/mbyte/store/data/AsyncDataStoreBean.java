@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data;
+
+import fr.jayblanc.mbyte.store.data.hash.HashAlgorithm;
+import fr.jayblanc.mbyte.store.data.hash.Hasher;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.buffer.impl.BufferImpl;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.core.buffer.Buffer;
+import io.vertx.mutiny.core.file.AsyncFile;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.eclipse.microprofile.context.ManagedExecutor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Uploads are written to a temporary file with a Vert.x {@link AsyncFile} and hashed on the fly, then handed over to
+ * {@link DataStore#put(Path, String, String, String)} which only moves the file. Raw blobs are read back through an
+ * {@link AsyncFile}; other forms (packed, compressed, chunked, cached) are read from the blocking store one buffer at a
+ * time on the worker pool, so the event loop never blocks and no thread waits for the client.
+ *
+ * @author Jerome Blanchard
+ */
+@Singleton
+public class AsyncDataStoreBean implements AsyncDataStore {
+
+    private static final Logger LOGGER = Logger.getLogger(AsyncDataStore.class.getName());
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Inject
+    DataStore datastore;
+
+    @Inject
+    DataStoreConfig config;
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    ManagedExecutor executor;
+
+    /**
+     * Content is staged where the backend stages its own uploads, so that handing it over stays a move. The key and the
+     * secondary checksum are computed in the same pass, reading the network buffers in place.
+     */
+    @Override
+    public Uni<DataDescriptor> put(Multi<Buffer> content, String name) {
+        Path tmpfile = datastore.tmpfile();
+        Hasher hasher = HashAlgorithm.forKeys(config.hash().algorithm()).create();
+        Hasher checksum = config.hash().checksum().map(algorithm -> HashAlgorithm.forName(algorithm).create()).orElse(null);
+        return vertx.fileSystem().open(tmpfile.toString(), new OpenOptions().setWrite(true).setCreateNew(true))
+                .onItem().transformToUni(file -> content
+                        .onItem().call(buffer -> {
+                            for (ByteBuffer bytes : this.view(buffer)) {
+                                if (checksum != null) {
+                                    checksum.update(bytes.duplicate());
+                                }
+                                hasher.update(bytes);
+                            }
+                            return file.write(buffer);
+                        })
+                        .collect().last()
+                        .eventually(file::close))
+                .onItem().transformToUni(ignored -> this.blocking(() -> datastore.put(tmpfile, hasher.digest(), checksum != null ? checksum.digest() : null, name)))
+                .onFailure().call(() -> this.blocking(() -> Files.deleteIfExists(tmpfile)));
+    }
+
+    @Override
+    public Multi<Buffer> get(String key) {
+        return this.blocking(() -> datastore.file(key)).onItem().transformToMulti(file -> file.isPresent() ?
+                this.read(file.get(), 0, Long.MAX_VALUE) : this.read(() -> datastore.get(key)));
+    }
+
+    @Override
+    public Multi<Buffer> get(String key, long offset, long length) {
+        return this.blocking(() -> datastore.file(key)).onItem().transformToMulti(file -> file.isPresent() ?
+                this.read(file.get(), offset, length) : this.read(() -> datastore.get(key, offset, length)));
+    }
+
+    //INTERNAL OPERATIONS
+
+    private Multi<Buffer> read(Path file, long offset, long length) {
+        return Multi.createFrom().resourceFromUni(() -> vertx.fileSystem().open(file.toString(), new OpenOptions().setRead(true)),
+                        af -> af.setReadBufferSize(BUFFER_SIZE).setReadPos(offset).setReadLength(length).toMulti())
+                .withFinalizer(AsyncFile::close);
+    }
+
+    /**
+     * Reads a blocking stream one buffer at a time, each read being a short task on the worker pool.
+     */
+    private Multi<Buffer> read(Callable<InputStream> opener) {
+        return Multi.createFrom().resourceFromUni(() -> this.blocking(opener),
+                        is -> Multi.createBy().repeating().uni(() -> this.blocking(() -> Buffer.buffer(is.readNBytes(BUFFER_SIZE))))
+                                .until(buffer -> buffer.length() == 0))
+                .withFinalizer(is -> {
+                    try {
+                        is.close();
+                    } catch (IOException e) {
+                        LOGGER.log(Level.FINE, "Unable to close content stream", e);
+                    }
+                });
+    }
+
+    /**
+     * Readable bytes of a buffer as NIO buffers sharing its memory, copied only for a buffer implementation that does
+     * not expose its Netty buffer.
+     */
+    private ByteBuffer[] view(Buffer buffer) {
+        if (buffer.getDelegate() instanceof BufferImpl impl) {
+            return impl.byteBuf().nioBuffers();
+        }
+        return new ByteBuffer[] { ByteBuffer.wrap(buffer.getBytes()) };
+    }
+
+    private <T> Uni<T> blocking(Callable<T> callable) {
+        return Uni.createFrom().<T>emitter(emitter -> {
+            try {
+                emitter.complete(callable.call());
+            } catch (Exception e) {
+                emitter.fail(e);
+            }
+        }).runSubscriptionOn(executor);
+    }
+
+}
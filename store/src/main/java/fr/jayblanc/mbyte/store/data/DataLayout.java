@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data;
+
+import java.nio.file.Path;
+import java.util.regex.Pattern;
+
+/**
+ * Physical layout of content addressed blobs under the data store home.
+ * <p>
+ * The SHARDED layout fans blobs out in two levels of directories named after the first bytes of the hash
+ * (ab/cd/abcdef...) so that no directory grows beyond a few hundred entries, even for very large stores.
+ * The FLAT layout is the historical one (every blob directly under home) and is only kept to read and migrate
+ * existing stores.
+ *
+ * @author Jerome Blanchard
+ */
+public enum DataLayout {
+
+    FLAT {
+        @Override
+        public Path resolve(Path base, String key) {
+            return base.resolve(key);
+        }
+    },
+    SHARDED {
+        @Override
+        public Path resolve(Path base, String key) {
+            if (!isKey(key)) {
+                return base.resolve(key);
+            }
+            return base.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+        }
+    };
+
+    private static final Pattern KEY_PATTERN = Pattern.compile("^[0-9a-f]{64}$");
+
+    public abstract Path resolve(Path base, String key);
+
+    public static boolean isKey(String name) {
+        return name != null && KEY_PATTERN.matcher(name).matches();
+    }
+
+}
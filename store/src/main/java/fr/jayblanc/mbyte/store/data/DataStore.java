@@ -20,6 +20,9 @@ import fr.jayblanc.mbyte.store.data.exception.DataNotFoundException;
 import fr.jayblanc.mbyte.store.data.exception.DataStoreException;
 
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * @author Jerome Blanchard
@@ -30,14 +33,90 @@ public interface DataStore {
 
     String put(InputStream is) throws DataStoreException;
 
+    DataDescriptor put(InputStream is, String name) throws DataStoreException;
+
+    /**
+     * Moves a file whose hash has already been computed by the caller into the store, without copying it when the file
+     * lives on the same volume.
+     */
+    DataDescriptor put(Path file, String key, String name) throws DataStoreException;
+
+    /**
+     * Same as {@link #put(Path, String, String)} with the secondary checksum of the file (see store.data.hash.checksum)
+     * computed by the caller while it was written, so that the store does not read the file again to record it. Backends
+     * that record no checksum ignore it.
+     */
+    default DataDescriptor put(Path file, String key, String checksum, String name) throws DataStoreException {
+        return this.put(file, key, name);
+    }
+
+    /**
+     * @return a new temporary file location where callers stage content before handing it to {@link #put(Path, String, String)},
+     * on the volume the store moves files from
+     */
+    Path tmpfile();
+
     InputStream get(String key) throws DataStoreException, DataNotFoundException;
 
+    InputStream get(String key, long offset, long length) throws DataStoreException, DataNotFoundException;
+
+    /**
+     * Local file holding the raw content of the blob, when the backend can expose one. Callers use it to serve
+     * content without copying it through the heap (sendfile) and must fall back to {@link #get(String)} otherwise.
+     */
+    Optional<Path> file(String key) throws DataNotFoundException;
+
     String type(String key, String name) throws DataStoreException, DataNotFoundException;
 
     long size(String key) throws DataStoreException, DataNotFoundException;
 
     String extract(String key, String name, String type) throws DataStoreException, DataNotFoundException;
 
+    /**
+     * Time of the last write of a blob, refreshed when the same content is put again. The garbage collector uses it to
+     * leave alone blobs that may belong to an upload whose node is not created yet.
+     */
+    long modified(String key) throws DataStoreException, DataNotFoundException;
+
+    /**
+     * Keys of every blob held by the store, in no particular order. The stream is lazy and must be closed.
+     */
+    Stream<String> keys() throws DataStoreException;
+
+    /**
+     * Removes a blob. The store does not know which nodes use a blob, callers must make sure it is not referenced
+     * anymore (see the files content collector).
+     */
     void delete(String key) throws DataStoreException;
 
+    /**
+     * Removes a blob unless it has been written or put again since the given time. The time is checked and the blob
+     * removed under the lock that puts of the same key take, so content referenced again while the collector runs is kept.
+     *
+     * @return false when the blob is more recent than the given time and has been kept
+     */
+    boolean delete(String key, long before) throws DataStoreException, DataNotFoundException;
+
+    /**
+     * Reads a blob again and checks it against the checksum recorded when it was stored, or against its key when there
+     * is no checksum.
+     *
+     * @return false when the content does not match
+     */
+    default boolean verify(String key) throws DataStoreException, DataNotFoundException {
+        return this.verify(key, ReadPacer.NONE);
+    }
+
+    /**
+     * Same as {@link #verify(String)}, the pacer being called after each buffer read so that a background check of a
+     * large blob stays under its read budget.
+     */
+    boolean verify(String key, ReadPacer pacer) throws DataStoreException, DataNotFoundException;
+
+    /**
+     * Reclaims the space held by internal structures that no key references anymore, like chunks only used by deleted
+     * blobs or text extracted by an older extractor. Structures written after the given time are kept. Called by the content collector after each sweep.
+     */
+    void compact(long before) throws DataStoreException;
+
 }
@@ -16,104 +16,356 @@
  */
 package fr.jayblanc.mbyte.store.data;
 
+import com.sun.management.HotSpotDiagnosticMXBean;
+import fr.jayblanc.mbyte.store.data.cache.BlobCache;
+import fr.jayblanc.mbyte.store.data.cache.ByteBufferInputStream;
+import fr.jayblanc.mbyte.store.data.chunk.Chunker;
+import fr.jayblanc.mbyte.store.data.chunk.Manifest;
+import fr.jayblanc.mbyte.store.data.chunk.ManifestInputStream;
+import fr.jayblanc.mbyte.store.data.compress.CompressedBlob;
+import fr.jayblanc.mbyte.store.data.compress.CompressionPolicy;
 import fr.jayblanc.mbyte.store.data.exception.DataNotFoundException;
 import fr.jayblanc.mbyte.store.data.exception.DataStoreException;
+import fr.jayblanc.mbyte.store.data.hash.HashAlgorithm;
 import fr.jayblanc.mbyte.store.data.hash.HashedFilterInputStream;
+import fr.jayblanc.mbyte.store.data.hash.Hasher;
+import fr.jayblanc.mbyte.store.data.pack.PackStore;
+import fr.jayblanc.mbyte.store.metrics.MetricsService;
+import io.quarkus.arc.properties.IfBuildProperty;
 import io.quarkus.runtime.Startup;
+import jakarta.annotation.PreDestroy;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import jakarta.ws.rs.core.MediaType;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.tika.Tika;
 import org.apache.tika.exception.TikaException;
 import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MimeTypes;
 import org.apache.tika.parser.AutoDetectParser;
 import org.apache.tika.sax.BodyContentHandler;
+import org.eclipse.microprofile.context.ManagedExecutor;
 import org.xml.sax.SAXException;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
 import java.nio.file.*;
-import java.security.NoSuchAlgorithmException;
+import java.nio.file.attribute.FileTime;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /**
  * @author Jerome Blanchard
  */
 @Singleton
+@IfBuildProperty(name = "store.data.backend", stringValue = "file", enableIfMissing = true)
 public class DataStoreBean implements DataStore {
 
     private static final Logger LOGGER = Logger.getLogger(DataStore.class.getName());
+    private static final String LAYOUT_FILE = ".layout";
+    private static final String KEYS_FILE = ".keys";
+    private static final String TMP_FOLDER = "tmp";
+    private static final String CHUNKS_FOLDER = "chunks";
+    private static final String MANIFEST_EXTENSION = ".manifest";
+    private static final String COMPRESSED_EXTENSION = ".z";
+    private static final String CHECKSUM_EXTENSION = ".sum";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String TEXT_FOLDER = "text";
+    private static final String PACKS_FOLDER = "packs";
+    private static final int LOCKS = 64;
+    /**
+     * Bump when the way text is extracted changes, to invalidate the extracted text cache.
+     */
+    private static final int EXTRACTOR_REVISION = 1;
 
     @Inject
     DataStoreConfig config;
 
+    @Inject
+    ManagedExecutor executor;
+
+    @Inject
+    MetricsService metrics;
+
     private Path base;
+    private Path tmp;
+    private Path chunks;
+    private Chunker chunker;
+    private CompressionPolicy compression;
+    private HashAlgorithm hash;
+    private HashAlgorithm checksum;
     private Tika tika;
+    private AutoDetectParser parser;
+    private ExtractedTextCache texts;
+    private PackStore packs;
+    private BlobCache cache;
+    private int sniffLength;
+    private volatile DataLayout layout = DataLayout.FLAT;
+    private Path home;
+    private boolean cached = true;
+    private final ReentrantLock[] locks = new ReentrantLock[LOCKS];
 
     public DataStoreBean() {
+        for (int i = 0; i < LOCKS; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Store living in another folder than the configured home, used as a tier of {@link TieredDataStoreBean}.
+     */
+    DataStoreBean(DataStoreConfig config, ManagedExecutor executor, MetricsService metrics, Path home, boolean cached) {
+        this();
+        this.config = config;
+        this.executor = executor;
+        this.metrics = metrics;
+        this.home = home;
+        this.cached = cached;
     }
 
     @Startup
     public void init() {
-        this.base = Paths.get(config.home());
+        this.base = home != null ? home : Paths.get(config.home());
+        this.tmp = base.resolve(TMP_FOLDER);
+        this.chunks = base.resolve(CHUNKS_FOLDER);
+        if (config.chunking().enabled()) {
+            this.chunker = new Chunker(config.chunking().averageSize());
+        }
+        this.hash = HashAlgorithm.forKeys(config.hash().algorithm());
+        this.checksum = config.hash().checksum().map(HashAlgorithm::forName).orElse(null);
+        LOGGER.log(Level.INFO, "Data store hashes content with " + hash.getName() + (checksum != null ? " and checksums it with " + checksum.getName() : "")
+                + ", SHA-256 intrinsics " + (sha256Intrinsics() ? "enabled" : "disabled"));
+        if (config.compression().enabled()) {
+            this.compression = new CompressionPolicy(config.compression().maxEntropy());
+        }
+        if (config.cache().enabled() && cached) {
+            this.cache = new BlobCache(config.cache().maxSize(), config.cache().maxEntrySize(), metrics);
+        }
         LOGGER.log(Level.FINEST, "Initializing service with base folder: " + base);
         try {
             Files.createDirectories(base);
+            Files.createDirectories(tmp);
+            if (config.pack().enabled()) {
+                this.packs = new PackStore(base.resolve(PACKS_FOLDER), config.pack().segmentSize());
+            }
+            this.layout = this.readLayout();
+            if (layout != DataLayout.SHARDED) {
+                LOGGER.log(Level.INFO, "Data store uses " + layout + " layout, starting migration to " + DataLayout.SHARDED);
+                executor.runAsync(this::migrate);
+            }
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "unable to initialize data store", e);
         }
+        this.checkKeyAlgorithm();
         this.tika = new Tika();
+        this.parser = new AutoDetectParser();
+        String extractor = DigestUtils.sha256Hex(tika.toString() + "/" + EXTRACTOR_REVISION).substring(0, 12);
+        this.texts = new ExtractedTextCache(base.resolve(TEXT_FOLDER), tmp, extractor);
+        this.sniffLength = MimeTypes.getDefaultMimeTypes().getMinLength();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (packs != null) {
+            try {
+                packs.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "unable to close pack store", e);
+            }
+        }
     }
 
     @Override
     public boolean exists(String key) {
-        Path file = Paths.get(base.toString(), key);
-        return Files.exists(file);
+        return this.packed(key) || this.stored(key) != null;
     }
 
     @Override
     public String put(InputStream is) throws DataStoreException {
+        return this.put(is, null).getKey();
+    }
+
+    @Override
+    public DataDescriptor put(InputStream is, String name) throws DataStoreException {
+        if (chunker != null) {
+            return this.putChunks(is, name);
+        }
         String tmpkey = UUID.randomUUID().toString();
-        Path tmpfile = Paths.get(base.toString(), tmpkey);
-        try (HashedFilterInputStream his = HashedFilterInputStream.SHA256(is)) {
-            Files.copy(his, tmpfile, StandardCopyOption.REPLACE_EXISTING);
-            String key = his.getHash();
-            Path file = Paths.get(base.toString(), key);
-            if ( !Files.exists(file) ) {
-                Files.move(tmpfile, file);
+        Path tmpfile = tmp.resolve(tmpkey);
+        try (HashedFilterInputStream his = this.hashed(is)) {
+            // the type is sniffed from the first bytes, before the rest is written, to decide how the blob is stored
+            byte[] prefix = his.readNBytes(packs != null ? Math.max(sniffLength, config.pack().threshold() + 1) : sniffLength);
+            String type = this.sniff(prefix, name);
+            if (packs != null && prefix.length <= config.pack().threshold()) {
+                // the whole content fits in the prefix, it is small enough to be packed
+                this.commitPacked(his.getHash(), prefix);
+                return new DataDescriptor(his.getHash(), his.getSize(), type);
+            }
+            boolean compressed = compression != null && compression.accept(type, prefix);
+            if (compressed) {
+                CompressedBlob.write(tmpfile, prefix, his, config.compression().level());
             } else {
-                Files.delete(tmpfile);
+                try (OutputStream os = Files.newOutputStream(tmpfile)) {
+                    os.write(prefix);
+                    his.transferTo(os);
+                }
             }
-            return key;
-        } catch (IOException | NoSuchAlgorithmException e) {
+            String key = his.getHash();
+            this.commit(tmpfile, compressed ? this.compressed(key) : this.raw(key), key);
+            this.writeChecksum(key, his.getChecksum());
+            return new DataDescriptor(key, his.getSize(), type);
+        } catch (IOException e) {
             throw new DataStoreException("unexpected error during stream copy", e);
         }
     }
 
+    @Override
+    public DataDescriptor put(Path file, String key, String name) throws DataStoreException {
+        return this.put(file, key, null, name);
+    }
+
+    /**
+     * Without a checksum from the caller, the file is read once more to record it, when the store computes one.
+     */
+    @Override
+    public DataDescriptor put(Path file, String key, String sum, String name) throws DataStoreException {
+        if (!DataLayout.isKey(key)) {
+            throw new DataStoreException("invalid content key: " + key);
+        }
+        try {
+            long size = Files.size(file);
+            byte[] prefix;
+            try (InputStream is = Files.newInputStream(file)) {
+                prefix = is.readNBytes(sniffLength);
+            }
+            String type = this.sniff(prefix, name);
+            if (packs != null && size <= config.pack().threshold()) {
+                this.commitPacked(key, Files.readAllBytes(file));
+                Files.delete(file);
+            } else if (chunker != null && size > chunker.getMax() && !this.exists(key)) {
+                Manifest manifest = new Manifest();
+                try (InputStream is = Files.newInputStream(file)) {
+                    Chunker.Reader reader = chunker.reader(is);
+                    byte[] chunk;
+                    while ((chunk = reader.next()) != null) {
+                        manifest.add(this.storeChunk(chunk), chunk.length);
+                    }
+                }
+                this.commitManifest(manifest, key);
+                Files.delete(file);
+            } else if (compression != null && compression.accept(type, prefix) && !this.exists(key)) {
+                String value = this.checksumOf(file, key, sum);
+                Path tmpfile = tmp.resolve(UUID.randomUUID().toString());
+                try (InputStream is = Files.newInputStream(file)) {
+                    CompressedBlob.write(tmpfile, new byte[0], is, config.compression().level());
+                }
+                Files.delete(file);
+                this.commit(tmpfile, this.compressed(key), key);
+                this.writeChecksum(key, value);
+            } else {
+                String value = this.checksumOf(file, key, sum);
+                this.commit(file, this.raw(key), key);
+                this.writeChecksum(key, value);
+            }
+            return new DataDescriptor(key, size, type);
+        } catch (IOException e) {
+            throw new DataStoreException("unexpected error while moving file in storage", e);
+        }
+    }
+
+    @Override
+    public Path tmpfile() {
+        return tmp.resolve(UUID.randomUUID().toString());
+    }
+
     @Override
     public InputStream get(String key) throws DataStoreException, DataNotFoundException {
-        Path file = Paths.get(base.toString(), key);
-        if ( !Files.exists(file) ) {
+        if (cache == null) {
+            return this.open(key);
+        }
+        Optional<ByteBuffer> cached = cache.get(key);
+        if (cached.isPresent()) {
+            return new ByteBufferInputStream(cached.get());
+        }
+        long size = this.size(key);
+        Path file = this.locate(key);
+        try {
+            if (!cache.accept(size) || !cache.admit(key, size)) {
+                // only cached blobs are mapped, the cache bounds their mappings; the others are streamed
+                return this.open(key);
+            }
+            if ( Files.exists(file) ) {
+                return new ByteBufferInputStream(cache.map(key, file));
+            }
+            try (InputStream is = this.open(key)) {
+                return new ByteBufferInputStream(cache.load(key, is, size));
+            }
+        } catch (NoSuchFileException e) {
             throw new DataNotFoundException("file not found in storage for key: " + key);
+        } catch (IOException e) {
+            throw new DataStoreException("unexpected error while caching content", e);
+        }
+    }
+
+    @Override
+    public InputStream get(String key, long offset, long length) throws DataStoreException, DataNotFoundException {
+        Optional<ByteBuffer> cached = cache != null ? cache.get(key) : Optional.empty();
+        if ( cached.isPresent() ) {
+            // ranges do not populate the cache, a single range is usually a small part of a large blob
+            ByteBuffer buffer = cached.get();
+            int start = (int) Math.min(offset, buffer.limit());
+            return new ByteBufferInputStream(buffer.position(start).limit(start + (int) Math.min(buffer.limit() - start, length)));
         }
+        Path file = this.locate(key);
         try {
-            return Files.newInputStream(file, StandardOpenOption.READ);
+            Optional<byte[]> packed = packs != null ? packs.get(key) : Optional.empty();
+            if ( packed.isPresent() ) {
+                int start = (int) Math.min(offset, packed.get().length);
+                return new ByteArrayInputStream(packed.get(), start, (int) Math.min(length, packed.get().length - start));
+            }
+            if ( Files.exists(file) ) {
+                return new FileRangeInputStream(file, offset, length);
+            }
+            Path compressed = this.compressed(key);
+            if ( Files.exists(compressed) ) {
+                return CompressedBlob.open(compressed, offset, length);
+            }
+            return new ManifestInputStream(this.readManifest(key), offset, length, this::openChunk);
         } catch (IOException e) {
             throw new DataStoreException("unexpected error while opening stream", e);
         }
     }
 
     @Override
-    public String type(String key, String name) throws DataNotFoundException {
-        LOGGER.log(Level.FINE, "Extract type for key: " + key);
-        Path file = Paths.get(base.toString(), key);
-        if ( !Files.exists(file) ) {
-            throw new DataNotFoundException("file not found in storage for key: " + key);
+    public Optional<Path> file(String key) throws DataNotFoundException {
+        Path file = this.locate(key);
+        if ( Files.exists(file) ) {
+            return Optional.of(file);
+        }
+        if ( this.exists(key) ) {
+            // packed, compressed or chunked content has no file holding the raw bytes
+            return Optional.empty();
         }
+        throw new DataNotFoundException("file not found in storage for key: " + key);
+    }
+
+    @Override
+    public String type(String key, String name) throws DataStoreException, DataNotFoundException {
+        LOGGER.log(Level.FINE, "Extract type for key: " + key);
         String mimetype = MediaType.APPLICATION_OCTET_STREAM;
-        try (InputStream stream = Files.newInputStream(file)) {
+        try (InputStream stream = this.open(key)) {
             mimetype = tika.detect(stream, name);
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Unable to detect mimetype: " + e.getMessage(), e);
@@ -123,12 +375,19 @@ public class DataStoreBean implements DataStore {
 
     @Override
     public long size(String key) throws DataStoreException, DataNotFoundException {
-        Path file = Paths.get(base.toString(), key);
-        if ( !Files.exists(file) ) {
-            throw new DataNotFoundException("file not found in storage for key: " + key);
+        if ( this.packed(key) ) {
+            return packs.size(key);
         }
+        Path file = this.locate(key);
         try {
-            return Files.size(file);
+            if ( Files.exists(file) ) {
+                return Files.size(file);
+            }
+            Path compressed = this.compressed(key);
+            if ( Files.exists(compressed) ) {
+                return CompressedBlob.size(compressed);
+            }
+            return this.readManifest(key).getSize();
         } catch (IOException e) {
             throw new DataStoreException("unexpected error while getting stream size", e);
         }
@@ -137,25 +396,546 @@ public class DataStoreBean implements DataStore {
     @Override
     public String extract(String key, String name, String type) throws DataStoreException, DataNotFoundException {
         LOGGER.log(Level.FINE, "Extract text for key: " + key);
-        Path file = Paths.get(base.toString(), key);
-        if ( !Files.exists(file) ) {
-            throw new DataNotFoundException("file not found in storage");
+        try {
+            // the content behind a key never changes, neither does its text for a given extractor
+            Optional<String> cached = texts.get(key);
+            if (cached.isPresent()) {
+                return cached.get();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to read extracted text cache for key: " + key, e);
         }
-        try (InputStream stream = Files.newInputStream(file)) {
+        String text;
+        try (InputStream stream = this.open(key)) {
             BodyContentHandler handler = new BodyContentHandler();
-            AutoDetectParser parser = new AutoDetectParser();
             Metadata metadata = new Metadata();
             metadata.set(Metadata.CONTENT_TYPE, type);
             parser.parse(stream, handler, metadata);
-            return handler.toString();
+            text = handler.toString();
         } catch (IOException | SAXException | TikaException e) {
             throw new DataStoreException("unexpected error while opening stream", e);
         }
+        try {
+            texts.put(key, text);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to write extracted text cache for key: " + key, e);
+        }
+        return text;
+    }
+
+    @Override
+    public long modified(String key) throws DataStoreException, DataNotFoundException {
+        LOGGER.log(Level.FINE, "Getting modification time for key: " + key);
+        if ( this.packed(key) ) {
+            return packs.modified(key);
+        }
+        Path file = this.stored(key);
+        if ( file == null ) {
+            throw new DataNotFoundException("file not found for key: " + key);
+        }
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (NoSuchFileException e) {
+            throw new DataNotFoundException("file not found for key: " + key);
+        } catch (IOException e) {
+            throw new DataStoreException("unable to read modification time of key: " + key, e);
+        }
+    }
+
+    @Override
+    public Stream<String> keys() throws DataStoreException {
+        try {
+            // sharded blobs are at depth 3 (ab/cd/key), legacy flat ones at depth 1, chunks are one level deeper and not listed
+            Stream<String> files = Files.walk(base, 3).map(path -> path.getFileName().toString())
+                    .map(name -> name.endsWith(MANIFEST_EXTENSION) ? name.substring(0, name.length() - MANIFEST_EXTENSION.length()) : name)
+                    .map(name -> name.endsWith(COMPRESSED_EXTENSION) ? name.substring(0, name.length() - COMPRESSED_EXTENSION.length()) : name)
+                    .filter(DataLayout::isKey);
+            return packs != null ? Stream.concat(packs.keys(), files) : files;
+        } catch (IOException e) {
+            throw new DataStoreException("unable to list data store keys", e);
+        }
     }
 
     @Override
     public void delete(String key) throws DataStoreException {
-        throw new DataStoreException("NOT IMPLEMENTED");
+        LOGGER.log(Level.FINE, "Deleting data with key: " + key);
+        try {
+            if ( packs != null ) {
+                packs.delete(key);
+            }
+            if ( cache != null ) {
+                cache.invalidate(key);
+            }
+            Files.deleteIfExists(this.locate(key));
+            Files.deleteIfExists(this.compressed(key));
+            Files.deleteIfExists(this.checksum(key));
+            // chunks are left to compact, they may be shared with other manifests
+            Files.deleteIfExists(this.manifest(key));
+            texts.delete(key);
+        } catch (IOException e) {
+            throw new DataStoreException("unable to delete data with key: " + key, e);
+        }
+    }
+
+    @Override
+    public boolean delete(String key, long before) throws DataStoreException, DataNotFoundException {
+        ReentrantLock lock = this.lock(key);
+        lock.lock();
+        try {
+            if ( this.modified(key) >= before ) {
+                return false;
+            }
+            this.delete(key);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean verify(String key, ReadPacer pacer) throws DataStoreException, DataNotFoundException {
+        LOGGER.log(Level.FINE, "Verifying data with key: " + key);
+        try {
+            Hasher hasher = hash.create();
+            String expected = key;
+            Path sum = this.checksum(key);
+            if ( Files.exists(sum) ) {
+                String[] recorded = Files.readString(sum, StandardCharsets.UTF_8).trim().split(":", 2);
+                hasher = HashAlgorithm.forName(recorded[0]).create();
+                expected = recorded[1];
+            }
+            try (InputStream is = this.open(key)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int r;
+                while ((r = is.read(buffer)) != -1) {
+                    hasher.update(buffer, 0, r);
+                    pacer.pace(r);
+                }
+            }
+            return expected.equals(hasher.digest());
+        } catch (IOException e) {
+            throw new DataStoreException("unexpected error while verifying data with key: " + key, e);
+        }
+    }
+
+    @Override
+    public void compact(long before) throws DataStoreException {
+        try {
+            texts.purge(this::exists);
+        } catch (IOException e) {
+            throw new DataStoreException("unable to purge extracted text cache", e);
+        }
+        if (packs != null) {
+            try {
+                int segments = packs.compact();
+                LOGGER.log(Level.INFO, "Data store packs compaction done, " + segments + " segments rewritten");
+            } catch (IOException e) {
+                throw new DataStoreException("unable to compact pack segments", e);
+            }
+        }
+        if (!Files.exists(chunks)) {
+            return;
+        }
+        LOGGER.log(Level.INFO, "Compacting data store chunks");
+        Set<String> referenced = new HashSet<>();
+        try (Stream<Path> manifests = Files.walk(base, 3)) {
+            for (Path path : (Iterable<Path>) manifests.filter(path -> path.getFileName().toString().endsWith(MANIFEST_EXTENSION))::iterator) {
+                try (InputStream is = Files.newInputStream(path)) {
+                    referenced.addAll(Manifest.read(is).getChunks());
+                } catch (NoSuchFileException e) {
+                    // deleted meanwhile
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            throw new DataStoreException("unable to mark referenced chunks", e);
+        }
+        long deleted = 0;
+        try (Stream<Path> files = Files.walk(chunks, 3)) {
+            for (Path path : (Iterable<Path>) files.filter(path -> DataLayout.isKey(path.getFileName().toString()))::iterator) {
+                if (!referenced.contains(path.getFileName().toString()) && this.deleteChunk(path, before)) {
+                    deleted++;
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            throw new DataStoreException("unable to sweep unreferenced chunks", e);
+        }
+        LOGGER.log(Level.INFO, "Data store chunks compaction done, " + deleted + " chunks deleted, " + referenced.size() + " referenced");
+    }
+
+    //INTERNAL OPERATIONS
+
+    /**
+     * Opens a blob whatever its form, without going through the cache: internal reads (type detection, text extraction,
+     * verification) must not evict the content users actually download.
+     */
+    private InputStream open(String key) throws DataStoreException, DataNotFoundException {
+        Path file = this.locate(key);
+        try {
+            Optional<byte[]> packed = packs != null ? packs.get(key) : Optional.empty();
+            if ( packed.isPresent() ) {
+                return new ByteArrayInputStream(packed.get());
+            }
+            if ( Files.exists(file) ) {
+                return Files.newInputStream(file, StandardOpenOption.READ);
+            }
+            Path compressed = this.compressed(key);
+            if ( Files.exists(compressed) ) {
+                return CompressedBlob.open(compressed);
+            }
+            return new ManifestInputStream(this.readManifest(key), this::openChunk);
+        } catch (IOException e) {
+            throw new DataStoreException("unexpected error while opening stream", e);
+        }
+    }
+
+    /**
+     * Moves a fully written file to the given location of its key, or drops it when that content is already stored,
+     * whatever its form.
+     */
+    private void commit(Path source, Path file, String key) throws IOException {
+        ReentrantLock lock = this.lock(key);
+        lock.lock();
+        try {
+            Path existing = this.stored(key);
+            if ( this.packed(key) ) {
+                Files.delete(source);
+                packs.touch(key);
+            } else if ( existing != null ) {
+                Files.delete(source);
+                this.touch(existing);
+            } else {
+                Files.createDirectories(file.getParent());
+                try {
+                    Files.move(source, file, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    // source is on another volume, copy it next to the store first so that the blob still appears atomically
+                    Path tmpfile = tmp.resolve(UUID.randomUUID().toString());
+                    Files.move(source, tmpfile);
+                    Files.move(tmpfile, file, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends a small blob to the pack segments, unless that content is already stored, whatever its form.
+     */
+    private void commitPacked(String key, byte[] data) throws IOException {
+        ReentrantLock lock = this.lock(key);
+        lock.lock();
+        try {
+            Path existing = this.stored(key);
+            if ( existing != null ) {
+                this.touch(existing);
+            } else {
+                packs.put(key, data);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Serializes the commit of a key with its deletion by the collector, so that a blob is never deleted right after
+     * being put again.
+     */
+    private ReentrantLock lock(String key) {
+        return locks[Math.floorMod(key.hashCode(), LOCKS)];
+    }
+
+    private boolean packed(String key) {
+        return packs != null && packs.contains(key);
+    }
+
+    private HashedFilterInputStream hashed(InputStream is) {
+        return new HashedFilterInputStream(is, hash.create(), checksum != null ? checksum.create() : null, sniffLength);
+    }
+
+    /**
+     * @return the secondary checksum to record for a file, the given one or else computed from its content, or null when
+     * the store computes none or the blob already has one
+     */
+    private String checksumOf(Path file, String key, String sum) throws IOException {
+        if (checksum == null || Files.exists(this.checksum(key))) {
+            return null;
+        }
+        if (sum != null) {
+            return sum;
+        }
+        Hasher hasher = checksum.create();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream is = Files.newInputStream(file)) {
+            int read;
+            while ((read = is.read(buffer)) > 0) {
+                hasher.update(buffer, 0, read);
+            }
+        }
+        return hasher.digest();
+    }
+
+    /**
+     * Records the secondary checksum of a blob, if the store computes one and none is recorded yet.
+     */
+    private void writeChecksum(String key, String value) throws IOException {
+        Path file = this.checksum(key);
+        if ( value != null && !Files.exists(file) ) {
+            Path tmpfile = tmp.resolve(UUID.randomUUID().toString());
+            Files.writeString(tmpfile, checksum.getName() + ":" + value, StandardCharsets.UTF_8);
+            Files.move(tmpfile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static boolean sha256Intrinsics() {
+        try {
+            HotSpotDiagnosticMXBean hotspot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            return Boolean.parseBoolean(hotspot.getVMOption("UseSHA256Intrinsics").getValue());
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Content is referenced again: restarts its grace period so that it is not collected before the node exists.
+     */
+    private void touch(Path file) throws IOException {
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+    }
+
+    /**
+     * Stores a stream as content defined chunks. Content that fits in a single chunk is stored as a plain blob, so that
+     * small files keep being served from a single file.
+     */
+    private DataDescriptor putChunks(InputStream is, String name) throws DataStoreException {
+        try (HashedFilterInputStream his = this.hashed(is)) {
+            Chunker.Reader reader = chunker.reader(his);
+            byte[] first = reader.next();
+            byte[] chunk = first != null ? reader.next() : null;
+            if (chunk == null && packs != null && (first == null || first.length <= config.pack().threshold())) {
+                this.commitPacked(his.getHash(), first != null ? first : new byte[0]);
+            } else if (chunk == null) {
+                Path tmpfile = tmp.resolve(UUID.randomUUID().toString());
+                Files.write(tmpfile, first != null ? first : new byte[0]);
+                this.commit(tmpfile, this.raw(his.getHash()), his.getHash());
+            } else {
+                Manifest manifest = new Manifest();
+                manifest.add(this.storeChunk(first), first.length);
+                do {
+                    manifest.add(this.storeChunk(chunk), chunk.length);
+                } while ((chunk = reader.next()) != null);
+                this.commitManifest(manifest, his.getHash());
+            }
+            if ( !this.packed(his.getHash()) ) {
+                // pack records carry their own checksum
+                this.writeChecksum(his.getHash(), his.getChecksum());
+            }
+            return new DataDescriptor(his.getHash(), his.getSize(), this.sniff(his.getPrefix(), name));
+        } catch (IOException e) {
+            throw new DataStoreException("unexpected error during chunked stream copy", e);
+        }
+    }
+
+    /**
+     * The chunks folder is the chunk index: a chunk is stored once, under its own hash, whatever the number of
+     * manifests using it.
+     */
+    private String storeChunk(byte[] chunk) throws IOException {
+        Hasher hasher = hash.create();
+        hasher.update(chunk, 0, chunk.length);
+        String key = hasher.digest();
+        Path file = DataLayout.SHARDED.resolve(chunks, key);
+        ReentrantLock lock = this.lock(key);
+        lock.lock();
+        try {
+            if ( Files.exists(file) ) {
+                this.touch(file);
+            } else {
+                Files.createDirectories(file.getParent());
+                Path tmpfile = tmp.resolve(UUID.randomUUID().toString());
+                Files.write(tmpfile, chunk);
+                Files.move(tmpfile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return key;
+    }
+
+    /**
+     * Deletes an unreferenced chunk unless it has been stored again since the given time, checked under the lock that
+     * {@link #storeChunk(byte[])} takes so that a chunk reused by a put whose manifest is not committed yet is kept.
+     */
+    private boolean deleteChunk(Path file, long before) throws IOException {
+        ReentrantLock lock = this.lock(file.getFileName().toString());
+        lock.lock();
+        try {
+            if ( Files.getLastModifiedTime(file).toMillis() >= before ) {
+                return false;
+            }
+            return Files.deleteIfExists(file);
+        } catch (NoSuchFileException e) {
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void commitManifest(Manifest manifest, String key) throws IOException {
+        Path file = this.manifest(key);
+        ReentrantLock lock = this.lock(key);
+        lock.lock();
+        try {
+            Path existing = this.stored(key);
+            if ( this.packed(key) ) {
+                packs.touch(key);
+            } else if ( existing != null ) {
+                this.touch(existing);
+            } else {
+                Files.createDirectories(file.getParent());
+                Path tmpfile = tmp.resolve(UUID.randomUUID().toString());
+                try (OutputStream os = Files.newOutputStream(tmpfile)) {
+                    manifest.write(os);
+                }
+                Files.move(tmpfile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Manifest readManifest(String key) throws IOException, DataNotFoundException {
+        try (InputStream is = Files.newInputStream(this.manifest(key))) {
+            return Manifest.read(is);
+        } catch (NoSuchFileException e) {
+            throw new DataNotFoundException("file not found in storage for key: " + key);
+        }
+    }
+
+    private InputStream openChunk(String chunk, long offset, long length) throws IOException {
+        return new FileRangeInputStream(DataLayout.SHARDED.resolve(chunks, chunk), offset, length);
+    }
+
+    private Path raw(String key) {
+        return DataLayout.SHARDED.resolve(base, key);
+    }
+
+    private Path compressed(String key) {
+        Path file = this.raw(key);
+        return file.resolveSibling(file.getFileName() + COMPRESSED_EXTENSION);
+    }
+
+    private Path checksum(String key) {
+        Path file = this.raw(key);
+        return file.resolveSibling(file.getFileName() + CHECKSUM_EXTENSION);
+    }
+
+    private Path manifest(String key) {
+        Path file = this.raw(key);
+        return file.resolveSibling(file.getFileName() + MANIFEST_EXTENSION);
+    }
+
+    /**
+     * @return the file holding a blob, whatever its form (raw, compressed or manifest of chunks), or null
+     */
+    private Path stored(String key) {
+        for (Path file : new Path[] { this.locate(key), this.compressed(key), this.manifest(key) }) {
+            if ( Files.exists(file) ) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    private String sniff(byte[] prefix, String name) {
+        try {
+            return tika.detect(prefix, name);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Unable to detect mimetype: " + e.getMessage(), e);
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+
+    /**
+     * Locate the file of a blob. While a migration from the flat layout is running, blobs that have not been moved
+     * yet are still found at their legacy location.
+     */
+    private Path locate(String key) {
+        Path file = DataLayout.SHARDED.resolve(base, key);
+        if (layout != DataLayout.SHARDED && !Files.exists(file)) {
+            Path legacy = DataLayout.FLAT.resolve(base, key);
+            if (Files.exists(legacy)) {
+                return legacy;
+            }
+        }
+        return file;
+    }
+
+    private DataLayout readLayout() throws IOException {
+        Path marker = base.resolve(LAYOUT_FILE);
+        if (Files.exists(marker)) {
+            return DataLayout.valueOf(Files.readString(marker, StandardCharsets.UTF_8).trim());
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(base, entry -> DataLayout.isKey(entry.getFileName().toString()))) {
+            if (!stream.iterator().hasNext()) {
+                this.writeLayout(DataLayout.SHARDED);
+                return DataLayout.SHARDED;
+            }
+        }
+        return DataLayout.FLAT;
+    }
+
+    private void writeLayout(DataLayout layout) throws IOException {
+        Files.writeString(base.resolve(LAYOUT_FILE), layout.name(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Keys are the hashes of the content: opening a store with another algorithm than the one it has been written with
+     * would break deduplication and make every blob without a checksum fail verification, so startup is refused.
+     */
+    private void checkKeyAlgorithm() {
+        Path marker = base.resolve(KEYS_FILE);
+        try {
+            if (!Files.exists(marker)) {
+                // stores written before the algorithm was recorded are assumed to use the configured one
+                Files.writeString(marker, hash.getName(), StandardCharsets.UTF_8);
+                return;
+            }
+            String recorded = Files.readString(marker, StandardCharsets.UTF_8).trim();
+            if (!recorded.equalsIgnoreCase(hash.getName())) {
+                throw new IllegalStateException("data store in " + base + " holds keys computed with " + recorded + ", it cannot be opened with "
+                        + hash.getName() + " (store.data.hash.algorithm)");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("unable to check the content key algorithm of data store in " + base, e);
+        }
+    }
+
+    /**
+     * One shot online migration of a flat store: every blob found directly under home is moved to its sharded location.
+     * Lookups keep working during the migration thanks to the fallback in {@link #locate(String)}.
+     */
+    private void migrate() {
+        long moved = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(base, entry -> DataLayout.isKey(entry.getFileName().toString()))) {
+            for (Path legacy : stream) {
+                Path file = DataLayout.SHARDED.resolve(base, legacy.getFileName().toString());
+                if (Files.exists(file)) {
+                    Files.delete(legacy);
+                } else {
+                    Files.createDirectories(file.getParent());
+                    Files.move(legacy, file, StandardCopyOption.ATOMIC_MOVE);
+                }
+                if (++moved % 10000 == 0) {
+                    LOGGER.log(Level.INFO, "Data store migration in progress, " + moved + " blobs moved");
+                }
+            }
+            this.writeLayout(DataLayout.SHARDED);
+            this.layout = DataLayout.SHARDED;
+            LOGGER.log(Level.INFO, "Data store migration done, " + moved + " blobs moved");
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Data store migration failed after " + moved + " blobs, it will be resumed at next startup", e);
+        }
     }
 
 
@@ -18,10 +18,81 @@ package fr.jayblanc.mbyte.store.data;
 
 import io.smallrye.config.ConfigMapping;
 
+import java.time.Duration;
+import java.util.Optional;
+
 /**
  * @author Jerome Blanchard
  */
 @ConfigMapping(prefix = "store.data")
 public interface DataStoreConfig {
     String home();
+    /**
+     * Build time selection of the data store implementation: file (default) or s3.
+     */
+    String backend();
+    Chunking chunking();
+    Compression compression();
+    Hash hash();
+    Pack pack();
+    Cache cache();
+    S3 s3();
+    Tier tier();
+
+    interface Chunking {
+        boolean enabled();
+        int averageSize();
+    }
+
+    interface Compression {
+        boolean enabled();
+        int level();
+        double maxEntropy();
+    }
+
+    interface Hash {
+        String algorithm();
+        Optional<String> checksum();
+    }
+
+    interface Pack {
+        boolean enabled();
+        int threshold();
+        long segmentSize();
+    }
+
+    interface Cache {
+        boolean enabled();
+        long maxSize();
+        long maxEntrySize();
+    }
+
+    interface S3 {
+        String endpoint();
+        String region();
+        String bucket();
+        String accessKey();
+        String secretKey();
+        Optional<String> prefix();
+        long partSize();
+        int concurrency();
+        String staging();
+    }
+
+    interface Tier {
+        /**
+         * Backend of the cold tier: file or s3.
+         */
+        String coldBackend();
+        /**
+         * Folder of the cold tier, or of its local files when it is an S3 bucket.
+         */
+        String coldHome();
+        /**
+         * Time without access after which a blob is moved to the cold tier.
+         */
+        Duration coldAfter();
+        String every();
+        String delay();
+    }
 }
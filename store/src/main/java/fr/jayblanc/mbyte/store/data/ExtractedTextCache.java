@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Sidecar cache of the text extracted from blobs, gzipped and sharded like the blobs themselves. Entries are named after
+ * the blob key and the extractor version, so upgrading the extractor simply makes every entry miss; stale versions are
+ * removed when the store is compacted.
+ *
+ * @author Jerome Blanchard
+ */
+class ExtractedTextCache {
+
+    private static final Logger LOGGER = Logger.getLogger(ExtractedTextCache.class.getName());
+    private static final String EXTENSION = ".txt.gz";
+
+    private final Path folder;
+    private final Path tmp;
+    private final String version;
+
+    ExtractedTextCache(Path folder, Path tmp, String version) {
+        this.folder = folder;
+        this.tmp = tmp;
+        this.version = version;
+    }
+
+    Optional<String> get(String key) throws IOException {
+        try (InputStream is = new GZIPInputStream(Files.newInputStream(this.file(key)))) {
+            return Optional.of(new String(is.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    void put(String key, String text) throws IOException {
+        Path file = this.file(key);
+        Files.createDirectories(file.getParent());
+        Path tmpfile = tmp.resolve(UUID.randomUUID().toString());
+        try (OutputStream os = new GZIPOutputStream(Files.newOutputStream(tmpfile))) {
+            os.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        Files.move(tmpfile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    void delete(String key) throws IOException {
+        Files.deleteIfExists(this.file(key));
+    }
+
+    /**
+     * Removes the entries of other extractor versions and those of blobs that are not stored anymore.
+     *
+     * @return the number of entries removed
+     */
+    long purge(Predicate<String> stored) throws IOException {
+        if (!Files.exists(folder)) {
+            return 0;
+        }
+        long deleted = 0;
+        String suffix = "." + version + EXTENSION;
+        try (Stream<Path> files = Files.walk(folder, 3)) {
+            for (Path path : (Iterable<Path>) files.filter(path -> path.getFileName().toString().endsWith(EXTENSION))::iterator) {
+                String name = path.getFileName().toString();
+                if (!name.endsWith(suffix) || !stored.test(name.substring(0, name.length() - suffix.length()))) {
+                    Files.deleteIfExists(path);
+                    deleted++;
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        LOGGER.log(Level.FINE, "Extracted text cache purged, " + deleted + " entries deleted");
+        return deleted;
+    }
+
+    private Path file(String key) {
+        Path file = DataLayout.SHARDED.resolve(folder, key);
+        return file.resolveSibling(file.getFileName() + "." + version + EXTENSION);
+    }
+
+}
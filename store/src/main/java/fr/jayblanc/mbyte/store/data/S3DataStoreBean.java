@@ -0,0 +1,510 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data;
+
+import fr.jayblanc.mbyte.store.data.cache.BlobCache;
+import fr.jayblanc.mbyte.store.data.cache.ByteBufferInputStream;
+import fr.jayblanc.mbyte.store.data.exception.DataNotFoundException;
+import fr.jayblanc.mbyte.store.data.exception.DataStoreException;
+import fr.jayblanc.mbyte.store.data.hash.HashAlgorithm;
+import fr.jayblanc.mbyte.store.data.hash.HashedFilterInputStream;
+import fr.jayblanc.mbyte.store.data.hash.Hasher;
+import fr.jayblanc.mbyte.store.data.s3.S3Client;
+import fr.jayblanc.mbyte.store.metrics.MetricsService;
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.runtime.Startup;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import jakarta.ws.rs.core.MediaType;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.tika.Tika;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MimeTypes;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.sax.BodyContentHandler;
+import org.eclipse.microprofile.context.ManagedExecutor;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Data store keeping blobs in an S3 compatible bucket (AWS, MinIO, Ceph...), under the same content addressed keys as
+ * the file system store, laid out as SHARDED (ab/cd/abcdef...).
+ * <p>
+ * The key of a blob is only known once all its content has been read, so uploads are first staged on the local disk
+ * while being hashed, then sent in a single request, or as a multipart upload with several parts in flight for large
+ * blobs. Content already present in the bucket is not sent again. Blobs are stored raw: chunking, compression and
+ * packing are file system features and are ignored by this backend.
+ *
+ * @author Jerome Blanchard
+ */
+@Singleton
+@IfBuildProperty(name = "store.data.backend", stringValue = "s3")
+public class S3DataStoreBean implements DataStore {
+
+    private static final Logger LOGGER = Logger.getLogger(DataStore.class.getName());
+    private static final String TMP_FOLDER = "tmp";
+    private static final String TEXT_FOLDER = "text";
+    private static final String STAGING_FOLDER = "staging";
+    private static final String KEYS_OBJECT = ".keys";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int EXTRACTOR_REVISION = 1;
+    private static final int LOCKS = 64;
+
+    @Inject
+    DataStoreConfig config;
+
+    @Inject
+    ManagedExecutor executor;
+
+    @Inject
+    MetricsService metrics;
+
+    private S3Client client;
+    private String prefix;
+    private Path staging;
+    private HashAlgorithm hash;
+    private Tika tika;
+    private AutoDetectParser parser;
+    private ExtractedTextCache texts;
+    private BlobCache cache;
+    private int sniffLength;
+    private Path home;
+    private boolean cached = true;
+    private final ReentrantLock[] locks = new ReentrantLock[LOCKS];
+
+    public S3DataStoreBean() {
+        for (int i = 0; i < LOCKS; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Store keeping its local files (staging, extracted text) in another folder than the configured home, used as a
+     * tier of {@link TieredDataStoreBean}.
+     */
+    S3DataStoreBean(DataStoreConfig config, ManagedExecutor executor, MetricsService metrics, Path home, boolean cached) {
+        this();
+        this.config = config;
+        this.executor = executor;
+        this.metrics = metrics;
+        this.home = home;
+        this.cached = cached;
+    }
+
+    @Startup
+    public void init() {
+        DataStoreConfig.S3 s3 = config.s3();
+        this.client = new S3Client(URI.create(s3.endpoint()), s3.region(), s3.bucket(), s3.accessKey(), s3.secretKey());
+        this.prefix = s3.prefix().map(value -> value.endsWith("/") ? value : value + "/").orElse("");
+        Path base = home != null ? home : Paths.get(config.home());
+        this.staging = home != null ? home.resolve(STAGING_FOLDER) : Paths.get(s3.staging());
+        this.hash = HashAlgorithm.forKeys(config.hash().algorithm());
+        if (config.cache().enabled() && cached) {
+            this.cache = new BlobCache(config.cache().maxSize(), config.cache().maxEntrySize(), metrics);
+        }
+        LOGGER.log(Level.INFO, "Data store uses bucket " + s3.bucket() + " at " + s3.endpoint() + ", staging uploads in " + staging);
+        try {
+            Files.createDirectories(staging);
+            // temporary files of the extracted text cache stay on the local disk
+            Files.createDirectories(base.resolve(TMP_FOLDER));
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "unable to initialize data store", e);
+        }
+        this.checkKeyAlgorithm();
+        this.tika = new Tika();
+        this.parser = new AutoDetectParser();
+        String extractor = DigestUtils.sha256Hex(tika.toString() + "/" + EXTRACTOR_REVISION).substring(0, 12);
+        this.texts = new ExtractedTextCache(base.resolve(TEXT_FOLDER), base.resolve(TMP_FOLDER), extractor);
+        this.sniffLength = MimeTypes.getDefaultMimeTypes().getMinLength();
+    }
+
+    @Override
+    public boolean exists(String key) {
+        try {
+            return client.head(this.name(key)).isPresent();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to check existence of key: " + key, e);
+            return false;
+        }
+    }
+
+    @Override
+    public String put(InputStream is) throws DataStoreException {
+        return this.put(is, null).getKey();
+    }
+
+    @Override
+    public DataDescriptor put(InputStream is, String name) throws DataStoreException {
+        Path tmpfile = staging.resolve(UUID.randomUUID().toString());
+        try (HashedFilterInputStream his = new HashedFilterInputStream(is, hash.create(), null, sniffLength)) {
+            Files.copy(his, tmpfile);
+            String key = his.getHash();
+            this.commit(tmpfile, key, his.getSize());
+            return new DataDescriptor(key, his.getSize(), this.sniff(his.getPrefix(), name));
+        } catch (IOException e) {
+            throw new DataStoreException("unexpected error during stream upload", e);
+        } finally {
+            this.discard(tmpfile);
+        }
+    }
+
+    @Override
+    public DataDescriptor put(Path file, String key, String name) throws DataStoreException {
+        if (!DataLayout.isKey(key)) {
+            throw new DataStoreException("invalid content key: " + key);
+        }
+        try {
+            long size = Files.size(file);
+            byte[] prefix;
+            // the bucket cannot be repaired once a wrong content is stored under a key, the key given is checked first
+            try (HashedFilterInputStream his = new HashedFilterInputStream(Files.newInputStream(file), hash.create(), null, sniffLength)) {
+                his.transferTo(OutputStream.nullOutputStream());
+                prefix = his.getPrefix();
+                if (!his.getHash().equals(key)) {
+                    throw new DataStoreException("content of file does not match key: " + key);
+                }
+            }
+            this.commit(file, key, size);
+            return new DataDescriptor(key, size, this.sniff(prefix, name));
+        } catch (IOException e) {
+            throw new DataStoreException("unexpected error during file upload", e);
+        } finally {
+            this.discard(file);
+        }
+    }
+
+    @Override
+    public Path tmpfile() {
+        return staging.resolve(UUID.randomUUID().toString());
+    }
+
+    @Override
+    public InputStream get(String key) throws DataStoreException, DataNotFoundException {
+        if (cache == null) {
+            return this.open(key, 0, -1);
+        }
+        Optional<ByteBuffer> cached = cache.get(key);
+        if (cached.isPresent()) {
+            return new ByteBufferInputStream(cached.get());
+        }
+        long size = this.size(key);
+        if (!cache.admit(key, size)) {
+            return this.open(key, 0, -1);
+        }
+        try (InputStream is = this.open(key, 0, -1)) {
+            return new ByteBufferInputStream(cache.load(key, is, size));
+        } catch (IOException e) {
+            throw new DataStoreException("unexpected error while caching content", e);
+        }
+    }
+
+    @Override
+    public InputStream get(String key, long offset, long length) throws DataStoreException, DataNotFoundException {
+        Optional<ByteBuffer> cached = cache != null ? cache.get(key) : Optional.empty();
+        if ( cached.isPresent() ) {
+            ByteBuffer buffer = cached.get();
+            int start = (int) Math.min(offset, buffer.limit());
+            return new ByteBufferInputStream(buffer.position(start).limit(start + (int) Math.min(buffer.limit() - start, length)));
+        }
+        // ranges are served by the bucket, only the requested bytes are transferred
+        return this.open(key, offset, length);
+    }
+
+    @Override
+    public Optional<Path> file(String key) throws DataNotFoundException {
+        if ( !this.exists(key) ) {
+            throw new DataNotFoundException("file not found in storage for key: " + key);
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public String type(String key, String name) throws DataStoreException, DataNotFoundException {
+        LOGGER.log(Level.FINE, "Extract type for key: " + key);
+        String mimetype = MediaType.APPLICATION_OCTET_STREAM;
+        try (InputStream stream = this.open(key, 0, sniffLength)) {
+            mimetype = tika.detect(stream, name);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Unable to detect mimetype: " + e.getMessage(), e);
+        }
+        return mimetype;
+    }
+
+    @Override
+    public long size(String key) throws DataStoreException, DataNotFoundException {
+        return this.head(key).size();
+    }
+
+    @Override
+    public String extract(String key, String name, String type) throws DataStoreException, DataNotFoundException {
+        LOGGER.log(Level.FINE, "Extract text for key: " + key);
+        try {
+            Optional<String> cached = texts.get(key);
+            if (cached.isPresent()) {
+                return cached.get();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to read extracted text cache for key: " + key, e);
+        }
+        String text;
+        try (InputStream stream = this.open(key, 0, -1)) {
+            BodyContentHandler handler = new BodyContentHandler();
+            Metadata metadata = new Metadata();
+            metadata.set(Metadata.CONTENT_TYPE, type);
+            parser.parse(stream, handler, metadata);
+            text = handler.toString();
+        } catch (IOException | SAXException | TikaException e) {
+            throw new DataStoreException("unexpected error while opening stream", e);
+        }
+        try {
+            texts.put(key, text);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to write extracted text cache for key: " + key, e);
+        }
+        return text;
+    }
+
+    @Override
+    public long modified(String key) throws DataStoreException, DataNotFoundException {
+        LOGGER.log(Level.FINE, "Getting modification time for key: " + key);
+        return this.head(key).modified();
+    }
+
+    @Override
+    public Stream<String> keys() throws DataStoreException {
+        return client.list(prefix).map(name -> name.substring(name.lastIndexOf('/') + 1)).filter(DataLayout::isKey);
+    }
+
+    @Override
+    public void delete(String key) throws DataStoreException {
+        LOGGER.log(Level.FINE, "Deleting data with key: " + key);
+        try {
+            if ( cache != null ) {
+                cache.invalidate(key);
+            }
+            client.delete(this.name(key));
+            texts.delete(key);
+        } catch (IOException e) {
+            throw new DataStoreException("unable to delete data with key: " + key, e);
+        }
+    }
+
+    /**
+     * The lock only covers the puts of this instance, the bucket has no conditional delete.
+     */
+    @Override
+    public boolean delete(String key, long before) throws DataStoreException, DataNotFoundException {
+        ReentrantLock lock = this.lock(key);
+        lock.lock();
+        try {
+            if ( this.modified(key) >= before ) {
+                return false;
+            }
+            this.delete(key);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean verify(String key, ReadPacer pacer) throws DataStoreException, DataNotFoundException {
+        LOGGER.log(Level.FINE, "Verifying data with key: " + key);
+        Hasher hasher = hash.create();
+        try (InputStream is = this.open(key, 0, -1)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int r;
+            while ((r = is.read(buffer)) != -1) {
+                hasher.update(buffer, 0, r);
+                pacer.pace(r);
+            }
+        } catch (IOException e) {
+            throw new DataStoreException("unexpected error while verifying data with key: " + key, e);
+        }
+        return key.equals(hasher.digest());
+    }
+
+    @Override
+    public void compact(long before) throws DataStoreException {
+        // the bucket holds plain blobs only, nothing else than the local text cache to reclaim
+        try {
+            texts.purge(this::exists);
+        } catch (IOException e) {
+            throw new DataStoreException("unable to purge extracted text cache", e);
+        }
+    }
+
+    //INTERNAL OPERATIONS
+
+    private InputStream open(String key, long offset, long length) throws DataStoreException, DataNotFoundException {
+        try {
+            return client.get(this.name(key), offset, length);
+        } catch (NoSuchFileException e) {
+            throw new DataNotFoundException("file not found in storage for key: " + key);
+        } catch (IOException e) {
+            throw new DataStoreException("unexpected error while opening stream", e);
+        }
+    }
+
+    private S3Client.S3Object head(String key) throws DataStoreException, DataNotFoundException {
+        try {
+            return client.head(this.name(key)).orElseThrow(() -> new DataNotFoundException("file not found for key: " + key));
+        } catch (IOException e) {
+            throw new DataStoreException("unable to read metadata of key: " + key, e);
+        }
+    }
+
+    /**
+     * Uploads a staged file under its key, or only refreshes the modification time of the object when that content is
+     * already in the bucket.
+     */
+    private void commit(Path file, String key, long size) throws IOException {
+        String name = this.name(key);
+        ReentrantLock lock = this.lock(key);
+        lock.lock();
+        try {
+            Optional<S3Client.S3Object> existing = client.head(name);
+            if ( existing.isPresent() ) {
+                client.touch(name, existing.get().size());
+                return;
+            }
+        } finally {
+            // a missing object cannot be deleted meanwhile, the upload itself does not need the lock
+            lock.unlock();
+        }
+        long partSize = Math.max(config.s3().partSize(), S3Client.MIN_PART_SIZE);
+        if ( size <= partSize ) {
+            client.put(name, file, size);
+            return;
+        }
+        String upload = client.createMultipartUpload(name);
+        try {
+            // at most concurrency parts in flight, each one streamed from its own range of the staged file
+            Semaphore slots = new Semaphore(config.s3().concurrency());
+            List<CompletableFuture<String>> parts = new ArrayList<>();
+            for (long offset = 0; offset < size; offset += partSize) {
+                int number = parts.size() + 1;
+                long start = offset;
+                long length = Math.min(partSize, size - offset);
+                slots.acquire();
+                parts.add(executor.supplyAsync(() -> {
+                    try {
+                        return client.uploadPart(name, upload, number, file, start, length);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } finally {
+                        slots.release();
+                    }
+                }));
+            }
+            List<String> etags = new ArrayList<>(parts.size());
+            for (CompletableFuture<String> part : parts) {
+                etags.add(part.join());
+            }
+            client.completeMultipartUpload(name, upload, etags);
+        } catch (IOException | InterruptedException | CompletionException e) {
+            try {
+                client.abortMultipartUpload(name, upload);
+            } catch (IOException ae) {
+                e.addSuppressed(ae);
+            }
+            if ( e instanceof InterruptedException ) {
+                Thread.currentThread().interrupt();
+            }
+            throw e instanceof IOException ioe ? ioe : new IOException("multipart upload failed for key: " + key, e.getCause() != null ? e.getCause() : e);
+        }
+    }
+
+    /**
+     * Same check as the file store, the algorithm being recorded in the bucket next to the blobs.
+     */
+    private void checkKeyAlgorithm() {
+        String name = prefix + KEYS_OBJECT;
+        try {
+            if (client.head(name).isEmpty()) {
+                // buckets written before the algorithm was recorded are assumed to use the configured one
+                Path file = staging.resolve(UUID.randomUUID().toString());
+                try {
+                    Files.writeString(file, hash.getName(), StandardCharsets.UTF_8);
+                    client.put(name, file, Files.size(file));
+                } finally {
+                    Files.deleteIfExists(file);
+                }
+                return;
+            }
+            String recorded;
+            try (InputStream is = client.get(name, 0, -1)) {
+                recorded = new String(is.readAllBytes(), StandardCharsets.UTF_8).trim();
+            }
+            if (!recorded.equalsIgnoreCase(hash.getName())) {
+                throw new IllegalStateException("bucket " + config.s3().bucket() + " holds keys computed with " + recorded + ", it cannot be opened with "
+                        + hash.getName() + " (store.data.hash.algorithm)");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("unable to check the content key algorithm of bucket " + config.s3().bucket(), e);
+        }
+    }
+
+    private ReentrantLock lock(String key) {
+        return locks[Math.floorMod(key.hashCode(), LOCKS)];
+    }
+
+    private void discard(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to delete staged file: " + file, e);
+        }
+    }
+
+    private String name(String key) {
+        return prefix + DataLayout.SHARDED.resolve(Path.of(""), key).toString().replace('\\', '/');
+    }
+
+    private String sniff(byte[] prefix, String name) {
+        try {
+            return tika.detect(prefix, name);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Unable to detect mimetype: " + e.getMessage(), e);
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+
+}
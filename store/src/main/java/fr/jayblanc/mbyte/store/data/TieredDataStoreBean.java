@@ -0,0 +1,437 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data;
+
+import fr.jayblanc.mbyte.store.data.exception.DataNotFoundException;
+import fr.jayblanc.mbyte.store.data.exception.DataStoreException;
+import fr.jayblanc.mbyte.store.data.tier.AccessTracker;
+import fr.jayblanc.mbyte.store.metrics.MetricsService;
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.runtime.Startup;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.eclipse.microprofile.context.ManagedExecutor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Data store spreading blobs over two tiers: a hot one (the configured home, usually a fast local volume) where every
+ * blob is written, and a cold one (another folder, or an S3 bucket) where blobs that have not been read for a while are
+ * moved in the background. A blob read from the cold tier is served from there and promoted back to the hot tier.
+ * <p>
+ * A blob is only removed from its source tier once it is fully stored, and verified against its key, in the other one,
+ * so every lookup tries the hot tier, then the cold one, then the hot one again: a blob moved meanwhile is always found.
+ * Moves of a given key are serialized.
+ *
+ * @author Jerome Blanchard
+ */
+@Singleton
+@IfBuildProperty(name = "store.data.backend", stringValue = "tiered")
+public class TieredDataStoreBean implements DataStore {
+
+    private static final Logger LOGGER = Logger.getLogger(DataStore.class.getName());
+    private static final String ACCESS_FILE = ".access";
+    private static final int LOCKS = 64;
+
+    @Inject
+    DataStoreConfig config;
+
+    @Inject
+    ManagedExecutor executor;
+
+    @Inject
+    MetricsService metrics;
+
+    private DataStore hot;
+    private DataStore cold;
+    private AccessTracker access;
+    private Duration coldAfter;
+    private Executor promotions;
+    private final ReentrantLock[] locks = new ReentrantLock[LOCKS];
+    private final Set<String> promoting = ConcurrentHashMap.newKeySet();
+
+    public TieredDataStoreBean() {
+        for (int i = 0; i < LOCKS; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    TieredDataStoreBean(DataStore hot, DataStore cold, AccessTracker access, Duration coldAfter, Executor promotions, MetricsService metrics) {
+        this();
+        this.hot = hot;
+        this.cold = cold;
+        this.access = access;
+        this.coldAfter = coldAfter;
+        this.promotions = promotions;
+        this.metrics = metrics;
+    }
+
+    @Startup
+    public void init() {
+        Path home = Paths.get(config.home());
+        Path coldHome = Paths.get(config.tier().coldHome());
+        DataStoreBean hotStore = new DataStoreBean(config, executor, metrics, home, true);
+        hotStore.init();
+        this.hot = hotStore;
+        // cold blobs are promoted on read, caching them would only evict hot ones
+        if ("s3".equals(config.tier().coldBackend())) {
+            S3DataStoreBean coldStore = new S3DataStoreBean(config, executor, metrics, coldHome, false);
+            coldStore.init();
+            this.cold = coldStore;
+        } else {
+            DataStoreBean coldStore = new DataStoreBean(config, executor, metrics, coldHome, false);
+            coldStore.init();
+            this.cold = coldStore;
+        }
+        this.coldAfter = config.tier().coldAfter();
+        this.promotions = executor;
+        this.access = new AccessTracker(home.resolve(ACCESS_FILE));
+        try {
+            access.load();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to load blob access times, falling back to write times", e);
+        }
+        LOGGER.log(Level.INFO, "Data store is tiered, blobs not read for " + coldAfter + " are moved to the " + config.tier().coldBackend()
+                + " tier in " + coldHome);
+    }
+
+    @PreDestroy
+    public void close() {
+        try {
+            access.save();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to save blob access times", e);
+        }
+        for (DataStore tier : new DataStore[] { hot, cold }) {
+            if (tier instanceof DataStoreBean bean) {
+                bean.close();
+            }
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return hot.exists(key) || cold.exists(key);
+    }
+
+    @Override
+    public String put(InputStream is) throws DataStoreException {
+        return this.put(is, null).getKey();
+    }
+
+    @Override
+    public DataDescriptor put(InputStream is, String name) throws DataStoreException {
+        DataDescriptor data = hot.put(is, name);
+        access.touch(data.getKey());
+        return data;
+    }
+
+    @Override
+    public DataDescriptor put(Path file, String key, String name) throws DataStoreException {
+        return this.put(file, key, null, name);
+    }
+
+    @Override
+    public DataDescriptor put(Path file, String key, String checksum, String name) throws DataStoreException {
+        DataDescriptor data = hot.put(file, key, checksum, name);
+        access.touch(key);
+        return data;
+    }
+
+    @Override
+    public Path tmpfile() {
+        return hot.tmpfile();
+    }
+
+    @Override
+    public InputStream get(String key) throws DataStoreException, DataNotFoundException {
+        return this.read(key, tier -> tier.get(key));
+    }
+
+    @Override
+    public InputStream get(String key, long offset, long length) throws DataStoreException, DataNotFoundException {
+        return this.read(key, tier -> tier.get(key, offset, length));
+    }
+
+    /**
+     * Only files of the hot tier are exposed: a cold copy is deleted as soon as the blob is promoted, possibly before the
+     * caller opens it, so cold blobs are streamed through get, which also schedules their promotion.
+     */
+    @Override
+    public Optional<Path> file(String key) throws DataNotFoundException {
+        try {
+            Optional<Path> file = hot.file(key);
+            access.touch(key);
+            return file;
+        } catch (DataNotFoundException e) {
+            if (!cold.exists(key) && !hot.exists(key)) {
+                throw new DataNotFoundException("file not found in storage for key: " + key);
+            }
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public String type(String key, String name) throws DataStoreException, DataNotFoundException {
+        return this.lookup(key, tier -> tier.type(key, name));
+    }
+
+    @Override
+    public long size(String key) throws DataStoreException, DataNotFoundException {
+        return this.lookup(key, tier -> tier.size(key));
+    }
+
+    @Override
+    public String extract(String key, String name, String type) throws DataStoreException, DataNotFoundException {
+        return this.lookup(key, tier -> tier.extract(key, name, type));
+    }
+
+    @Override
+    public long modified(String key) throws DataStoreException, DataNotFoundException {
+        return this.lookup(key, tier -> tier.modified(key));
+    }
+
+    /**
+     * A key being moved between tiers may be listed twice.
+     */
+    @Override
+    public Stream<String> keys() throws DataStoreException {
+        Stream<String> hots = hot.keys();
+        try {
+            return Stream.concat(hots, cold.keys());
+        } catch (DataStoreException e) {
+            hots.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void delete(String key) throws DataStoreException {
+        hot.delete(key);
+        cold.delete(key);
+        access.forget(key);
+    }
+
+    /**
+     * A blob is deleted from a tier only when that copy is older than the given time, a blob put again in the hot tier
+     * is kept whatever the age of its cold copy.
+     */
+    @Override
+    public boolean delete(String key, long before) throws DataStoreException, DataNotFoundException {
+        ReentrantLock lock = this.lock(key);
+        lock.lock();
+        try {
+            boolean found = false;
+            for (DataStore tier : new DataStore[] { hot, cold }) {
+                try {
+                    if (!tier.delete(key, before)) {
+                        return false;
+                    }
+                    found = true;
+                } catch (DataNotFoundException e) {
+                    // not in that tier
+                }
+            }
+            if (!found) {
+                throw new DataNotFoundException("file not found in storage for key: " + key);
+            }
+            access.forget(key);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean verify(String key, ReadPacer pacer) throws DataStoreException, DataNotFoundException {
+        return this.lookup(key, tier -> tier.verify(key, pacer));
+    }
+
+    @Override
+    public void compact(long before) throws DataStoreException {
+        hot.compact(before);
+        cold.compact(before);
+    }
+
+    /**
+     * Moves the blobs of the hot tier that have not been read nor written for the configured time to the cold tier.
+     * Blobs never read since the access times are tracked are aged from their write time.
+     */
+    @Scheduled(every = "${store.data.tier.every}", delayed = "${store.data.tier.delay}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    public void migrate() {
+        long limit = System.currentTimeMillis() - coldAfter.toMillis();
+        LOGGER.log(Level.INFO, "Starting data store tiering, moving blobs not accessed since " + limit + " to the cold tier");
+        long moved = 0;
+        try (Stream<String> keys = hot.keys()) {
+            for (String key : (Iterable<String>) keys::iterator) {
+                try {
+                    if (this.demote(key, limit)) {
+                        moved++;
+                    }
+                } catch (DataNotFoundException e) {
+                    // collected meanwhile
+                } catch (DataStoreException e) {
+                    LOGGER.log(Level.WARNING, "Unable to move blob to the cold tier: " + key, e);
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Data store tiering aborted after " + moved + " blobs", e);
+        }
+        try {
+            access.save();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to save blob access times", e);
+        }
+        LOGGER.log(Level.INFO, "Data store tiering done, " + moved + " blobs moved to the cold tier");
+    }
+
+    //INTERNAL OPERATIONS
+
+    @FunctionalInterface
+    interface TierCall<T> {
+        T apply(DataStore tier) throws DataStoreException, DataNotFoundException;
+    }
+
+    private <T> T lookup(String key, TierCall<T> call) throws DataStoreException, DataNotFoundException {
+        try {
+            return call.apply(hot);
+        } catch (DataNotFoundException e) {
+            try {
+                return call.apply(cold);
+            } catch (DataNotFoundException ce) {
+                // promoted meanwhile
+                return call.apply(hot);
+            }
+        }
+    }
+
+    /**
+     * Same as lookup for the calls reading the content: the access is recorded and a blob found in the cold tier is
+     * promoted in the background.
+     */
+    private <T> T read(String key, TierCall<T> call) throws DataStoreException, DataNotFoundException {
+        try {
+            T result = call.apply(hot);
+            access.touch(key);
+            return result;
+        } catch (DataNotFoundException e) {
+            T result;
+            try {
+                result = call.apply(cold);
+            } catch (DataNotFoundException ce) {
+                result = call.apply(hot);
+                access.touch(key);
+                return result;
+            }
+            access.touch(key);
+            if (promoting.add(key)) {
+                promotions.execute(() -> {
+                    try {
+                        this.promote(key);
+                    } finally {
+                        promoting.remove(key);
+                    }
+                });
+            }
+            return result;
+        }
+    }
+
+    /**
+     * @return true when the blob has been moved, false when it has been accessed since the given time
+     */
+    boolean demote(String key, long limit) throws DataStoreException, DataNotFoundException {
+        ReentrantLock lock = this.lock(key);
+        lock.lock();
+        try {
+            if (this.lastAccess(key) >= limit) {
+                return false;
+            }
+            if (!cold.exists(key)) {
+                // ranged read, it does not load the blob in the read cache
+                this.copy(key, hot, cold);
+            }
+            if (this.lastAccess(key) >= limit) {
+                // read again while being copied, the cold copy will be reused by the next migration
+                return false;
+            }
+            hot.delete(key);
+            access.forget(key);
+            metrics.incMetric("tier.demoted");
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void promote(String key) {
+        ReentrantLock lock = this.lock(key);
+        lock.lock();
+        try {
+            if (!hot.exists(key)) {
+                this.copy(key, cold, hot);
+            }
+            cold.delete(key);
+            metrics.incMetric("tier.promoted");
+            LOGGER.log(Level.FINE, "Blob promoted to the hot tier: " + key);
+        } catch (DataNotFoundException e) {
+            // demoted key deleted meanwhile
+        } catch (DataStoreException e) {
+            LOGGER.log(Level.WARNING, "Unable to promote blob to the hot tier: " + key, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void copy(String key, DataStore from, DataStore to) throws DataStoreException, DataNotFoundException {
+        String copied;
+        try (InputStream is = from.get(key, 0, Long.MAX_VALUE)) {
+            copied = to.put(is);
+        } catch (IOException e) {
+            throw new DataStoreException("unable to read blob with key: " + key, e);
+        }
+        if (!key.equals(copied)) {
+            // the source is corrupted, keep it where it is for the scrubber to report it, the copy is left to the collector
+            throw new DataStoreException("content of blob does not match its key: " + key);
+        }
+    }
+
+    private long lastAccess(String key) throws DataStoreException, DataNotFoundException {
+        OptionalLong last = access.get(key);
+        return last.isPresent() ? last.getAsLong() : hot.modified(key);
+    }
+
+    private ReentrantLock lock(String key) {
+        return locks[Math.floorMod(key.hashCode(), LOCKS)];
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import fr.jayblanc.mbyte.store.metrics.MetricsService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Read cache of hot blobs, bounded by the total size of the cached content.
+ * <p>
+ * Raw blobs are cached as read only memory mappings of their file, so their bytes live in the page cache and cost
+ * neither heap nor a copy. Blobs that are decoded on read (compressed, chunked or packed) are cached decoded, in direct
+ * buffers, out of the heap. Caffeine's W-TinyLFU policy keeps one shot reads from evicting the popular blobs.
+ * <p>
+ * A blob is only mapped or decoded for the cache on its second read among the recently missed blobs: Caffeine decides on
+ * admission once the entry is built, which would waste a decoding (or a mapping) on every one shot read.
+ * <p>
+ * Blob keys are content hashes: a cached entry never becomes stale, it only has to be dropped when the blob is deleted.
+ *
+ * @author Jerome Blanchard
+ */
+public class BlobCache {
+
+    public static final String HIT_METRIC = "cache.hit";
+    public static final String MISS_METRIC = "cache.miss";
+    public static final String EVICTION_METRIC = "cache.eviction";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_CANDIDATES = 10000;
+
+    private final long maxEntrySize;
+    private final MetricsService metrics;
+    private final Cache<String, ByteBuffer> cache;
+    private final Cache<String, Boolean> candidates;
+
+    public BlobCache(long maxSize, long maxEntrySize, MetricsService metrics) {
+        this.maxEntrySize = maxEntrySize;
+        this.metrics = metrics;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize)
+                .weigher((String key, ByteBuffer buffer) -> buffer.capacity())
+                .removalListener((String key, ByteBuffer buffer, RemovalCause cause) -> {
+                    if (cause.wasEvicted()) {
+                        metrics.incMetric(EVICTION_METRIC);
+                    }
+                })
+                .executor(Runnable::run)
+                .recordStats()
+                .build();
+        this.candidates = Caffeine.newBuilder().maximumSize(MAX_CANDIDATES).executor(Runnable::run).build();
+    }
+
+    /**
+     * @return a read only view of the cached content, positioned at its start
+     */
+    public Optional<ByteBuffer> get(String key) {
+        ByteBuffer buffer = cache.getIfPresent(key);
+        metrics.incMetric(buffer != null ? HIT_METRIC : MISS_METRIC);
+        return Optional.ofNullable(buffer).map(ByteBuffer::asReadOnlyBuffer);
+    }
+
+    public boolean accept(long size) {
+        return size <= maxEntrySize;
+    }
+
+    /**
+     * Tells whether a missed blob must be cached by this read. The first read of a blob only records it as a candidate,
+     * the next one admits it.
+     */
+    public boolean admit(String key, long size) {
+        if (!this.accept(size)) {
+            return false;
+        }
+        if (candidates.asMap().remove(key) != null) {
+            return true;
+        }
+        candidates.put(key, Boolean.TRUE);
+        return false;
+    }
+
+    /**
+     * Caches a raw blob by mapping its file.
+     */
+    public ByteBuffer map(String key, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            cache.put(key, buffer);
+            return buffer.asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * Caches a blob by decoding it in a direct buffer.
+     */
+    public ByteBuffer load(String key, InputStream is, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) size);
+        byte[] chunk = new byte[BUFFER_SIZE];
+        int r;
+        while (buffer.hasRemaining() && (r = is.read(chunk, 0, Math.min(chunk.length, buffer.remaining()))) != -1) {
+            buffer.put(chunk, 0, r);
+        }
+        if (buffer.hasRemaining()) {
+            throw new IOException("blob is shorter than its size: " + key);
+        }
+        buffer.flip();
+        cache.put(key, buffer);
+        return buffer.asReadOnlyBuffer();
+    }
+
+    public void invalidate(String key) {
+        cache.invalidate(key);
+        candidates.invalidate(key);
+    }
+
+    public long weight() {
+        return cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+}
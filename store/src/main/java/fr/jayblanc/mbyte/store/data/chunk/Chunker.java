@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.chunk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Content defined chunking, following FastCDC (gear rolling hash, normalized chunking with a stricter mask before the
+ * average size and a looser one after it). Boundaries only depend on the bytes around them, so an insertion or a
+ * removal in a file only changes the chunks it touches and the following ones are found again as they were.
+ * <p>
+ * The gear table is derived from a fixed seed: changing it moves every boundary and defeats deduplication against
+ * the chunks already stored.
+ *
+ * @author Jerome Blanchard
+ */
+public class Chunker {
+
+    private static final long SEED = 0x6d62797465L;
+    private static final long[] GEAR = new long[256];
+
+    static {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final int min;
+    private final int avg;
+    private final int max;
+    private final long maskS;
+    private final long maskL;
+
+    public Chunker(int avg) {
+        this(avg / 4, avg, avg * 4);
+    }
+
+    public Chunker(int min, int avg, int max) {
+        if (min <= 0 || min > avg || avg > max || Integer.bitCount(avg) != 1) {
+            throw new IllegalArgumentException("chunk sizes must verify 0 < min <= avg <= max with avg a power of two");
+        }
+        this.min = min;
+        this.avg = avg;
+        this.max = max;
+        int bits = Integer.numberOfTrailingZeros(avg);
+        // masks use the high bits of the gear hash, which depend on the last 64 bytes and not only on the last few ones
+        this.maskS = -1L << (64 - Math.min(63, bits + 2));
+        this.maskL = -1L << (64 - Math.max(1, bits - 2));
+    }
+
+    public int getMin() {
+        return min;
+    }
+
+    public int getAvg() {
+        return avg;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * Finds the first chunk boundary in the given bytes.
+     *
+     * @return the length of the chunk starting at off, never more than the max chunk size
+     */
+    public int cut(byte[] buffer, int off, int len) {
+        if (len <= min) {
+            return len;
+        }
+        int n = Math.min(len, max);
+        int normal = Math.min(n, avg);
+        long fp = 0;
+        int i = min;
+        for (; i < normal; i++) {
+            fp = (fp << 1) + GEAR[buffer[off + i] & 0xff];
+            if ((fp & maskS) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < n; i++) {
+            fp = (fp << 1) + GEAR[buffer[off + i] & 0xff];
+            if ((fp & maskL) == 0) {
+                return i + 1;
+            }
+        }
+        return n;
+    }
+
+    public Reader reader(InputStream is) {
+        return new Reader(is);
+    }
+
+    /**
+     * Splits a stream in chunks, keeping at most two max chunk sizes in memory.
+     */
+    public class Reader {
+
+        private final InputStream is;
+        private final byte[] buffer = new byte[max * 2];
+        private int start = 0;
+        private int end = 0;
+        private boolean eof = false;
+
+        Reader(InputStream is) {
+            this.is = is;
+        }
+
+        /**
+         * @return the next chunk, or null once the stream is exhausted
+         */
+        public byte[] next() throws IOException {
+            if (end - start < max && !eof) {
+                System.arraycopy(buffer, start, buffer, 0, end - start);
+                end -= start;
+                start = 0;
+                while (end < buffer.length) {
+                    int read = is.read(buffer, end, buffer.length - end);
+                    if (read < 0) {
+                        eof = true;
+                        break;
+                    }
+                    end += read;
+                }
+            }
+            if (start == end) {
+                return null;
+            }
+            int length = cut(buffer, start, end - start);
+            byte[] chunk = Arrays.copyOfRange(buffer, start, start + length);
+            start += length;
+            return chunk;
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.chunk;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ordered list of the chunks of a blob stored by chunks. Serialized as text: a header line, the blob size, then one
+ * line per chunk with its key and its length.
+ *
+ * @author Jerome Blanchard
+ */
+public class Manifest {
+
+    private static final String HEADER = "mbyte-manifest/1";
+
+    private final List<String> chunks = new ArrayList<>();
+    private long[] offsets = new long[16];
+    private long size = 0;
+
+    public Manifest() {
+    }
+
+    public void add(String chunk, long length) {
+        if (chunks.size() == offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[chunks.size()] = size;
+        chunks.add(chunk);
+        size += length;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public List<String> getChunks() {
+        return Collections.unmodifiableList(chunks);
+    }
+
+    public long getOffset(int index) {
+        return offsets[index];
+    }
+
+    public long getLength(int index) {
+        return (index + 1 < chunks.size() ? offsets[index + 1] : size) - offsets[index];
+    }
+
+    /**
+     * @return the index of the chunk holding the byte at the given offset
+     */
+    public int indexOf(long offset) {
+        int index = Arrays.binarySearch(offsets, 0, chunks.size(), offset);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    public void write(OutputStream os) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+        writer.write(HEADER);
+        writer.write('\n');
+        writer.write(Long.toString(size));
+        writer.write('\n');
+        for (int i = 0; i < chunks.size(); i++) {
+            writer.write(chunks.get(i));
+            writer.write(' ');
+            writer.write(Long.toString(getLength(i)));
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    public static Manifest read(InputStream is) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+        if (!HEADER.equals(reader.readLine())) {
+            throw new IOException("not a chunk manifest");
+        }
+        long expected = Long.parseLong(reader.readLine());
+        Manifest manifest = new Manifest();
+        String line;
+        while ((line = reader.readLine()) != null && !line.isEmpty()) {
+            int separator = line.indexOf(' ');
+            manifest.add(line.substring(0, separator), Long.parseLong(line.substring(separator + 1)));
+        }
+        if (manifest.getSize() != expected) {
+            throw new IOException("corrupted chunk manifest, chunks size " + manifest.getSize() + " does not match " + expected);
+        }
+        return manifest;
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.chunk;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reassembles a range of a chunked blob, opening each chunk only when the previous one has been fully read.
+ *
+ * @author Jerome Blanchard
+ */
+public class ManifestInputStream extends InputStream {
+
+    private final Manifest manifest;
+    private final ChunkOpener opener;
+    private int index;
+    private long position;
+    private long remaining;
+    private InputStream current;
+
+    public ManifestInputStream(Manifest manifest, ChunkOpener opener) {
+        this(manifest, 0, manifest.getSize(), opener);
+    }
+
+    public ManifestInputStream(Manifest manifest, long offset, long length, ChunkOpener opener) {
+        this.manifest = manifest;
+        this.opener = opener;
+        this.position = Math.max(0, Math.min(offset, manifest.getSize()));
+        this.remaining = Math.max(0, Math.min(length, manifest.getSize() - position));
+        this.index = remaining > 0 ? manifest.indexOf(position) : manifest.getChunks().size();
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int r = read(b, 0, 1);
+        return r < 0 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (remaining > 0) {
+            if (current == null) {
+                long start = position - manifest.getOffset(index);
+                long length = Math.min(manifest.getLength(index) - start, remaining);
+                current = opener.open(manifest.getChunks().get(index), start, length);
+            }
+            int r = current.read(b, off, (int) Math.min(len, remaining));
+            if (r > 0) {
+                position += r;
+                remaining -= r;
+                return r;
+            }
+            current.close();
+            current = null;
+            index++;
+            if (index >= manifest.getChunks().size() && remaining > 0) {
+                throw new IOException("unexpected end of chunked content");
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // chunks are located by offset, skipping never reads the bytes in between
+        long skipped = Math.max(0, Math.min(n, remaining));
+        if (skipped > 0) {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+            position += skipped;
+            remaining -= skipped;
+            index = remaining > 0 ? manifest.indexOf(position) : manifest.getChunks().size();
+        }
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (current != null) {
+            current.close();
+            current = null;
+        }
+    }
+
+    @FunctionalInterface
+    public interface ChunkOpener {
+        InputStream open(String chunk, long offset, long length) throws IOException;
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.compress;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * File format of compressed blobs: a 4 bytes magic, the logical (uncompressed) size on 8 bytes, then a zlib stream.
+ * Keeping the logical size in the header lets size() answer without inflating anything.
+ *
+ * @author Jerome Blanchard
+ */
+public class CompressedBlob {
+
+    private static final int MAGIC = 0x4d425a31; // MBZ1
+    private static final int HEADER_LENGTH = 12;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private CompressedBlob() {
+    }
+
+    /**
+     * Compresses the given prefix followed by the rest of the stream into the file, in a single pass.
+     *
+     * @return the logical size of the content
+     */
+    public static long write(Path file, byte[] prefix, InputStream is, int level) throws IOException {
+        Deflater deflater = new Deflater(level);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.position(HEADER_LENGTH);
+            DeflaterOutputStream dos = new DeflaterOutputStream(Channels.newOutputStream(channel), deflater, BUFFER_SIZE);
+            dos.write(prefix);
+            long size = prefix.length + is.transferTo(dos);
+            dos.finish();
+            dos.flush();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).putInt(MAGIC).putLong(size).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            return size;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static long size(Path file) throws IOException {
+        try (DataInputStream dis = new DataInputStream(Files.newInputStream(file))) {
+            return readHeader(dis);
+        }
+    }
+
+    public static InputStream open(Path file) throws IOException {
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+        try {
+            readHeader(dis);
+        } catch (IOException e) {
+            dis.close();
+            throw e;
+        }
+        return new InflaterInputStream(dis, new Inflater(), BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                inf.end();
+            }
+        };
+    }
+
+    /**
+     * Deflate streams cannot be entered in the middle: the bytes before the offset are inflated and dropped.
+     */
+    public static InputStream open(Path file, long offset, long length) throws IOException {
+        long skip = Math.min(offset, size(file));
+        InputStream is = open(file);
+        is.skipNBytes(skip);
+        return new FilterInputStream(is) {
+            private long remaining = Math.max(0, length);
+
+            @Override
+            public int read() throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int b = super.read();
+                if (b >= 0) {
+                    remaining--;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int r = super.read(b, off, (int) Math.min(len, remaining));
+                if (r > 0) {
+                    remaining -= r;
+                }
+                return r;
+            }
+        };
+    }
+
+    private static long readHeader(DataInputStream dis) throws IOException {
+        if (dis.readInt() != MAGIC) {
+            throw new IOException("not a compressed blob");
+        }
+        return dis.readLong();
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.compress;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Decides whether a blob is worth compressing, from its sniffed mime type and the first bytes of its content.
+ * <p>
+ * Media and archive formats are already compressed and are never tried. Anything else is probed: the Shannon entropy
+ * of the prefix bytes is a cheap estimate of how well deflate will do (plain text is around 4.5 bits per byte, already
+ * compressed or encrypted content close to 8).
+ *
+ * @author Jerome Blanchard
+ */
+public class CompressionPolicy {
+
+    private static final int MIN_SIZE = 4096;
+    private static final Set<String> COMPRESSED_TYPES = Set.of(
+            "application/zip", "application/gzip", "application/x-gzip", "application/x-bzip2", "application/x-xz", "application/x-7z-compressed",
+            "application/x-rar-compressed", "application/vnd.rar", "application/zstd", "application/java-archive", "application/epub+zip",
+            "application/x-tika-ooxml", "application/x-tika-msoffice");
+    private static final Set<String> UNCOMPRESSED_MEDIA = Set.of("image/bmp", "image/svg+xml", "image/x-portable-pixmap", "audio/wav", "audio/x-wav",
+            "image/tiff");
+
+    private final double maxEntropy;
+
+    public CompressionPolicy(double maxEntropy) {
+        this.maxEntropy = maxEntropy;
+    }
+
+    public boolean accept(String type, byte[] prefix) {
+        if (prefix.length < MIN_SIZE || isCompressedType(type)) {
+            return false;
+        }
+        return entropy(prefix) <= maxEntropy;
+    }
+
+    public static boolean isCompressedType(String type) {
+        if (type == null) {
+            return false;
+        }
+        String mimetype = type.toLowerCase(Locale.ROOT);
+        int parameters = mimetype.indexOf(';');
+        if (parameters > 0) {
+            mimetype = mimetype.substring(0, parameters).trim();
+        }
+        if (UNCOMPRESSED_MEDIA.contains(mimetype)) {
+            return false;
+        }
+        return mimetype.startsWith("image/") || mimetype.startsWith("video/") || mimetype.startsWith("audio/")
+                || mimetype.startsWith("application/vnd.openxmlformats-officedocument") || mimetype.startsWith("application/vnd.oasis.opendocument")
+                || COMPRESSED_TYPES.contains(mimetype);
+    }
+
+    /**
+     * @return the order 0 Shannon entropy of the bytes, in bits per byte
+     */
+    static double entropy(byte[] bytes) {
+        int[] counts = new int[256];
+        for (byte b : bytes) {
+            counts[b & 0xff]++;
+        }
+        double entropy = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                double p = (double) count / bytes.length;
+                entropy -= p * Math.log(p);
+            }
+        }
+        return entropy / Math.log(2);
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.hash;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.Blake3;
+
+/**
+ * BLAKE3 (256 bits output), pure java implementation of commons-codec.
+ *
+ * @author Jerome Blanchard
+ */
+public class BLAKE3Algorithm implements HashAlgorithm {
+
+    public static final String NAME = "BLAKE3";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Hasher create() {
+        Blake3 blake3 = Blake3.initHash();
+        return new Hasher() {
+            @Override
+            public void update(byte[] bytes, int offset, int length) {
+                blake3.update(bytes, offset, length);
+            }
+
+            @Override
+            public String digest() {
+                return Hex.encodeHexString(blake3.doFinalize(32));
+            }
+        };
+    }
+
+}
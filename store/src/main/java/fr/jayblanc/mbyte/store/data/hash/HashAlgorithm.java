@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.hash;
+
+import java.util.ServiceLoader;
+
+/**
+ * Hash algorithm service provider. Implementations are registered in META-INF/services and selected by name in the
+ * data store configuration (store.data.hash.*).
+ *
+ * @author Jerome Blanchard
+ */
+public interface HashAlgorithm {
+
+    /**
+     * Length of a content key: the hex digest of a 256 bits hash.
+     */
+    int KEY_LENGTH = 64;
+
+    String getName();
+
+    Hasher create();
+
+    static HashAlgorithm forName(String name) {
+        for (HashAlgorithm algorithm : ServiceLoader.load(HashAlgorithm.class, HashAlgorithm.class.getClassLoader())) {
+            if (algorithm.getName().equalsIgnoreCase(name)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("unknown hash algorithm: " + name);
+    }
+
+    /**
+     * Algorithm of the content keys. Only 256 bits digests are accepted: shorter ones are not keys for the data store
+     * layout and would not resist collisions.
+     */
+    static HashAlgorithm forKeys(String name) {
+        HashAlgorithm algorithm = forName(name);
+        if (algorithm.create().digest().length() != KEY_LENGTH) {
+            throw new IllegalArgumentException("hash algorithm " + algorithm.getName() + " does not produce 256 bits digests, it cannot compute content keys");
+        }
+        return algorithm;
+    }
+
+}
@@ -17,23 +17,131 @@
 package fr.jayblanc.mbyte.store.data.hash;
 
 import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 
 /**
+ * Filter stream computing the hash of the bytes read through it. It also counts those bytes and can keep a copy of
+ * the first ones (prefix) so that the content type can be sniffed without reading the stream a second time.
+ * <p>
+ * An optional secondary hasher (typically a fast checksum) is fed with the same bytes. Bytes read one at a time are
+ * gathered in a small buffer and handed to the hashers in bulk.
+ *
  * @author Jerome Blanchard (jerome.blanchard@fairandsmart.com)
  * @version 1.0
  */
-public abstract class HashedFilterInputStream extends FilterInputStream {
+public class HashedFilterInputStream extends FilterInputStream {
+
+	private static final int PENDING_CAPACITY = 8192;
+
+	private final Hasher hasher;
+	private final Hasher secondary;
+	private final byte[] prefix;
+	private final byte[] pending = new byte[PENDING_CAPACITY];
+	private int pendingLength = 0;
+	private int prefixLength = 0;
+	private long size = 0;
+	private String hash;
+	private String checksum;
 
-	protected HashedFilterInputStream(InputStream in) {
+	public HashedFilterInputStream(InputStream in, Hasher hasher) {
+		this(in, hasher, null, 0);
+	}
+
+	public HashedFilterInputStream(InputStream in, Hasher hasher, Hasher secondary, int prefixCapacity) {
 		super(in);
+		this.hasher = hasher;
+		this.secondary = secondary;
+		this.prefix = new byte[prefixCapacity];
+	}
+
+	@Override
+	public int read() throws IOException {
+		int c = in.read();
+		if (c == -1) {
+			return -1;
+		}
+		if (pendingLength == pending.length) {
+			flush();
+		}
+		pending[pendingLength++] = (byte) c;
+		if (prefixLength < prefix.length) {
+			prefix[prefixLength++] = (byte) c;
+		}
+		size++;
+		return c;
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException {
+		int r = in.read(bytes, offset, length);
+		if (r == -1) {
+			return r;
+		}
+		flush();
+		update(bytes, offset, r);
+		if (prefixLength < prefix.length) {
+			int captured = Math.min(r, prefix.length - prefixLength);
+			System.arraycopy(bytes, offset, prefix, prefixLength, captured);
+			prefixLength += captured;
+		}
+		size += r;
+		return r;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	public String getHash() {
+		if (hash == null) {
+			flush();
+			hash = hasher.digest();
+		}
+		return hash;
+	}
+
+	/**
+	 * @return the hash of the secondary hasher, null when there is none
+	 */
+	public String getChecksum() {
+		if (checksum == null && secondary != null) {
+			flush();
+			checksum = secondary.digest();
+		}
+		return checksum;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public byte[] getPrefix() {
+		return Arrays.copyOf(prefix, prefixLength);
+	}
+
+	private void flush() {
+		if (pendingLength > 0) {
+			update(pending, 0, pendingLength);
+			pendingLength = 0;
+		}
 	}
 
-	public abstract String getHash();
+	private void update(byte[] bytes, int offset, int length) {
+		hasher.update(bytes, offset, length);
+		if (secondary != null) {
+			secondary.update(bytes, offset, length);
+		}
+	}
+
+	public static HashedFilterInputStream SHA256(InputStream is) {
+		return new HashedFilterInputStream(is, new SHA256Algorithm().create());
+	}
 
-	public static HashedFilterInputStream SHA256(InputStream is) throws NoSuchAlgorithmException {
-		return new SHA256FilterInputStream(is);
+	public static HashedFilterInputStream SHA256(InputStream is, int prefixCapacity) {
+		return new HashedFilterInputStream(is, new SHA256Algorithm().create(), null, prefixCapacity);
 	}
 
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.hash;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental hash of a sequence of bytes.
+ *
+ * @author Jerome Blanchard
+ */
+public interface Hasher {
+
+    void update(byte[] bytes, int offset, int length);
+
+    /**
+     * Feeds the remaining bytes of a buffer, without copying them when the buffer is backed by an array.
+     */
+    default void update(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            this.update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+            return;
+        }
+        byte[] bytes = new byte[Math.min(buffer.remaining(), 8192)];
+        while (buffer.hasRemaining()) {
+            int length = Math.min(buffer.remaining(), bytes.length);
+            buffer.get(bytes, 0, length);
+            this.update(bytes, 0, length);
+        }
+    }
+
+    /**
+     * @return the lowercase hexadecimal hash of every byte given so far
+     */
+    String digest();
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.hash;
+
+import org.apache.commons.codec.binary.Hex;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * JDK SHA-256. HotSpot replaces its compression function by the SHA extensions of the CPU when available
+ * (UseSHA256Intrinsics), which makes it the fastest cryptographic hash on most servers.
+ *
+ * @author Jerome Blanchard
+ */
+public class SHA256Algorithm implements HashAlgorithm {
+
+    public static final String NAME = "SHA-256";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Hasher create() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance(NAME);
+            return new Hasher() {
+                @Override
+                public void update(byte[] bytes, int offset, int length) {
+                    digest.update(bytes, offset, length);
+                }
+
+                @Override
+                public void update(ByteBuffer buffer) {
+                    digest.update(buffer);
+                }
+
+                @Override
+                public String digest() {
+                    return Hex.encodeHexString(digest.digest());
+                }
+            };
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
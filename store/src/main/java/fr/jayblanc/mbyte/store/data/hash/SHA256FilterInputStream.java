@@ -1,59 +0,0 @@
-/*
- * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
- *
- * This program is free software: you can redistribute it and/or modify
- * it under the terms of the GNU General Public License as published by
- * the Free Software Foundation, either version 3 of the License, or
- * (at your option) any later version.
- *
- * This program is distributed in the hope that it will be useful,
- * but WITHOUT ANY WARRANTY; without even the implied warranty of
- * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
- * GNU General Public License for more details.
- *
- * You should have received a copy of the GNU General Public License
- * along with this program.  If not, see <https://www.gnu.org/licenses/>.
- */
-package fr.jayblanc.mbyte.store.data.hash;
-
-import org.apache.commons.codec.binary.Hex;
-
-import java.io.IOException;
-import java.io.InputStream;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-
-public class SHA256FilterInputStream extends HashedFilterInputStream {
-
-    private final MessageDigest digest;
-
-    protected SHA256FilterInputStream(InputStream in) throws NoSuchAlgorithmException {
-        super(in);
-        digest = MessageDigest.getInstance("SHA-256");
-    }
-
-    @Override
-    public int read() throws IOException {
-        int c = in.read();
-        if (c == -1) {
-            return -1;
-        }
-        digest.update((byte)(c & 0xff));
-        return c;
-    }
-
-    @Override
-    public int read(byte[] bytes, int offset, int length) throws IOException {
-        int r;
-        if ((r = in.read(bytes, offset, length)) == -1) {
-            return r;
-        }
-        digest.update(bytes, offset, r);
-        return r;
-    }
-
-    @Override
-    public String getHash(){
-        return Hex.encodeHexString(digest.digest());
-    }
-}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.hash;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * xxHash64 (seed 0). Not a cryptographic hash and too short to address content, but several times faster than any of
+ * them: it is meant for the secondary checksum used by integrity checks.
+ *
+ * @author Jerome Blanchard
+ */
+public class XXHash64Algorithm implements HashAlgorithm {
+
+    public static final String NAME = "XXH64";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Hasher create() {
+        return new XXHash64(0);
+    }
+
+    static class XXHash64 implements Hasher {
+
+        private static final long P1 = 0x9E3779B185EBCA87L;
+        private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+        private static final long P3 = 0x165667B19E3779F9L;
+        private static final long P4 = 0x85EBCA77C2B2AE63L;
+        private static final long P5 = 0x27D4EB2F165667C5L;
+        private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+        private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+        private final long seed;
+        private final byte[] buffer = new byte[32];
+        private int buffered = 0;
+        private long total = 0;
+        private long v1;
+        private long v2;
+        private long v3;
+        private long v4;
+
+        XXHash64(long seed) {
+            this.seed = seed;
+            this.v1 = seed + P1 + P2;
+            this.v2 = seed + P2;
+            this.v3 = seed;
+            this.v4 = seed - P1;
+        }
+
+        @Override
+        public void update(byte[] bytes, int offset, int length) {
+            total += length;
+            if (buffered + length < 32) {
+                System.arraycopy(bytes, offset, buffer, buffered, length);
+                buffered += length;
+                return;
+            }
+            if (buffered > 0) {
+                int fill = 32 - buffered;
+                System.arraycopy(bytes, offset, buffer, buffered, fill);
+                stripe(buffer, 0);
+                offset += fill;
+                length -= fill;
+                buffered = 0;
+            }
+            int limit = offset + length - 32;
+            while (offset <= limit) {
+                stripe(bytes, offset);
+                offset += 32;
+            }
+            buffered = limit + 32 - offset;
+            System.arraycopy(bytes, offset, buffer, 0, buffered);
+        }
+
+        @Override
+        public String digest() {
+            long h;
+            if (total >= 32) {
+                h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+                h = merge(h, v1);
+                h = merge(h, v2);
+                h = merge(h, v3);
+                h = merge(h, v4);
+            } else {
+                h = seed + P5;
+            }
+            h += total;
+            int i = 0;
+            for (; i + 8 <= buffered; i += 8) {
+                h ^= round(0, (long) LONG.get(buffer, i));
+                h = Long.rotateLeft(h, 27) * P1 + P4;
+            }
+            if (i + 4 <= buffered) {
+                h ^= ((int) INT.get(buffer, i) & 0xFFFFFFFFL) * P1;
+                h = Long.rotateLeft(h, 23) * P2 + P3;
+                i += 4;
+            }
+            for (; i < buffered; i++) {
+                h ^= (buffer[i] & 0xFFL) * P5;
+                h = Long.rotateLeft(h, 11) * P1;
+            }
+            h ^= h >>> 33;
+            h *= P2;
+            h ^= h >>> 29;
+            h *= P3;
+            h ^= h >>> 32;
+            return String.format("%016x", h);
+        }
+
+        private void stripe(byte[] bytes, int offset) {
+            v1 = round(v1, (long) LONG.get(bytes, offset));
+            v2 = round(v2, (long) LONG.get(bytes, offset + 8));
+            v3 = round(v3, (long) LONG.get(bytes, offset + 16));
+            v4 = round(v4, (long) LONG.get(bytes, offset + 24));
+        }
+
+        private static long round(long acc, long input) {
+            acc += input * P2;
+            acc = Long.rotateLeft(acc, 31);
+            return acc * P1;
+        }
+
+        private static long merge(long acc, long value) {
+            acc ^= round(0, value);
+            return acc * P1 + P4;
+        }
+    }
+
+}
@@ -0,0 +1,467 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.pack;
+
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append only storage of small blobs in pack segments.
+ * <p>
+ * Each blob is a record appended to the active segment: a header (magic, key, timestamp, length, CRC32C) followed by the
+ * content. Deleting a blob appends a tombstone. The offset index lives in memory; it is rebuilt at startup from the
+ * index file written for each sealed segment and from a scan of the active segment, where a torn record left by a crash
+ * is detected by its checksum and truncated.
+ * <p>
+ * When the active segment is full it is synced, its index file is written (atomically) and a new segment is started,
+ * so that a crash at any point leaves either an indexed sealed segment or a segment that is scanned at startup.
+ * Compaction copies the live records of segments that are mostly dead into the active segment and removes them.
+ * <p>
+ * A put returns once its record has been forced to disk. Puts that arrive while a force is running are made durable by
+ * the next one (group commit), so concurrent writers share the cost of a sync instead of queuing one each.
+ *
+ * @author Jerome Blanchard
+ */
+public class PackStore implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(PackStore.class.getName());
+    private static final int PUT = 0x4d425031; // MBP1
+    private static final int DEL = 0x4d424431; // MBD1
+    private static final int KEY_LENGTH = 32;
+    private static final int HEADER_LENGTH = 4 + KEY_LENGTH + 8 + 4 + 4;
+    private static final String PACK_EXTENSION = ".pack";
+    private static final String INDEX_EXTENSION = ".idx";
+    private static final double MAX_DEAD_RATIO = 0.5;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Path folder;
+    private final long segmentSize;
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+    private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object writer = new Object();
+    private final Object syncer = new Object();
+    private Segment active;
+    // sequence of the last appended record, guarded by writer
+    private long appended = 0;
+    // sequence up to which records are known to be on disk, guarded by syncer
+    private long synced = 0;
+
+    public PackStore(Path folder, long segmentSize) throws IOException {
+        this.folder = folder;
+        this.segmentSize = segmentSize;
+        this.open();
+    }
+
+    public boolean contains(String key) {
+        return index.containsKey(key);
+    }
+
+    /**
+     * Appends a blob, or only refreshes its modification time when it is already packed.
+     */
+    public void put(String key, byte[] data) throws IOException {
+        long sequence;
+        synchronized (writer) {
+            Entry existing = index.get(key);
+            if (existing != null) {
+                existing.modified = System.currentTimeMillis();
+            } else {
+                index.put(key, this.append(PUT, key, data, System.currentTimeMillis()));
+            }
+            // an existing record may have been appended by a concurrent put that is not synced yet
+            sequence = appended;
+        }
+        this.sync(sequence);
+    }
+
+    public Optional<byte[]> get(String key) throws IOException {
+        // a concurrent compaction may move the entry to another segment, the index is then read again
+        for (int attempt = 0; attempt < 3; attempt++) {
+            Entry entry = index.get(key);
+            if (entry == null) {
+                return Optional.empty();
+            }
+            lock.readLock().lock();
+            try {
+                Segment segment = segments.get(entry.segment);
+                if (segment != null) {
+                    return Optional.of(segment.read(entry.offset, entry.length));
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        throw new IOException("unable to read packed blob, segment keeps moving: " + key);
+    }
+
+    /**
+     * @return the size of a packed blob, or -1 when it is not packed
+     */
+    public long size(String key) {
+        Entry entry = index.get(key);
+        return entry == null ? -1 : entry.length;
+    }
+
+    /**
+     * @return the modification time of a packed blob, or -1 when it is not packed
+     */
+    public long modified(String key) {
+        Entry entry = index.get(key);
+        return entry == null ? -1 : entry.modified;
+    }
+
+    public void touch(String key) {
+        Entry entry = index.get(key);
+        if (entry != null) {
+            entry.modified = System.currentTimeMillis();
+        }
+    }
+
+    public boolean delete(String key) throws IOException {
+        synchronized (writer) {
+            Entry entry = index.remove(key);
+            if (entry == null) {
+                return false;
+            }
+            Segment segment = segments.get(entry.segment);
+            if (segment != null) {
+                segment.live -= HEADER_LENGTH + entry.length;
+            }
+            this.append(DEL, key, EMPTY, System.currentTimeMillis());
+            return true;
+        }
+    }
+
+    public Stream<String> keys() {
+        return new ArrayList<>(index.keySet()).stream();
+    }
+
+    /**
+     * Rewrites the live records of the sealed segments holding more dead bytes than live ones, then removes them.
+     *
+     * @return the number of segments removed
+     */
+    public int compact() throws IOException {
+        int compacted = 0;
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            if (segment == active || segment.live > segment.size * (1 - MAX_DEAD_RATIO)) {
+                continue;
+            }
+            LOGGER.log(Level.FINE, "Compacting pack segment " + segment.id + ", " + segment.live + " live bytes out of " + segment.size);
+            boolean oldest = segment.id == segments.firstKey();
+            synchronized (writer) {
+                for (Record record : this.records(segment)) {
+                    if (record.put) {
+                        Entry entry = index.get(record.key);
+                        if (entry != null && entry.segment == segment.id && entry.offset == record.offset) {
+                            Entry moved = this.append(PUT, record.key, segment.read(record.offset, record.length), record.timestamp);
+                            moved.modified = entry.modified;
+                            index.put(record.key, moved);
+                        }
+                    } else if (!oldest && !index.containsKey(record.key)) {
+                        // an older segment may still hold the deleted record, the tombstone must survive it
+                        this.append(DEL, record.key, EMPTY, record.timestamp);
+                    }
+                }
+                // copies must be durable before the only other copy disappears
+                active.channel.force(false);
+            }
+            lock.writeLock().lock();
+            try {
+                segments.remove(segment.id);
+                segment.channel.close();
+                Files.deleteIfExists(segment.index);
+                Files.deleteIfExists(segment.pack);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            compacted++;
+        }
+        return compacted;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writer) {
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+        }
+    }
+
+    //INTERNAL OPERATIONS
+
+    private void open() throws IOException {
+        Files.createDirectories(folder);
+        List<Long> ids = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, "*" + PACK_EXTENSION)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                ids.add(Long.parseLong(name.substring(0, name.length() - PACK_EXTENSION.length())));
+            }
+        }
+        Collections.sort(ids);
+        long now = System.currentTimeMillis();
+        for (long id : ids) {
+            Segment segment = new Segment(id);
+            boolean last = id == ids.get(ids.size() - 1);
+            List<Record> records;
+            if (!last && Files.exists(segment.index)) {
+                records = this.readIndex(segment);
+            } else {
+                records = this.scan(segment, last);
+                if (last) {
+                    segment.records = records;
+                } else {
+                    // sealed without its index, the crash happened during rotation
+                    this.writeIndex(segment, records);
+                }
+            }
+            for (Record record : records) {
+                if (record.put) {
+                    // the grace period of the garbage collector restarts with the store
+                    index.put(record.key, new Entry(id, record.offset, record.length, Math.max(record.timestamp, now)));
+                } else {
+                    index.remove(record.key);
+                }
+            }
+            segments.put(id, segment);
+        }
+        for (Entry entry : index.values()) {
+            segments.get(entry.segment).live += HEADER_LENGTH + entry.length;
+        }
+        if (segments.isEmpty()) {
+            Segment segment = new Segment(1);
+            segment.records = new ArrayList<>();
+            segments.put(segment.id, segment);
+        }
+        active = segments.lastEntry().getValue();
+        LOGGER.log(Level.INFO, "Pack store opened with " + segments.size() + " segments and " + index.size() + " blobs");
+    }
+
+    private Entry append(int type, String key, byte[] data, long timestamp) throws IOException {
+        if (active.size > 0 && active.size + HEADER_LENGTH + data.length > segmentSize) {
+            this.rotate();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + data.length);
+        buffer.putInt(type).put(decode(key)).putLong(timestamp).putInt(data.length);
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), 4, KEY_LENGTH + 8 + 4);
+        crc.update(data);
+        buffer.putInt((int) crc.getValue()).put(data).flip();
+        long position = active.size;
+        while (buffer.hasRemaining()) {
+            active.channel.write(buffer, position + buffer.position());
+        }
+        active.size += buffer.limit();
+        active.records.add(new Record(type == PUT, key, position + HEADER_LENGTH, data.length, timestamp));
+        if (type == PUT) {
+            active.live += buffer.limit();
+        }
+        appended++;
+        return new Entry(active.id, position + HEADER_LENGTH, data.length, timestamp);
+    }
+
+    /**
+     * Forces the active segment unless a concurrent force already covered the given record. Records of the previous
+     * segments have been forced when those were sealed.
+     */
+    private void sync(long sequence) throws IOException {
+        synchronized (syncer) {
+            if (synced >= sequence) {
+                return;
+            }
+            long target;
+            Segment segment;
+            synchronized (writer) {
+                target = appended;
+                segment = active;
+            }
+            segment.channel.force(false);
+            synced = target;
+        }
+    }
+
+    private void rotate() throws IOException {
+        LOGGER.log(Level.FINE, "Sealing pack segment " + active.id);
+        active.channel.force(true);
+        this.writeIndex(active, active.records);
+        active.records = null;
+        Segment next = new Segment(active.id + 1);
+        next.records = new ArrayList<>();
+        segments.put(next.id, next);
+        active = next;
+    }
+
+    private List<Record> records(Segment segment) throws IOException {
+        if (Files.exists(segment.index)) {
+            return this.readIndex(segment);
+        }
+        return this.scan(segment, false);
+    }
+
+    /**
+     * Reads every valid record of a segment. Reading stops at the first record that is incomplete or does not match its
+     * checksum; for the active segment, that torn tail is truncated.
+     */
+    private List<Record> scan(Segment segment, boolean truncate) throws IOException {
+        List<Record> records = new ArrayList<>();
+        long size = segment.channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        while (position + HEADER_LENGTH <= size) {
+            header.clear();
+            segment.readFully(header, position);
+            int type = header.getInt(0);
+            int length = header.getInt(4 + KEY_LENGTH + 8);
+            if ((type != PUT && type != DEL) || length < 0 || position + HEADER_LENGTH + length > size) {
+                break;
+            }
+            byte[] data = segment.read(position + HEADER_LENGTH, length);
+            CRC32C crc = new CRC32C();
+            crc.update(header.array(), 4, KEY_LENGTH + 8 + 4);
+            crc.update(data);
+            if ((int) crc.getValue() != header.getInt(4 + KEY_LENGTH + 8 + 4)) {
+                break;
+            }
+            String key = Hex.encodeHexString(Arrays.copyOfRange(header.array(), 4, 4 + KEY_LENGTH));
+            records.add(new Record(type == PUT, key, position + HEADER_LENGTH, length, header.getLong(4 + KEY_LENGTH)));
+            position += HEADER_LENGTH + length;
+        }
+        if (position < size) {
+            if (truncate) {
+                LOGGER.log(Level.WARNING, "Truncating torn tail of pack segment " + segment.id + " at " + position + " (was " + size + ")");
+                segment.channel.truncate(position);
+            } else {
+                LOGGER.log(Level.SEVERE, "Pack segment " + segment.id + " is corrupted after offset " + position + ", following records are lost");
+            }
+        }
+        segment.size = position;
+        return records;
+    }
+
+    private void writeIndex(Segment segment, List<Record> records) throws IOException {
+        Path tmp = segment.index.resolveSibling(segment.index.getFileName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp.toFile());
+             DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos))) {
+            dos.writeLong(segment.size);
+            dos.writeInt(records.size());
+            for (Record record : records) {
+                dos.writeBoolean(record.put);
+                dos.write(decode(record.key));
+                dos.writeLong(record.offset);
+                dos.writeInt(record.length);
+                dos.writeLong(record.timestamp);
+            }
+            dos.flush();
+            fos.getFD().sync();
+        }
+        Files.move(tmp, segment.index, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private List<Record> readIndex(Segment segment) throws IOException {
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.index)))) {
+            segment.size = dis.readLong();
+            int count = dis.readInt();
+            List<Record> records = new ArrayList<>(count);
+            byte[] key = new byte[KEY_LENGTH];
+            for (int i = 0; i < count; i++) {
+                boolean put = dis.readBoolean();
+                dis.readFully(key);
+                records.add(new Record(put, Hex.encodeHexString(key), dis.readLong(), dis.readInt(), dis.readLong()));
+            }
+            return records;
+        }
+    }
+
+    private static byte[] decode(String key) throws IOException {
+        try {
+            byte[] bytes = Hex.decodeHex(key);
+            if (bytes.length != KEY_LENGTH) {
+                throw new IOException("invalid blob key for a pack: " + key);
+            }
+            return bytes;
+        } catch (DecoderException e) {
+            throw new IOException("invalid blob key for a pack: " + key, e);
+        }
+    }
+
+    private record Record(boolean put, String key, long offset, int length, long timestamp) {
+    }
+
+    private static class Entry {
+        private final long segment;
+        private final long offset;
+        private final int length;
+        private volatile long modified;
+
+        Entry(long segment, long offset, int length, long modified) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.modified = modified;
+        }
+    }
+
+    private class Segment {
+        private final long id;
+        private final Path pack;
+        private final Path index;
+        private final FileChannel channel;
+        private long size;
+        private long live;
+        private List<Record> records;
+
+        Segment(long id) throws IOException {
+            this.id = id;
+            this.pack = folder.resolve(String.format("%012d", id) + PACK_EXTENSION);
+            this.index = folder.resolve(String.format("%012d", id) + INDEX_EXTENSION);
+            this.channel = FileChannel.open(pack, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.size = channel.size();
+        }
+
+        byte[] read(long offset, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            this.readFully(buffer, offset);
+            return buffer.array();
+        }
+
+        void readFully(ByteBuffer buffer, long offset) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new EOFException("unexpected end of pack segment " + id);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.s3;
+
+import fr.jayblanc.mbyte.store.data.FileRangeInputStream;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Minimal client of the S3 REST API, limited to what the data store needs: objects are uploaded from local files (in
+ * one request or in parts), read whole or by range, listed, copied and deleted. Requests use path style addressing
+ * (endpoint/bucket/name), which every S3 compatible server supports, and are signed with {@link S3Signer}; payloads are
+ * not hashed for signing (UNSIGNED-PAYLOAD), the content hash of blobs being verified by the store itself.
+ *
+ * @author Jerome Blanchard
+ */
+public class S3Client {
+
+    /**
+     * S3 rejects parts smaller than this, except the last one.
+     */
+    public static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    /**
+     * S3 rejects a CopyObject, and a part of an UploadPartCopy, larger than this.
+     */
+    public static final long MAX_COPY_SIZE = 5L * 1024 * 1024 * 1024;
+
+    private final URI endpoint;
+    private final String bucket;
+    private final S3Signer signer;
+    private final HttpClient http;
+
+    public S3Client(URI endpoint, String region, String bucket, String accessKey, String secretKey) {
+        this.endpoint = endpoint;
+        this.bucket = bucket;
+        this.signer = new S3Signer(region, accessKey, secretKey);
+        this.http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    }
+
+    public record S3Object(String name, long size, long modified) {
+    }
+
+    public Optional<S3Object> head(String name) throws IOException {
+        HttpResponse<InputStream> response = this.send("HEAD", name, Map.of(), Map.of(), HttpRequest.BodyPublishers.noBody());
+        if (response.statusCode() == 404) {
+            response.body().close();
+            return Optional.empty();
+        }
+        // the body of a HEAD response is empty, it is still drained so that the connection can be reused
+        this.consume("HEAD", name, response);
+        long size = response.headers().firstValueAsLong("Content-Length").orElse(0);
+        long modified = response.headers().firstValue("Last-Modified")
+                .map(value -> ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli()).orElse(0L);
+        return Optional.of(new S3Object(name, size, modified));
+    }
+
+    /**
+     * @param length the number of bytes to read from offset, a negative value or one going past the end of the object
+     *               reads up to the end
+     * @throws NoSuchFileException when the object does not exist
+     */
+    public InputStream get(String name, long offset, long length) throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        if (length == 0) {
+            return InputStream.nullInputStream();
+        }
+        if (offset > 0 || length > 0) {
+            headers.put("Range", "bytes=" + offset + "-" + (length > 0 && length <= Long.MAX_VALUE - offset ? Long.toString(offset + length - 1) : ""));
+        }
+        HttpResponse<InputStream> response = this.send("GET", name, Map.of(), headers, HttpRequest.BodyPublishers.noBody());
+        if (response.statusCode() == 416) {
+            // range starting after the end of the object
+            response.body().close();
+            return InputStream.nullInputStream();
+        }
+        this.check("GET", name, response);
+        return response.body();
+    }
+
+    public void put(String name, Path file, long size) throws IOException {
+        this.consume("PUT", name, this.send("PUT", name, Map.of(), Map.of(), this.body(file, 0, size)));
+    }
+
+    public String createMultipartUpload(String name) throws IOException {
+        HttpResponse<InputStream> response = this.send("POST", name, Map.of("uploads", ""), Map.of(), HttpRequest.BodyPublishers.noBody());
+        return this.text(this.xml("POST", name, response).getDocumentElement(), "UploadId");
+    }
+
+    /**
+     * @return the entity tag of the part, to be given back when completing the upload
+     */
+    public String uploadPart(String name, String upload, int part, Path file, long offset, long length) throws IOException {
+        HttpResponse<InputStream> response = this.send("PUT", name, Map.of("partNumber", Integer.toString(part), "uploadId", upload), Map.of(),
+                this.body(file, offset, length));
+        this.consume("PUT", name, response);
+        return response.headers().firstValue("ETag").orElseThrow(() -> new IOException("S3 part upload returned no ETag for " + name));
+    }
+
+    public void completeMultipartUpload(String name, String upload, List<String> etags) throws IOException {
+        StringBuilder xml = new StringBuilder("<CompleteMultipartUpload>");
+        for (int i = 0; i < etags.size(); i++) {
+            xml.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>").append(etags.get(i)).append("</ETag></Part>");
+        }
+        xml.append("</CompleteMultipartUpload>");
+        HttpResponse<InputStream> response = this.send("POST", name, Map.of("uploadId", upload), Map.of(),
+                HttpRequest.BodyPublishers.ofString(xml.toString(), StandardCharsets.UTF_8));
+        // errors of a complete request may come with a 200 status, in the body
+        Element root = this.xml("POST", name, response).getDocumentElement();
+        if ("Error".equals(root.getTagName())) {
+            throw new IOException("S3 multipart upload completion failed for " + name + ": " + this.text(root, "Code"));
+        }
+    }
+
+    public void abortMultipartUpload(String name, String upload) throws IOException {
+        this.consume("DELETE", name, this.send("DELETE", name, Map.of("uploadId", upload), Map.of(), HttpRequest.BodyPublishers.noBody()));
+    }
+
+    /**
+     * Copies an object onto itself, which refreshes its modification time. Objects too large for a single copy are
+     * copied server side one range at a time, through a multipart upload.
+     */
+    public void touch(String name, long size) throws IOException {
+        this.touch(name, size, MAX_COPY_SIZE);
+    }
+
+    void touch(String name, long size, long maxCopySize) throws IOException {
+        if (size <= maxCopySize) {
+            Map<String, String> headers = Map.of("x-amz-copy-source", "/" + bucket + "/" + name, "x-amz-metadata-directive", "REPLACE");
+            this.copy("PUT", name, this.send("PUT", name, Map.of(), headers, HttpRequest.BodyPublishers.noBody()));
+            return;
+        }
+        String upload = this.createMultipartUpload(name);
+        try {
+            List<String> etags = new ArrayList<>();
+            for (long offset = 0; offset < size; offset += maxCopySize) {
+                long last = Math.min(offset + maxCopySize, size) - 1;
+                Map<String, String> query = Map.of("partNumber", Integer.toString(etags.size() + 1), "uploadId", upload);
+                Map<String, String> headers = Map.of("x-amz-copy-source", "/" + bucket + "/" + name, "x-amz-copy-source-range", "bytes=" + offset + "-" + last);
+                etags.add(this.copy("PUT", name, this.send("PUT", name, query, headers, HttpRequest.BodyPublishers.noBody())));
+            }
+            this.completeMultipartUpload(name, upload, etags);
+        } catch (IOException e) {
+            try {
+                this.abortMultipartUpload(name, upload);
+            } catch (IOException ae) {
+                e.addSuppressed(ae);
+            }
+            throw e;
+        }
+    }
+
+    public void delete(String name) throws IOException {
+        HttpResponse<InputStream> response = this.send("DELETE", name, Map.of(), Map.of(), HttpRequest.BodyPublishers.noBody());
+        if (response.statusCode() != 404) {
+            this.consume("DELETE", name, response);
+        } else {
+            response.body().close();
+        }
+    }
+
+    /**
+     * Lists the names of the objects under a prefix, one page of results being fetched at a time.
+     */
+    public Stream<String> list(String prefix) {
+        Iterator<String> iterator = new Iterator<>() {
+            private final Deque<String> page = new ArrayDeque<>();
+            private String token;
+            private boolean last;
+
+            @Override
+            public boolean hasNext() {
+                while (page.isEmpty() && !last) {
+                    this.fetch();
+                }
+                return !page.isEmpty();
+            }
+
+            @Override
+            public String next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.poll();
+            }
+
+            private void fetch() {
+                Map<String, String> query = new HashMap<>(Map.of("list-type", "2", "prefix", prefix));
+                if (token != null) {
+                    query.put("continuation-token", token);
+                }
+                try {
+                    Element root = xml("GET", "", send("GET", "", query, Map.of(), HttpRequest.BodyPublishers.noBody())).getDocumentElement();
+                    NodeList contents = root.getElementsByTagName("Contents");
+                    for (int i = 0; i < contents.getLength(); i++) {
+                        page.add(text((Element) contents.item(i), "Key"));
+                    }
+                    token = text(root, "NextContinuationToken");
+                    last = !"true".equals(text(root, "IsTruncated")) || token == null;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    //INTERNAL OPERATIONS
+
+    private HttpResponse<InputStream> send(String method, String name, Map<String, String> query, Map<String, String> headers,
+                                           HttpRequest.BodyPublisher body) throws IOException {
+        String path = (endpoint.getPath().endsWith("/") ? endpoint.getPath() : endpoint.getPath() + "/") + bucket + (name.isEmpty() ? "" : "/" + name);
+        String host = endpoint.getHost() + (endpoint.getPort() != -1 ? ":" + endpoint.getPort() : "");
+        Instant now = Instant.now();
+        Map<String, String> signed = new HashMap<>(headers);
+        signed.put("host", host);
+        signed.put("x-amz-date", S3Signer.amzDate(now));
+        signed.put("x-amz-content-sha256", S3Signer.UNSIGNED_PAYLOAD);
+        String authorization = signer.authorization(method, path, query, signed, now);
+        String uri = endpoint.getScheme() + "://" + host + S3Signer.encodePath(path) + (query.isEmpty() ? "" : "?" + S3Signer.canonicalQuery(query));
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(uri)).method(method, body).header("Authorization", authorization);
+        signed.forEach((header, value) -> {
+            if (!header.equals("host")) {
+                builder.header(header, value);
+            }
+        });
+        try {
+            return http.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("S3 request interrupted: " + method + " " + name, e);
+        }
+    }
+
+    private HttpRequest.BodyPublisher body(Path file, long offset, long length) {
+        return HttpRequest.BodyPublishers.fromPublisher(HttpRequest.BodyPublishers.ofInputStream(() -> {
+            try {
+                return new FileRangeInputStream(file, offset, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }), length);
+    }
+
+    private void check(String method, String name, HttpResponse<InputStream> response) throws IOException {
+        if (response.statusCode() == 404) {
+            response.body().close();
+            throw new NoSuchFileException(name);
+        }
+        if (response.statusCode() / 100 != 2) {
+            String error;
+            try (InputStream is = response.body()) {
+                error = new String(is.readNBytes(1024), StandardCharsets.UTF_8);
+            }
+            throw new IOException("S3 " + method + " " + name + " failed with status " + response.statusCode() + ": " + error);
+        }
+    }
+
+    private void consume(String method, String name, HttpResponse<InputStream> response) throws IOException {
+        this.check(method, name, response);
+        try (InputStream is = response.body()) {
+            is.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    private Document xml(String method, String name, HttpResponse<InputStream> response) throws IOException {
+        this.check(method, name, response);
+        try (InputStream is = response.body()) {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            return factory.newDocumentBuilder().parse(new ByteArrayInputStream(is.readAllBytes()));
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("S3 " + method + " " + name + " returned an invalid response", e);
+        }
+    }
+
+    /**
+     * Errors of a copy request may come with a 200 status, in the body.
+     *
+     * @return the entity tag of the copy
+     */
+    private String copy(String method, String name, HttpResponse<InputStream> response) throws IOException {
+        Element root = this.xml(method, name, response).getDocumentElement();
+        if ("Error".equals(root.getTagName())) {
+            throw new IOException("S3 copy failed for " + name + ": " + this.text(root, "Code"));
+        }
+        return this.text(root, "ETag");
+    }
+
+    private String text(Element parent, String tag) {
+        NodeList nodes = parent.getElementsByTagName(tag);
+        return nodes.getLength() > 0 ? nodes.item(0).getTextContent() : null;
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.s3;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.codec.digest.HmacAlgorithms;
+import org.apache.commons.codec.digest.HmacUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * AWS Signature Version 4 of S3 requests, as accepted by AWS and by S3 compatible servers (MinIO, Ceph, Garage...).
+ *
+ * @author Jerome Blanchard
+ */
+public class S3Signer {
+
+    public static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    public static final String EMPTY_PAYLOAD = DigestUtils.sha256Hex(new byte[0]);
+    private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+    private static final String SERVICE = "s3";
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyyMMdd").withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    private final String region;
+    private final String accessKey;
+    private final String secretKey;
+
+    public S3Signer(String region, String accessKey, String secretKey) {
+        this.region = region;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+    }
+
+    public static String amzDate(Instant instant) {
+        return DATE_TIME.format(instant);
+    }
+
+    /**
+     * @param path the raw (not encoded) absolute path of the request
+     * @param query the raw query parameters
+     * @param headers the headers to sign, host, x-amz-date and x-amz-content-sha256 included
+     * @return the value of the Authorization header
+     */
+    public String authorization(String method, String path, Map<String, String> query, Map<String, String> headers, Instant instant) {
+        SortedMap<String, String> signed = new TreeMap<>();
+        headers.forEach((name, value) -> signed.put(name.toLowerCase(), value.trim()));
+        String signedHeaders = String.join(";", signed.keySet());
+        String canonical = method + "\n"
+                + encodePath(path) + "\n"
+                + canonicalQuery(query) + "\n"
+                + signed.entrySet().stream().map(e -> e.getKey() + ":" + e.getValue() + "\n").collect(Collectors.joining()) + "\n"
+                + signedHeaders + "\n"
+                + signed.get("x-amz-content-sha256");
+        String scope = DATE.format(instant) + "/" + region + "/" + SERVICE + "/aws4_request";
+        String toSign = ALGORITHM + "\n" + amzDate(instant) + "\n" + scope + "\n" + DigestUtils.sha256Hex(canonical);
+        byte[] key = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), DATE.format(instant));
+        key = hmac(key, region);
+        key = hmac(key, SERVICE);
+        key = hmac(key, "aws4_request");
+        String signature = Hex.encodeHexString(hmac(key, toSign));
+        return ALGORITHM + " Credential=" + accessKey + "/" + scope + ", SignedHeaders=" + signedHeaders + ", Signature=" + signature;
+    }
+
+    public static String canonicalQuery(Map<String, String> query) {
+        return new TreeMap<>(query).entrySet().stream().map(e -> encode(e.getKey()) + "=" + encode(e.getValue())).collect(Collectors.joining("&"));
+    }
+
+    public static String encodePath(String path) {
+        return Arrays.stream(path.split("/", -1)).map(S3Signer::encode).collect(Collectors.joining("/"));
+    }
+
+    /**
+     * URI encoding of SigV4: every byte but the RFC 3986 unreserved characters is percent encoded.
+     */
+    public static String encode(String value) {
+        StringBuilder builder = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xff);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_' || c == '.' || c == '~') {
+                builder.append(c);
+            } else {
+                builder.append('%').append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xf, 16))).append(Character.toUpperCase(Character.forDigit(b & 0xf, 16)));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        return new HmacUtils(HmacAlgorithms.HMAC_SHA_256, key).hmac(data);
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.tier;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Last access time of content keys, kept in memory and saved to a file so that it survives restarts. Only keys read
+ * or written since they were last moved between tiers are tracked, callers fall back to the write time of the blob for
+ * the others.
+ * <p>
+ * The file holds one "key millis" line per key and is replaced atomically on each save.
+ *
+ * @author Jerome Blanchard
+ */
+public class AccessTracker {
+
+    private static final Logger LOGGER = Logger.getLogger(AccessTracker.class.getName());
+
+    private final Path file;
+    private final Map<String, Long> accesses = new ConcurrentHashMap<>();
+
+    public AccessTracker(Path file) {
+        this.file = file;
+    }
+
+    public void touch(String key) {
+        accesses.put(key, System.currentTimeMillis());
+    }
+
+    public OptionalLong get(String key) {
+        Long last = accesses.get(key);
+        return last != null ? OptionalLong.of(last) : OptionalLong.empty();
+    }
+
+    public void forget(String key) {
+        accesses.remove(key);
+    }
+
+    public int size() {
+        return accesses.size();
+    }
+
+    public void load() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] entry = line.split(" ", 2);
+                try {
+                    // accesses recorded since startup are more recent than the saved ones
+                    accesses.merge(entry[0], Long.parseLong(entry[1]), Math::max);
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Ignoring invalid access entry: " + line);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // nothing saved yet
+        }
+    }
+
+    public void save() throws IOException {
+        Path tmpfile = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.createDirectories(file.getParent());
+        try (BufferedWriter writer = Files.newBufferedWriter(tmpfile, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Long> entry : accesses.entrySet()) {
+                writer.write(entry.getKey());
+                writer.write(' ');
+                writer.write(Long.toString(entry.getValue()));
+                writer.newLine();
+            }
+        }
+        Files.move(tmpfile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+}
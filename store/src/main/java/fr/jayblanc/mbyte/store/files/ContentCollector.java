@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.files;
+
+import fr.jayblanc.mbyte.store.data.DataStore;
+import fr.jayblanc.mbyte.store.data.exception.DataNotFoundException;
+import fr.jayblanc.mbyte.store.data.exception.DataStoreException;
+import fr.jayblanc.mbyte.store.metrics.MetricsService;
+import fr.jayblanc.mbyte.store.upload.UploadConfig;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import jakarta.persistence.EntityManager;
+
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Mark and sweep garbage collector of the data store blobs.
+ * <p>
+ * Blobs are content addressed and shared by every node holding the same content, so removing a node never deletes its
+ * blob. Instead, this collector periodically walks the data store keys in batches, marks those still referenced by a
+ * node (one indexed query per batch) and sweeps the others. Blobs written or re-put less than the grace period ago are
+ * kept: they may belong to an upload whose node is not committed yet; the store checks that age atomically with the
+ * deletion so that a put racing with the sweep keeps its blob. The grace period is never shorter than the upload
+ * session expiry, since a session whose node creation failed can be committed again until it expires. The store is then asked to compact its internal
+ * structures (chunks no longer used by any blob).
+ *
+ * @author Jerome Blanchard
+ */
+@Singleton
+public class ContentCollector {
+
+    private static final Logger LOGGER = Logger.getLogger(ContentCollector.class.getName());
+
+    @Inject ContentCollectorConfig config;
+    @Inject DataStore datastore;
+    @Inject EntityManager em;
+    @Inject MetricsService metrics;
+    @Inject UploadConfig uploads;
+
+    public ContentCollector() {
+    }
+
+    @Scheduled(every = "${store.gc.every}", delayed = "${store.gc.delay}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    public void collect() {
+        LOGGER.log(Level.INFO, "Starting data store garbage collection");
+        long limit = System.currentTimeMillis() - Math.max(config.grace().toMillis(), uploads.expiry().toMillis());
+        long scanned = 0;
+        long deleted = 0;
+        List<String> batch = new ArrayList<>(config.batchSize());
+        try (Stream<String> keys = datastore.keys()) {
+            Iterator<String> iterator = keys.iterator();
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() == config.batchSize() || !iterator.hasNext()) {
+                    scanned += batch.size();
+                    deleted += this.sweep(batch, limit);
+                    batch.clear();
+                }
+            }
+            LOGGER.log(Level.INFO, "Data store garbage collection done, " + deleted + " blobs deleted out of " + scanned);
+            datastore.compact(limit);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Data store garbage collection aborted after " + scanned + " blobs", e);
+        }
+    }
+
+    //INTERNAL OPERATIONS
+
+    /**
+     * Keys of the batch still held by a node.
+     */
+    Set<String> referenced(List<String> keys) {
+        return new HashSet<>(QuarkusTransaction.requiringNew().call(() ->
+                em.createNamedQuery("Node.findReferencedContents", String.class).setParameter("contents", keys).getResultList()));
+    }
+
+    private int sweep(List<String> keys, long limit) {
+        Set<String> referenced = this.referenced(keys);
+        int deleted = 0;
+        for (String key : keys) {
+            if (referenced.contains(key)) {
+                continue;
+            }
+            try {
+                // the store checks the grace period again under its lock, a concurrent put of the same content wins
+                if (datastore.delete(key, limit)) {
+                    LOGGER.log(Level.FINE, "Deleted unreferenced blob: " + key);
+                    metrics.incMetric("gc.deleted");
+                    deleted++;
+                }
+            } catch (DataNotFoundException e) {
+                // already gone
+            } catch (DataStoreException e) {
+                LOGGER.log(Level.WARNING, "Unable to delete unreferenced blob: " + key, e);
+            }
+        }
+        return deleted;
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.files;
+
+import fr.jayblanc.mbyte.store.data.DataStore;
+import fr.jayblanc.mbyte.store.data.ReadPacer;
+import fr.jayblanc.mbyte.store.data.exception.DataNotFoundException;
+import fr.jayblanc.mbyte.store.data.exception.DataStoreException;
+import fr.jayblanc.mbyte.store.files.entity.Node;
+import fr.jayblanc.mbyte.store.limit.TokenBucket;
+import fr.jayblanc.mbyte.store.metrics.MetricsService;
+import fr.jayblanc.mbyte.store.notification.NotificationService;
+import fr.jayblanc.mbyte.store.notification.NotificationServiceException;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import jakarta.persistence.EntityManager;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Background integrity check of the blobs referenced by nodes.
+ * <p>
+ * Every referenced content key is verified against the data store (re-hashed, or checked against its recorded
+ * checksum), in key order, so that a pass can resume from a cursor persisted after each batch. Reads are paced buffer
+ * by buffer to stay under the configured MB/s budget, whatever the size of the blobs, and the scrubber waits while the
+ * store serves many requests. A corrupted or missing
+ * blob is counted in the scrub metrics and notified as a file.corrupted or file.missing event for every node holding it.
+ *
+ * @author Jerome Blanchard
+ */
+@Singleton
+public class ContentScrubber {
+
+    private static final Logger LOGGER = Logger.getLogger(ContentScrubber.class.getName());
+    private static final long PAUSE = TimeUnit.MINUTES.toMillis(1);
+    private static final long BURST = 1024 * 1024;
+
+    @Inject ContentScrubberConfig config;
+    @Inject DataStore datastore;
+    @Inject EntityManager em;
+    @Inject MetricsService metrics;
+    @Inject NotificationService notification;
+
+    public ContentScrubber() {
+    }
+
+    @Scheduled(every = "${store.scrub.every}", delayed = "${store.scrub.delay}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    public void scrub() {
+        String cursor = this.readCursor();
+        LOGGER.log(Level.INFO, "Starting data store scrubbing" + (cursor.isEmpty() ? "" : " from cursor: " + cursor));
+        long verified = 0;
+        long failures = 0;
+        ReadPacer pacer = this.pacer(new TokenBucket(config.rate() * 1024d * 1024d, BURST, System.nanoTime()));
+        try {
+            while (true) {
+                List<String> keys = this.contents(cursor, config.batchSize());
+                if (keys.isEmpty()) {
+                    this.writeCursor("");
+                    LOGGER.log(Level.INFO, "Data store scrubbing pass done, " + verified + " blobs verified, " + failures + " failures");
+                    return;
+                }
+                for (String key : keys) {
+                    this.waitForIdle();
+                    if (!this.check(key, pacer)) {
+                        failures++;
+                    }
+                    verified++;
+                    cursor = key;
+                }
+                this.writeCursor(cursor);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.log(Level.INFO, "Data store scrubbing interrupted after " + verified + " blobs");
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Data store scrubbing aborted after " + verified + " blobs", e);
+        }
+    }
+
+    //INTERNAL OPERATIONS
+
+    /**
+     * Referenced content keys following the cursor, in key order.
+     */
+    List<String> contents(String cursor, int limit) {
+        return QuarkusTransaction.requiringNew().call(() -> em.createNamedQuery("Node.findContentsAfter", String.class)
+                .setParameter("cursor", cursor).setMaxResults(limit).getResultList());
+    }
+
+    /**
+     * Ids of the nodes holding a content.
+     */
+    List<String> holders(String key) {
+        return QuarkusTransaction.requiringNew().call(() -> em.createNamedQuery("Node.findByContent", Node.class)
+                .setParameter("content", key).getResultList().stream().map(Node::getId).toList());
+    }
+
+    /**
+     * @return false when the blob is corrupted or missing
+     */
+    private boolean check(String key, ReadPacer pacer) throws InterruptedException {
+        try {
+            boolean valid = datastore.verify(key, pacer);
+            metrics.incMetric("scrub.verified");
+            if (!valid) {
+                LOGGER.log(Level.SEVERE, "Blob content does not match its key or checksum: " + key);
+                metrics.incMetric("scrub.corrupted");
+                this.report(key, "file.corrupted");
+            }
+            return valid;
+        } catch (DataNotFoundException e) {
+            // the node may have been removed and its blob collected since the batch was read
+            if (this.report(key, "file.missing") > 0) {
+                LOGGER.log(Level.SEVERE, "Blob referenced by nodes is missing: " + key);
+                metrics.incMetric("scrub.missing");
+                return false;
+            }
+            return true;
+        } catch (DataStoreException e) {
+            if (e.getCause() instanceof InterruptedIOException) {
+                throw new InterruptedException("scrubbing interrupted while verifying blob: " + key);
+            }
+            LOGGER.log(Level.WARNING, "Unable to verify blob: " + key, e);
+            return true;
+        }
+    }
+
+    /**
+     * @return the number of nodes notified
+     */
+    private int report(String key, String type) {
+        List<String> nodes = this.holders(key);
+        for (String node : nodes) {
+            try {
+                notification.notify(type, node);
+            } catch (NotificationServiceException e) {
+                LOGGER.log(Level.WARNING, "Unable to notify " + type + " for node: " + node, e);
+            }
+        }
+        return nodes.size();
+    }
+
+    /**
+     * Sleeps after each buffer read for as long as the read budget requires, so a large blob is read at the budget
+     * rather than at disk speed then followed by a long pause.
+     */
+    private ReadPacer pacer(TokenBucket bucket) {
+        return bytes -> {
+            long wait = bucket.reserve(bytes, System.nanoTime());
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("read pacing interrupted");
+                }
+            }
+        };
+    }
+
+    private void waitForIdle() throws InterruptedException {
+        while (metrics.getLatestMetric("download") + metrics.getLatestMetric("upload") > config.pauseRequests()) {
+            LOGGER.log(Level.FINE, "Store is busy, data store scrubbing paused");
+            Thread.sleep(PAUSE);
+        }
+    }
+
+    private String readCursor() {
+        try {
+            return Files.readString(Paths.get(config.cursor()), StandardCharsets.UTF_8).trim();
+        } catch (NoSuchFileException e) {
+            return "";
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to read scrubbing cursor, starting a new pass", e);
+            return "";
+        }
+    }
+
+    private void writeCursor(String cursor) throws IOException {
+        Path file = Paths.get(config.cursor());
+        Path tmpfile = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.createDirectories(file.getParent());
+        Files.writeString(tmpfile, cursor, StandardCharsets.UTF_8);
+        Files.move(tmpfile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+}
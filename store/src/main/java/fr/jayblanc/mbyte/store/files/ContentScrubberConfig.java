@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.files;
+
+import io.smallrye.config.ConfigMapping;
+
+/**
+ * @author Jerome Blanchard
+ */
+@ConfigMapping(prefix = "store.scrub")
+public interface ContentScrubberConfig {
+    /**
+     * Read budget, in MB/s.
+     */
+    int rate();
+    int batchSize();
+    /**
+     * Number of downloads and uploads in the current metrics window above which scrubbing pauses.
+     */
+    long pauseRequests();
+    String cursor();
+}
@@ -16,14 +16,19 @@
  */
 package fr.jayblanc.mbyte.store.files;
 
+import fr.jayblanc.mbyte.store.data.DataDescriptor;
 import fr.jayblanc.mbyte.store.data.exception.DataNotFoundException;
 import fr.jayblanc.mbyte.store.data.exception.DataStoreException;
 import fr.jayblanc.mbyte.store.files.entity.Node;
 import fr.jayblanc.mbyte.store.files.exceptions.*;
 import fr.jayblanc.mbyte.store.notification.NotificationServiceException;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Optional;
 
 public interface FileService {
 
@@ -32,17 +37,60 @@ public interface FileService {
 
     List<Node> list(String id) throws NodeNotFoundException;
 
+    /**
+     * Lists a page of the children of a TREE node, sorted in the database. The page starts after the cursor when one is
+     * given (keyset paging), otherwise after skipping offset children.
+     */
+    Listing list(String id, ListingOrder order, boolean descending, String cursor, int offset, int limit) throws NodeNotFoundException,
+            NodeTypeException, ListingCursorException;
+
     List<Node> path(String id) throws NodeNotFoundException;
 
     Node get(String id) throws NodeNotFoundException;
 
+    /**
+     * @return the child with that name in a TREE node, looked up by name rather than by listing the children
+     */
+    Optional<Node> getChild(String parent, String name) throws NodeNotFoundException, NodeTypeException;
+
     InputStream getContent(String id) throws NodeNotFoundException, NodeTypeException, DataNotFoundException, DataStoreException;
 
+    InputStream getContent(String id, long offset, long length) throws NodeNotFoundException, NodeTypeException, DataNotFoundException, DataStoreException;
+
+    Optional<Path> getContentFile(String id) throws NodeNotFoundException, NodeTypeException, DataNotFoundException;
+
+    /**
+     * Streams the subtree of a TREE node as a ZIP archive, without any transaction held while writing.
+     */
+    void archive(String id, OutputStream output) throws NodeNotFoundException, NodeTypeException, IOException;
+
+    /**
+     * Expands a zip or tar stream in a TREE node. Content is stored while the stream is read, then every folder and file
+     * is created in a single transaction; existing folders are merged, existing files make the whole import fail. Entries
+     * with an invalid name are skipped, an archive with too many entries or expanding to too many bytes (store.import.*)
+     * is refused as soon as the limit is crossed.
+     */
+    ImportSummary expand(String parent, InputStream archive) throws NodeNotFoundException, NodeTypeException, NodeAlreadyExistsException,
+            ArchiveFormatException, DataStoreException, NodePersistenceException;
+
     String add(String parent, String name) throws NodeNotFoundException, NodeAlreadyExistsException, NodeTypeException,
             NodePersistenceException, NotificationServiceException;
 
     String add(String parent, String name, InputStream content) throws NodeNotFoundException, NodeAlreadyExistsException, NodeTypeException, DataStoreException, DataNotFoundException, NodePersistenceException, NotificationServiceException;
 
+    /**
+     * Replaces the file with that name in a TREE node, or adds it when there is none.
+     */
+    String replace(String parent, String name, InputStream content) throws NodeNotFoundException, NodeTypeException, DataStoreException,
+            NodePersistenceException, NotificationServiceException;
+
+    String add(String parent, String name, DataDescriptor data) throws NodeNotFoundException, NodeAlreadyExistsException, NodeTypeException, NodePersistenceException, NotificationServiceException;
+
+    /**
+     * Same as replace, for a content already stored in the data store.
+     */
+    String replace(String parent, String name, DataDescriptor data) throws NodeNotFoundException, NodeTypeException, NodePersistenceException, NotificationServiceException;
+
     void remove(String parent, String name) throws NodeNotFoundException, NodeNotEmptyException, NodeTypeException, DataStoreException, NodePersistenceException, NotificationServiceException;
 
     String getFullPath(List<Node> nodesPath);
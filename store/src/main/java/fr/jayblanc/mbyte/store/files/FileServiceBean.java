@@ -16,31 +16,42 @@
  */
 package fr.jayblanc.mbyte.store.files;
 
+import fr.jayblanc.mbyte.store.api.validation.ValidationPattern;
 import fr.jayblanc.mbyte.store.auth.AuthenticationService;
+import fr.jayblanc.mbyte.store.data.DataDescriptor;
 import fr.jayblanc.mbyte.store.data.DataStore;
 import fr.jayblanc.mbyte.store.data.exception.DataNotFoundException;
 import fr.jayblanc.mbyte.store.data.exception.DataStoreException;
+import fr.jayblanc.mbyte.store.files.cache.NodeCache;
 import fr.jayblanc.mbyte.store.files.entity.Node;
 import fr.jayblanc.mbyte.store.files.exceptions.*;
 import fr.jayblanc.mbyte.store.index.IndexableContent;
 import fr.jayblanc.mbyte.store.index.IndexableContentProvider;
 import fr.jayblanc.mbyte.store.metrics.GenerateMetric;
+import fr.jayblanc.mbyte.store.metrics.MetricsService;
 import fr.jayblanc.mbyte.store.metrics.MetricsSource;
 import fr.jayblanc.mbyte.store.notification.NotificationService;
 import fr.jayblanc.mbyte.store.notification.NotificationServiceException;
+import fr.jayblanc.mbyte.store.files.archive.ArchiveReader;
+import fr.jayblanc.mbyte.store.files.archive.BoundedInputStream;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.narayana.jta.QuarkusTransactionException;
 import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.LockModeType;
 import jakarta.persistence.PersistenceException;
+import jakarta.persistence.TypedQuery;
 import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.UUID;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -56,6 +67,12 @@ public class FileServiceBean implements FileService, IndexableContentProvider {
     @Inject NotificationService notification;
     @Inject AuthenticationService auth;
     @Inject EntityManager em;
+    @Inject MetricsService metrics;
+    @Inject NodeCache cache;
+    @Inject ArchiveImportConfig imports;
+
+    @ConfigProperty(name = "quarkus.hibernate-orm.jdbc.statement-batch-size", defaultValue = "50")
+    int batchSize;
 
     public FileServiceBean() {
     }
@@ -74,9 +91,14 @@ public class FileServiceBean implements FileService, IndexableContentProvider {
                 if ( bootstrap ) {
                     LOGGER.log(Level.INFO, "Root node does not exists, applying bootstrap");
                     Node root = new Node(Node.Type.TREE, "", ROOT_NODE_ID, "root");
+                    root.setAncestry(ancestry("", ROOT_NODE_ID));
                     em.persist(root);
                     LOGGER.log(Level.INFO, "Bootstrap done, root node exists now.");
                 }
+                int repaired = QuarkusTransaction.requiringNew().call(this::backfillAncestry);
+                if ( repaired > 0 ) {
+                    LOGGER.log(Level.INFO, "Ancestry computed for " + repaired + " nodes");
+                }
             } catch (PersistenceException e) {
                 throw new RuntimeException(e);
             }
@@ -93,17 +115,67 @@ public class FileServiceBean implements FileService, IndexableContentProvider {
     }
 
 
+    @Override
+    public Listing list(String id, ListingOrder order, boolean descending, String cursor, int offset, int limit) throws NodeNotFoundException,
+            NodeTypeException, ListingCursorException {
+        LOGGER.log(Level.INFO, "Listing children page for parent: " + id);
+        long stamp = cache.stamp();
+        Node pnode = this.get(id);
+        if (!pnode.isFolder()) {
+            throw new NodeTypeException("Node is not a directory");
+        }
+        String page = order + (descending ? ".DESC/" : ".ASC/") + cursor + "/" + offset + "/" + limit;
+        Optional<Listing> cached = cache.getListing(pnode.getId(), page);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        boolean paging = cursor != null && !cursor.isEmpty();
+        TypedQuery<Node> query = em.createQuery(order.query(descending, paging), Node.class).setParameter("parent", pnode.getId());
+        if (paging) {
+            List<Object> values = order.parse(cursor, descending);
+            for (int i = 0; i < values.size(); i++) {
+                query.setParameter("k" + i, values.get(i));
+            }
+        } else {
+            query.setFirstResult(offset);
+        }
+        // one more row tells whether a next page exists
+        List<Node> nodes = query.setMaxResults(limit + 1).getResultList();
+        String next = null;
+        if (nodes.size() > limit) {
+            nodes = nodes.subList(0, limit);
+            next = order.cursor(nodes.get(limit - 1), descending);
+        }
+        // the size of a folder is its number of children
+        Listing listing = new Listing(nodes, pnode.getSize(), next);
+        cache.putListing(pnode.getId(), page, listing, stamp);
+        return listing;
+    }
+
     @Override
     public List<Node> path(String id) throws NodeNotFoundException {
         LOGGER.log(Level.FINE, "Get path for node with id: " + id);
-        String pid = (id == null || id.isEmpty()) ? ROOT_NODE_ID:id;
-        List<Node> path = new ArrayList<>();
-        while (pid != null && !pid.isEmpty()) {
-            Node current = loadNode(pid);
-            path.add(current);
-            pid = current.getParent();
+        Node node = this.get(id);
+        List<String> lineage = this.lineage(node);
+        Map<String, Node> ancestors = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String ancestor : lineage) {
+            cache.get(ancestor).ifPresentOrElse(cached -> ancestors.put(ancestor, cached), () -> missing.add(ancestor));
+        }
+        if (!missing.isEmpty()) {
+            long stamp = cache.stamp();
+            for (Node ancestor : em.createNamedQuery("Node.findByIds", Node.class).setParameter("ids", missing).getResultList()) {
+                ancestors.put(ancestor.getId(), ancestor);
+                cache.put(ancestor, stamp);
+            }
+        }
+        List<Node> path = new ArrayList<>(lineage.size());
+        for (String ancestor : lineage) {
+            if (!ancestors.containsKey(ancestor)) {
+                throw new NodeNotFoundException("unable to find a node with id: " + ancestor);
+            }
+            path.add(ancestors.get(ancestor));
         }
-        Collections.reverse(path);
         LOGGER.log(Level.FINE, "path: " + path.stream().map(Node::getName).collect(Collectors.joining(" > ")));
         //LOGGER.log(Level.INFO, "Full path String : " + this.getFullPath(path));
         return path;
@@ -117,8 +189,9 @@ public class FileServiceBean implements FileService, IndexableContentProvider {
     public List<Node> findAll() throws NodeNotFoundException {
         List<Node> nodes = em.createNamedQuery("Node.findAll", Node.class).getResultList();
         LOGGER.log(Level.INFO,"Test recup nb nodes: " + nodes.size());
+        Map<String, Node> index = nodes.stream().collect(Collectors.toMap(Node::getId, node -> node));
         for (Node node : nodes){
-             LOGGER.log(Level.INFO, "Full path du fichier: "+this.getFullPath(this.path(node.getId())));
+             LOGGER.log(Level.INFO, "Full path du fichier: "+this.getFullPath(this.lineage(node).stream().map(index::get).filter(Objects::nonNull).toList()));
         }
         return nodes;
     }
@@ -127,7 +200,25 @@ public class FileServiceBean implements FileService, IndexableContentProvider {
     @Override
     public Node get(String id) throws NodeNotFoundException {
         LOGGER.log(Level.INFO, "Getting node with id: " + id);
-        return this.loadNode(id);
+        String pid = (id == null || id.isEmpty()) ? ROOT_NODE_ID:id;
+        Optional<Node> cached = cache.get(pid);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        long stamp = cache.stamp();
+        Node node = this.loadNode(pid);
+        cache.put(node, stamp);
+        return node;
+    }
+
+    @Override
+    public Optional<Node> getChild(String parent, String name) throws NodeNotFoundException, NodeTypeException {
+        LOGGER.log(Level.FINE, "Getting child with name: " + name + " of parent: " + parent);
+        Node pnode = this.get(parent);
+        if (!pnode.isFolder()) {
+            throw new NodeTypeException("Parent must be a node of type TREE");
+        }
+        return Optional.ofNullable(this.findChild(pnode.getId(), name));
     }
 
 
@@ -142,21 +233,126 @@ public class FileServiceBean implements FileService, IndexableContentProvider {
         return datastore.get(node.getContent());
     }
 
+    @Override
+    @GenerateMetric(key = "download", type = GenerateMetric.Type.INCREMENT)
+    public InputStream getContent(String id, long offset, long length) throws NodeNotFoundException, NodeTypeException, DataNotFoundException, DataStoreException {
+        LOGGER.log(Level.INFO, "Getting content range [" + offset + "+" + length + "] for node with id: " + id);
+        Node node = this.loadNode(id);
+        if (!node.getType().equals(Node.Type.BLOB)) {
+            throw new NodeTypeException("only node of type BLOB have content");
+        }
+        return datastore.get(node.getContent(), offset, length);
+    }
+
+    @Override
+    public Optional<Path> getContentFile(String id) throws NodeNotFoundException, NodeTypeException, DataNotFoundException {
+        LOGGER.log(Level.INFO, "Getting content file for node with id: " + id);
+        Node node = this.loadNode(id);
+        if (!node.getType().equals(Node.Type.BLOB)) {
+            throw new NodeTypeException("only node of type BLOB have content");
+        }
+        Optional<Path> file = datastore.file(node.getContent());
+        if (file.isPresent()) {
+            // callers fall back to getContent() otherwise, which generates the metric itself
+            metrics.incMetric("download");
+        }
+        return file;
+    }
+
+    @Override
+    @GenerateMetric(key = "download", type = GenerateMetric.Type.INCREMENT)
+    public void archive(String id, OutputStream output) throws NodeNotFoundException, NodeTypeException, IOException {
+        LOGGER.log(Level.INFO, "Archiving tree of node with id: " + id);
+        Node root = QuarkusTransaction.requiringNew().call(() -> em.find(Node.class, (id == null || id.isEmpty()) ? ROOT_NODE_ID : id));
+        if (root == null) {
+            throw new NodeNotFoundException("unable to find a node with id: " + id);
+        }
+        if (!root.isFolder()) {
+            throw new NodeTypeException("only node of type TREE can be archived");
+        }
+        // one short transaction per folder, the archive of a large tree may take a long time to be written
+        TreeArchiver archiver = new TreeArchiver(
+                parent -> QuarkusTransaction.requiringNew().call(() -> em.createNamedQuery("Node.findAllChildren", Node.class).setParameter("parent", parent).getResultList()),
+                node -> {
+                    try {
+                        // ranged read, archiving a tree must not flush the read cache
+                        return datastore.get(node.getContent(), 0, Long.MAX_VALUE);
+                    } catch (DataStoreException | DataNotFoundException e) {
+                        throw new IOException("unable to read content of node: " + node.getId(), e);
+                    }
+                });
+        long files = archiver.write(root.getId(), output);
+        LOGGER.log(Level.INFO, "Archive of node with id: " + id + " written, " + files + " files");
+    }
+
+    @Override
+    @GenerateMetric(key = "upload", type = GenerateMetric.Type.INCREMENT)
+    public ImportSummary expand(String parent, InputStream archive) throws NodeNotFoundException, NodeTypeException, NodeAlreadyExistsException,
+            ArchiveFormatException, DataStoreException, NodePersistenceException {
+        LOGGER.log(Level.INFO, "Expanding archive in node with id: " + parent);
+        // content first, outside of any transaction: the nodes are only created once the whole archive is stored
+        List<ImportEntry> entries = new ArrayList<>();
+        long skipped = 0;
+        long count = 0;
+        long expanded = 0;
+        try (ArchiveReader reader = ArchiveReader.open(archive)) {
+            ArchiveReader.Entry entry;
+            while ((entry = reader.next()) != null) {
+                if (++count > imports.maxEntries()) {
+                    throw new ArchiveFormatException("archive has more than " + imports.maxEntries() + " entries");
+                }
+                List<String> path = importPath(entry.path());
+                if (path.isEmpty()) {
+                    LOGGER.log(Level.FINE, "Skipping archive entry: " + entry.path());
+                    skipped++;
+                } else if (entry.directory()) {
+                    entries.add(new ImportEntry(path, null));
+                } else {
+                    // the expanded size is bounded while reading, a declared size could lie
+                    try (BoundedInputStream is = new BoundedInputStream(reader.content(), imports.maxSize() - expanded)) {
+                        try {
+                            DataDescriptor data = datastore.put(is, path.get(path.size() - 1));
+                            expanded += data.getSize();
+                            entries.add(new ImportEntry(path, data));
+                        } catch (DataStoreException e) {
+                            if (is.isExceeded()) {
+                                throw new ArchiveFormatException("archive expands to more than " + imports.maxSize() + " bytes");
+                            }
+                            throw e;
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new ArchiveFormatException("unable to read archive: " + e.getMessage());
+        }
+        long ignored = skipped;
+        try {
+            return QuarkusTransaction.requiringNew().call(() -> this.createImported(parent, entries, ignored));
+        } catch (QuarkusTransactionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof NodeNotFoundException nnfe) {
+                throw nnfe;
+            }
+            if (cause instanceof NodeTypeException nte) {
+                throw nte;
+            }
+            if (cause instanceof NodeAlreadyExistsException naee) {
+                throw naee;
+            }
+            throw new NodePersistenceException("unable to create imported nodes", cause != null ? cause : e);
+        }
+    }
+
     @Override
     @Transactional(Transactional.TxType.REQUIRED)
     public String add(String parent, String name) throws NodeNotFoundException, NodeAlreadyExistsException, NodeTypeException,
             NodePersistenceException, NotificationServiceException {
         LOGGER.log(Level.INFO, "Adding TREE node with name: " + name + " for parent: " + parent);
-        Node pnode = this.loadNode(parent);
-        if (!pnode.isFolder()) {
-            throw new NodeTypeException("Parent must be a node of type TREE");
-        }
-        List<Node> nodes = em.createNamedQuery("Node.findChildrenForName", Node.class).setParameter("parent", pnode.getId()).setParameter("name", name).getResultList();
-        if (!nodes.isEmpty()) {
-            throw new NodeAlreadyExistsException("A node with name: " + name + " already exists in tree with id: " + pnode.getId());
-        }
+        Node pnode = this.loadFreeParent(parent, name);
         Node node = new Node(Node.Type.TREE, pnode.getId(), UUID.randomUUID().toString(), name);
         node.setMimetype(TREE_NODE_MIMETYPE);
+        node.setAncestry(ancestry(pnode.getAncestry(), node.getId()));
         em.persist(node);
         pnode.setSize(pnode.getSize()+1);
         pnode.setModification(node.getModification());
@@ -165,31 +361,52 @@ public class FileServiceBean implements FileService, IndexableContentProvider {
         return node.getId();
     }
 
+    /**
+     * Not transactional: the content is streamed and hashed in the data store first, with no database connection held
+     * during the transfer, then the node is created in a short transaction of its own. Content stored for a node that
+     * finally cannot be created is reclaimed by the ContentCollector.
+     */
     @Override
     @GenerateMetric(key = "upload", type = GenerateMetric.Type.INCREMENT)
-    @Transactional(Transactional.TxType.REQUIRED)
     public String add(String parent, String name, InputStream content) throws NodeNotFoundException, NodeAlreadyExistsException, NodeTypeException, DataStoreException, DataNotFoundException, NodePersistenceException, NotificationServiceException {
         LOGGER.log(Level.INFO, "Adding BLOB node with name: " + name + " to parent: " + parent);
-        Node pnode = this.loadNode(parent);
-        if (!pnode.isFolder()) {
-            throw new NodeTypeException("Parent must be a node of type TREE");
-        }
-        List<Node> nodes = em.createNamedQuery("Node.findChildrenForName", Node.class).setParameter("parent", pnode.getId()).setParameter("name", name).getResultList();
-        if (!nodes.isEmpty()) {
-            throw new NodeAlreadyExistsException("A node with name: " + name + " already exists in tree with id: " + pnode.getId());
+        // checked again when the node is created, only spares the transfer of a content that would be refused
+        this.inTransaction(() -> this.loadFreeParent(parent, name));
+        DataDescriptor data = datastore.put(content, name);
+        return this.inTransaction(() -> this.addBlob(this.loadFreeParent(parent, name), name, data));
+    }
+
+    /**
+     * Same as add, the existing file with that name, if any, being removed in the transaction creating the new one.
+     */
+    @Override
+    @GenerateMetric(key = "upload", type = GenerateMetric.Type.INCREMENT)
+    public String replace(String parent, String name, InputStream content) throws NodeNotFoundException, NodeTypeException, DataStoreException,
+            NodePersistenceException, NotificationServiceException {
+        LOGGER.log(Level.INFO, "Replacing BLOB node with name: " + name + " in parent: " + parent);
+        try {
+            this.inTransaction(() -> this.loadReplaceableParent(parent, name));
+            DataDescriptor data = datastore.put(content, name);
+            return this.inTransaction(() -> this.replaceBlob(this.loadReplaceableParent(parent, name), name, data));
+        } catch (NodeAlreadyExistsException e) {
+            throw new NodePersistenceException("unable to replace node with name: " + name, e);
         }
-        String cid = datastore.put(content);
-        Node node = new Node(Node.Type.BLOB, pnode.getId(), UUID.randomUUID().toString(), name);
-        node.setContent(cid);
-        node.setSize(datastore.size(cid));
-        node.setMimetype(datastore.type(cid, name));
-        em.persist(node);
-        pnode.setSize(pnode.getSize()+1);
-        pnode.setModification(node.getModification());
-        String owner = auth.getConnectedIdentifier();
-        notification.notify(owner, "file.create", node.getId());
-        notification.notify("folder.update", pnode.getId());
-        return node.getId();
+    }
+
+    @Override
+    @GenerateMetric(key = "upload", type = GenerateMetric.Type.INCREMENT)
+    @Transactional(Transactional.TxType.REQUIRED)
+    public String add(String parent, String name, DataDescriptor data) throws NodeNotFoundException, NodeAlreadyExistsException, NodeTypeException, NodePersistenceException, NotificationServiceException {
+        LOGGER.log(Level.INFO, "Adding BLOB node with name: " + name + " to parent: " + parent + " for stored content: " + data.getKey());
+        return this.addBlob(this.loadFreeParent(parent, name), name, data);
+    }
+
+    @Override
+    @GenerateMetric(key = "upload", type = GenerateMetric.Type.INCREMENT)
+    @Transactional(Transactional.TxType.REQUIRED)
+    public String replace(String parent, String name, DataDescriptor data) throws NodeNotFoundException, NodeTypeException, NodePersistenceException, NotificationServiceException {
+        LOGGER.log(Level.INFO, "Replacing BLOB node with name: " + name + " in parent: " + parent + " for stored content: " + data.getKey());
+        return this.replaceBlob(this.loadReplaceableParent(parent, name), name, data);
     }
 
     @Override
@@ -200,19 +417,27 @@ public class FileServiceBean implements FileService, IndexableContentProvider {
         if (!pnode.isFolder()) {
             throw new NodeTypeException("Parent must be a node of type TREE");
         }
-        Node node = em.createNamedQuery("Node.findChildrenForName", Node.class).setParameter("parent", pnode.getId()).setParameter("name", name).getSingleResult();
+        Node node = this.findChild(pnode.getId(), name);
         if (node == null) {
             throw new NodeNotFoundException("A node with name: " + name + " does not exists in tree with id: " + pnode.getId());
         }
-        int children = em.createNamedQuery("Node.countChildren", Integer.class).setParameter("parent", pnode.getId()).getSingleResult();
-        if (children > 0) {
-            throw new NodeNotEmptyException("The node with name: " + name + " is not empty");
+        if (node.isFolder()) {
+            long children = em.createNamedQuery("Node.countChildren", Long.class).setParameter("parent", node.getId()).getSingleResult();
+            if (children > 0) {
+                throw new NodeNotEmptyException("The node with name: " + name + " is not empty");
+            }
         }
-        String eventType = "folder.remove";
-        if (!node.isFolder()) {
-            datastore.delete(node.getContent());
-            eventType = "file.remove";
+        this.delete(pnode, node);
+    }
+
+    //INTERNAL OPERATIONS
+
+    private void delete(Node pnode, Node node) throws NotificationServiceException {
+        String eventType = "file.remove";
+        if (node.isFolder()) {
+            eventType = "folder.remove";
         }
+        // blob content may be shared with other nodes, it is reclaimed later by the ContentCollector once unreferenced
         em.remove(node);
         pnode.setSize(pnode.getSize()-1);
         pnode.setModification(System.currentTimeMillis());
@@ -220,7 +445,255 @@ public class FileServiceBean implements FileService, IndexableContentProvider {
         notification.notify("folder.update", pnode.getId());
     }
 
-    //INTERNAL OPERATIONS
+    /**
+     * @return the parent folder, once checked it has no child with that name
+     */
+    private Node loadFreeParent(String parent, String name) throws NodeNotFoundException, NodeTypeException, NodeAlreadyExistsException {
+        Node pnode = this.loadNode(parent);
+        if (!pnode.isFolder()) {
+            throw new NodeTypeException("Parent must be a node of type TREE");
+        }
+        if (this.findChild(pnode.getId(), name) != null) {
+            throw new NodeAlreadyExistsException("A node with name: " + name + " already exists in tree with id: " + pnode.getId());
+        }
+        return pnode;
+    }
+
+    /**
+     * @return the parent folder, once checked that the child with that name, if any, is a file
+     */
+    private Node loadReplaceableParent(String parent, String name) throws NodeNotFoundException, NodeTypeException {
+        Node pnode = this.loadNode(parent);
+        if (!pnode.isFolder()) {
+            throw new NodeTypeException("Parent must be a node of type TREE");
+        }
+        Node existing = this.findChild(pnode.getId(), name);
+        if (existing != null && existing.isFolder()) {
+            throw new NodeTypeException("A folder with name: " + name + " cannot be replaced by a file");
+        }
+        return pnode;
+    }
+
+    /**
+     * Runs a unit of work in a transaction of its own, unwrapping the service exceptions it may throw.
+     */
+    private <T> T inTransaction(Callable<T> work) throws NodeNotFoundException, NodeTypeException, NodeAlreadyExistsException, NodePersistenceException,
+            NotificationServiceException {
+        try {
+            return QuarkusTransaction.requiringNew().call(work);
+        } catch (QuarkusTransactionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof NodeNotFoundException nnfe) {
+                throw nnfe;
+            }
+            if (cause instanceof NodeTypeException nte) {
+                throw nte;
+            }
+            if (cause instanceof NodeAlreadyExistsException naee) {
+                throw naee;
+            }
+            if (cause instanceof NotificationServiceException nse) {
+                throw nse;
+            }
+            throw new NodePersistenceException("unable to persist node", cause != null ? cause : e);
+        }
+    }
+
+    private record ImportEntry(List<String> path, DataDescriptor data) {
+    }
+
+    /**
+     * Creates the nodes of an expanded archive. Inserts are flushed in JDBC batches and the persistence context is
+     * cleared after each one; the size of every folder receiving children is updated once, at the end, and a single
+     * folder.import event is sent per such folder instead of one event per node.
+     */
+    private ImportSummary createImported(String parent, List<ImportEntry> entries, long skipped) throws NodeNotFoundException, NodeTypeException,
+            NodeAlreadyExistsException, NotificationServiceException {
+        Node target = this.loadNode(parent);
+        if (!target.isFolder()) {
+            throw new NodeTypeException("Parent must be a node of type TREE");
+        }
+        Map<String, String> folders = new HashMap<>();
+        folders.put("", target.getId());
+        // nodes are detached while importing, ancestries of the folders are kept aside
+        Map<String, String> ancestries = new HashMap<>();
+        ancestries.put(target.getId(), target.getAncestry());
+        Set<String> created = new HashSet<>();
+        Set<String> names = new HashSet<>();
+        Map<String, Long> added = new LinkedHashMap<>();
+        long files = 0;
+        long size = 0;
+        long ignored = skipped;
+        int pending = 0;
+        for (ImportEntry entry : entries) {
+            List<String> path = entry.data() == null ? entry.path() : entry.path().subList(0, entry.path().size() - 1);
+            String folder = "";
+            for (String segment : path) {
+                String key = folder.isEmpty() ? segment : folder + "/" + segment;
+                if (!folders.containsKey(key)) {
+                    String pid = folders.get(folder);
+                    Node existing = created.contains(pid) ? null : this.findChild(pid, segment);
+                    if (!names.add(pid + "/" + segment) || (existing != null && !existing.isFolder())) {
+                        throw new NodeAlreadyExistsException("A file with name: " + segment + " already exists in tree with id: " + pid);
+                    }
+                    if (existing != null) {
+                        folders.put(key, existing.getId());
+                        ancestries.put(existing.getId(), existing.getAncestry());
+                    } else {
+                        Node node = new Node(Node.Type.TREE, pid, UUID.randomUUID().toString(), segment);
+                        node.setMimetype(TREE_NODE_MIMETYPE);
+                        node.setAncestry(ancestry(ancestries.get(pid), node.getId()));
+                        em.persist(node);
+                        ancestries.put(node.getId(), node.getAncestry());
+                        folders.put(key, node.getId());
+                        created.add(node.getId());
+                        added.merge(pid, 1L, Long::sum);
+                        pending++;
+                    }
+                }
+                folder = key;
+            }
+            if (entry.data() != null) {
+                String pid = folders.get(folder);
+                String name = entry.path().get(entry.path().size() - 1);
+                if (!names.add(pid + "/" + name)) {
+                    // same path twice in the archive, or both a file and a folder: the first one wins
+                    ignored++;
+                    continue;
+                }
+                if (!created.contains(pid) && this.findChild(pid, name) != null) {
+                    throw new NodeAlreadyExistsException("A node with name: " + name + " already exists in tree with id: " + pid);
+                }
+                Node node = new Node(Node.Type.BLOB, pid, UUID.randomUUID().toString(), name);
+                node.setContent(entry.data().getKey());
+                node.setSize(entry.data().getSize());
+                node.setMimetype(entry.data().getType());
+                node.setAncestry(ancestry(ancestries.get(pid), node.getId()));
+                em.persist(node);
+                added.merge(pid, 1L, Long::sum);
+                files++;
+                size += entry.data().getSize();
+                pending++;
+            }
+            if (pending >= batchSize) {
+                em.flush();
+                em.clear();
+                pending = 0;
+            }
+        }
+        em.flush();
+        em.clear();
+        long now = System.currentTimeMillis();
+        String owner = auth.getConnectedIdentifier();
+        for (Map.Entry<String, Long> folder : added.entrySet()) {
+            Node node = em.find(Node.class, folder.getKey());
+            node.setSize(node.getSize() + folder.getValue());
+            node.setModification(now);
+            notification.notify(owner, "folder.import", node.getId());
+        }
+        LOGGER.log(Level.INFO, "Archive expanded in node with id: " + target.getId() + ", " + created.size() + " folders and " + files + " files created");
+        return new ImportSummary(created.size(), files, size, ignored);
+    }
+
+    private Node findChild(String parent, String name) {
+        return em.createNamedQuery("Node.findChildrenForName", Node.class).setParameter("parent", parent).setParameter("name", name)
+                .getResultStream().findFirst().orElse(null);
+    }
+
+    /**
+     * @return the segments of an archive entry path, or an empty list when the entry must be ignored (root, parent
+     * references, names that would be refused by the API)
+     */
+    static List<String> importPath(String path) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.replace('\\', '/').split("/")) {
+            if (segment.equals("..")) {
+                return List.of();
+            }
+            if (!segment.isEmpty() && !segment.equals(".")) {
+                if (!segment.matches(ValidationPattern.FILE_PATTERN)) {
+                    return List.of();
+                }
+                segments.add(segment);
+            }
+        }
+        return segments;
+    }
+
+    static String ancestry(String parent, String id) {
+        return parent + "/" + id;
+    }
+
+    /**
+     * @return the ids of a materialized path, from the root down to the node
+     */
+    static List<String> lineage(String ancestry) {
+        List<String> ids = new ArrayList<>();
+        for (String id : ancestry.split("/")) {
+            if (!id.isEmpty()) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Portable counterpart of the postgresql backfill of the ancestry migration: ancestries still missing (another
+     * database, nodes written by an older version) are computed one tree level per statement, from the roots down.
+     *
+     * @return the number of nodes updated
+     */
+    private int backfillAncestry() {
+        int total = em.createQuery("UPDATE Node n SET n.ancestry = CONCAT('/', n.id) WHERE n.ancestry IS NULL AND (n.parent IS NULL OR n.parent = '')")
+                .executeUpdate();
+        int updated;
+        do {
+            updated = em.createQuery("UPDATE Node n SET n.ancestry = CONCAT((SELECT p.ancestry FROM Node p WHERE p.id = n.parent), '/', n.id) "
+                    + "WHERE n.ancestry IS NULL AND n.parent IN (SELECT p.id FROM Node p WHERE p.ancestry IS NOT NULL)").executeUpdate();
+            total += updated;
+        } while (updated > 0);
+        return total;
+    }
+
+    /**
+     * @return the ids from the root down to the node, walking up the parents when the ancestry is missing
+     */
+    private List<String> lineage(Node node) throws NodeNotFoundException {
+        if (node.getAncestry() != null) {
+            return lineage(node.getAncestry());
+        }
+        LinkedList<String> ids = new LinkedList<>();
+        Node current = node;
+        ids.addFirst(current.getId());
+        while (current.getParent() != null && !current.getParent().isEmpty()) {
+            current = this.get(current.getParent());
+            ids.addFirst(current.getId());
+        }
+        return ids;
+    }
+
+    private String addBlob(Node pnode, String name, DataDescriptor data) throws NotificationServiceException {
+        Node node = new Node(Node.Type.BLOB, pnode.getId(), UUID.randomUUID().toString(), name);
+        node.setContent(data.getKey());
+        node.setSize(data.getSize());
+        node.setMimetype(data.getType());
+        node.setAncestry(ancestry(pnode.getAncestry(), node.getId()));
+        em.persist(node);
+        pnode.setSize(pnode.getSize()+1);
+        pnode.setModification(node.getModification());
+        String owner = auth.getConnectedIdentifier();
+        notification.notify(owner, "file.create", node.getId());
+        notification.notify("folder.update", pnode.getId());
+        return node.getId();
+    }
+
+    private String replaceBlob(Node pnode, String name, DataDescriptor data) throws NotificationServiceException {
+        Node existing = this.findChild(pnode.getId(), name);
+        if (existing != null) {
+            this.delete(pnode, existing);
+        }
+        return this.addBlob(pnode, name, data);
+    }
 
     private Node loadNode(String id) throws NodeNotFoundException {
         return systemLoadNode(id);
@@ -263,4 +736,10 @@ public class FileServiceBean implements FileService, IndexableContentProvider {
         }
         return content;
     }
+
+    @Override
+    public List<String> getIndexableChildren(String id) {
+        return QuarkusTransaction.requiringNew().call(() -> em.createNamedQuery("Node.findAllChildren", Node.class).setParameter("parent", id)
+                .getResultStream().map(Node::getId).toList());
+    }
 }
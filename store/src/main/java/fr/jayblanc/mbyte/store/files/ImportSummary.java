@@ -0,0 +1,28 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.files;
+
+/**
+ * Outcome of the expansion of an archive in a folder.
+ *
+ * @param folders number of folders created, existing ones being reused
+ * @param files   number of files created
+ * @param size    total size of the files, in bytes
+ * @param skipped number of entries ignored: duplicates, paths escaping the target folder, links
+ */
+public record ImportSummary(long folders, long files, long size, long skipped) {
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.files;
+
+import fr.jayblanc.mbyte.store.files.entity.Node;
+
+import java.util.List;
+
+/**
+ * A page of the children of a folder.
+ *
+ * @param nodes the children in the page, in listing order
+ * @param size  total number of children of the folder
+ * @param next  opaque cursor of the following page, null on the last one
+ */
+public record Listing(List<Node> nodes, long size, String next) {
+}
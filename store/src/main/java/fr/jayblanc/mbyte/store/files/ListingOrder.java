@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.files;
+
+import fr.jayblanc.mbyte.store.files.entity.Node;
+import fr.jayblanc.mbyte.store.files.exceptions.ListingCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Sort orders of folder listings, and the keyset cursors paging through them.
+ * <p>
+ * Every order ends with the node id so that rows are totally ordered and a cursor, which holds the sort key values of
+ * the last row of a page, designates exactly where the next page starts. Sort keys are covered by an index starting
+ * with the parent column, so a page costs an index range scan of its own length, whatever its position in the folder.
+ * Cursors are the base64url form of the order followed by the key values, separated by slashes which node names
+ * cannot contain.
+ *
+ * @author Jerome Blanchard
+ */
+public enum ListingOrder {
+
+    NAME(List.of(Key.NAME)),
+    MODIFICATION(List.of(Key.MODIFICATION)),
+    SIZE(List.of(Key.SIZE)),
+    TYPE(List.of(Key.TYPE, Key.NAME));
+
+    private static final String SEPARATOR = "/";
+
+    private final List<Key> keys;
+
+    ListingOrder(List<Key> keys) {
+        this.keys = new ArrayList<>(keys);
+        this.keys.add(Key.ID);
+    }
+
+    public static ListingOrder of(String name) {
+        return ListingOrder.valueOf(name.toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * @return the JPQL query of a page of the children of :parent, starting after the :k0..:kn cursor values when
+     * paging
+     */
+    public String query(boolean descending, boolean paging) {
+        String after = descending ? " < " : " > ";
+        StringBuilder jpql = new StringBuilder("SELECT n FROM Node n WHERE n.parent = :parent");
+        if (paging) {
+            jpql.append(" AND (");
+            for (int i = 0; i < keys.size(); i++) {
+                jpql.append(i == 0 ? "(" : " OR (");
+                for (int j = 0; j < i; j++) {
+                    jpql.append("n.").append(keys.get(j).field).append(" = :k").append(j).append(" AND ");
+                }
+                jpql.append("n.").append(keys.get(i).field).append(after).append(":k").append(i).append(")");
+            }
+            jpql.append(")");
+        }
+        jpql.append(" ORDER BY ");
+        for (int i = 0; i < keys.size(); i++) {
+            jpql.append(i == 0 ? "" : ", ").append("n.").append(keys.get(i).field).append(descending ? " DESC" : " ASC");
+        }
+        return jpql.toString();
+    }
+
+    public String cursor(Node last, boolean descending) {
+        StringBuilder cursor = new StringBuilder(this.name()).append(descending ? ".DESC" : ".ASC");
+        for (Key key : keys) {
+            cursor.append(SEPARATOR).append(key.getter.apply(last));
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the values of the cursor, as parameters k0..kn of the paging query
+     */
+    public List<Object> parse(String cursor, boolean descending) throws ListingCursorException {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(SEPARATOR, -1);
+        } catch (IllegalArgumentException e) {
+            throw new ListingCursorException("malformed cursor");
+        }
+        if (parts.length != keys.size() + 1 || !parts[0].equals(this.name() + (descending ? ".DESC" : ".ASC"))) {
+            throw new ListingCursorException("cursor does not belong to a listing in " + this.name().toLowerCase(Locale.ROOT)
+                    + (descending ? " descending" : " ascending") + " order");
+        }
+        List<Object> values = new ArrayList<>(keys.size());
+        try {
+            for (int i = 0; i < keys.size(); i++) {
+                values.add(keys.get(i).parser.apply(parts[i + 1]));
+            }
+        } catch (IllegalArgumentException e) {
+            throw new ListingCursorException("malformed cursor value");
+        }
+        return values;
+    }
+
+    private enum Key {
+        ID("id", Node::getId, value -> value),
+        NAME("name", Node::getName, value -> value),
+        MODIFICATION("modification", Node::getModification, Long::valueOf),
+        SIZE("size", Node::getSize, Long::valueOf),
+        TYPE("type", Node::getType, Node.Type::valueOf);
+
+        private final String field;
+        private final Function<Node, Object> getter;
+        private final Function<String, Object> parser;
+
+        Key(String field, Function<Node, Object> getter, Function<String, Object> parser) {
+            this.field = field;
+            this.getter = getter;
+            this.parser = parser;
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.files;
+
+import fr.jayblanc.mbyte.store.data.compress.CompressionPolicy;
+import fr.jayblanc.mbyte.store.files.entity.Node;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a subtree of nodes as a ZIP stream, entries being produced as the tree is walked: only the children of one
+ * folder at a time and the folders still to visit are held in memory, and nothing is written to disk.
+ * <p>
+ * Content whose mime type is already compressed (media, archives, office documents) is not compressed again. It is
+ * written with deflate level 0 rather than as a STORED entry, since a STORED entry needs the CRC of its content in its
+ * header, which would mean reading every blob twice.
+ *
+ * @author Jerome Blanchard
+ */
+public class TreeArchiver {
+
+    @FunctionalInterface
+    public interface Children {
+        List<Node> list(String parent) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface Content {
+        InputStream open(Node node) throws IOException;
+    }
+
+    private final Children children;
+    private final Content content;
+
+    public TreeArchiver(Children children, Content content) {
+        this.children = children;
+        this.content = content;
+    }
+
+    /**
+     * Writes the descendants of a folder, with paths relative to it. The output stream is not closed.
+     *
+     * @return the number of files written
+     */
+    public long write(String root, OutputStream output) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(output);
+        Deque<Folder> folders = new ArrayDeque<>();
+        folders.push(new Folder("", root));
+        long files = 0;
+        while (!folders.isEmpty()) {
+            Folder folder = folders.pop();
+            List<Node> nodes = children.list(folder.id());
+            if (nodes.isEmpty() && !folder.path().isEmpty()) {
+                // empty folders would be lost otherwise
+                zip.putNextEntry(new ZipEntry(folder.path()));
+                zip.closeEntry();
+            }
+            for (Node node : nodes) {
+                String path = folder.path() + entryName(node.getName());
+                if (node.isFolder()) {
+                    folders.push(new Folder(path + "/", node.getId()));
+                    continue;
+                }
+                ZipEntry entry = new ZipEntry(path);
+                entry.setTime(node.getModification());
+                zip.setLevel(CompressionPolicy.isCompressedType(node.getMimetype()) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+                zip.putNextEntry(entry);
+                try (InputStream is = content.open(node)) {
+                    is.transferTo(zip);
+                }
+                zip.closeEntry();
+                files++;
+            }
+        }
+        zip.finish();
+        zip.flush();
+        return files;
+    }
+
+    /**
+     * Node names are free text, separators are replaced so that every entry stays under the archive root.
+     */
+    static String entryName(String name) {
+        String entry = name.replace('/', '_').replace('\\', '_');
+        return entry.equals("..") || entry.equals(".") || entry.isEmpty() ? "_" : entry;
+    }
+
+    private record Folder(String path, String id) {
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.files.archive;
+
+import fr.jayblanc.mbyte.store.files.exceptions.ArchiveFormatException;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Sequential reader of the entries of an archive stream (zip, tar or gzipped tar), the content of each entry being read
+ * from the stream as it comes, without any temporary file.
+ *
+ * @author Jerome Blanchard
+ */
+public abstract class ArchiveReader implements Closeable {
+
+    private static final int MAGIC_LENGTH = 512;
+
+    /**
+     * @param path path of the entry in the archive, '/' separated
+     */
+    public record Entry(String path, boolean directory) {
+    }
+
+    /**
+     * @return the next file or directory entry, or null at the end of the archive
+     */
+    public abstract Entry next() throws IOException;
+
+    /**
+     * Content of the current entry. Closing it does not close the archive.
+     */
+    public abstract InputStream content();
+
+    /**
+     * Detects the format of the stream from its first bytes.
+     */
+    public static ArchiveReader open(InputStream is) throws IOException, ArchiveFormatException {
+        BufferedInputStream input = new BufferedInputStream(is, 64 * 1024);
+        input.mark(MAGIC_LENGTH);
+        byte[] magic = input.readNBytes(MAGIC_LENGTH);
+        input.reset();
+        if (magic.length >= 4 && magic[0] == 'P' && magic[1] == 'K' && (magic[2] == 3 || magic[2] == 5)) {
+            return new ZipArchiveReader(input);
+        }
+        if (magic.length >= 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) {
+            return open(new GZIPInputStream(input, 64 * 1024));
+        }
+        if (TarArchiveReader.isHeader(magic)) {
+            return new TarArchiveReader(input);
+        }
+        throw new ArchiveFormatException("unsupported archive format, expecting zip, tar or tar.gz");
+    }
+
+    /**
+     * Stream over an entry that leaves the archive open when closed.
+     */
+    static InputStream shield(InputStream is) {
+        return new FilterInputStream(is) {
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+}
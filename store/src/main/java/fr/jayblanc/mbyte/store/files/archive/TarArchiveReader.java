@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.files.archive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reader of POSIX (ustar and pax) and GNU tar streams. Only regular files and directories are returned, links and
+ * special files are skipped. Long names are read from pax 'path' records and GNU 'L' entries.
+ *
+ * @author Jerome Blanchard
+ */
+class TarArchiveReader extends ArchiveReader {
+
+    private static final int BLOCK = 512;
+
+    private final InputStream input;
+    private final byte[] header = new byte[BLOCK];
+    private InputStream current = InputStream.nullInputStream();
+    private long padding;
+
+    TarArchiveReader(InputStream input) {
+        this.input = input;
+    }
+
+    @Override
+    public Entry next() throws IOException {
+        String longName = null;
+        while (true) {
+            this.skipCurrent();
+            if (input.readNBytes(header, 0, BLOCK) < BLOCK || isEnd(header)) {
+                return null;
+            }
+            if (!isHeader(header)) {
+                throw new IOException("invalid tar header checksum");
+            }
+            long size = number(header, 124, 12);
+            char type = (char) header[156];
+            this.open(size);
+            switch (type) {
+                case 'L' -> longName = trim(current.readAllBytes());
+                case 'x' -> {
+                    String path = pax(current.readAllBytes());
+                    if (path != null) {
+                        longName = path;
+                    }
+                }
+                case '0', '\0', '7', '5' -> {
+                    String name = longName != null ? longName : this.name();
+                    return new Entry(name, type == '5' || name.endsWith("/"));
+                }
+                default -> longName = null;
+            }
+        }
+    }
+
+    @Override
+    public InputStream content() {
+        return shield(current);
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    /**
+     * A header block is recognized by its checksum: the sum of its bytes, the checksum field counting as spaces.
+     */
+    static boolean isHeader(byte[] block) {
+        if (block.length < BLOCK || isEnd(block)) {
+            return false;
+        }
+        long sum = 0;
+        for (int i = 0; i < BLOCK; i++) {
+            sum += (i >= 148 && i < 156) ? ' ' : (block[i] & 0xff);
+        }
+        try {
+            return number(block, 148, 8) == sum;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    //INTERNAL OPERATIONS
+
+    private void open(long size) {
+        InputStream source = input;
+        this.current = new InputStream() {
+            private long remaining = size;
+
+            @Override
+            public int read() throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int b = source.read();
+                if (b >= 0) {
+                    remaining--;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int r = source.read(bytes, offset, (int) Math.min(length, remaining));
+                if (r > 0) {
+                    remaining -= r;
+                }
+                return r;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = source.skip(Math.min(n, remaining));
+                remaining -= skipped;
+                return skipped;
+            }
+        };
+        this.padding = (BLOCK - size % BLOCK) % BLOCK;
+    }
+
+    private void skipCurrent() throws IOException {
+        current.transferTo(OutputStream.nullOutputStream());
+        input.skipNBytes(padding);
+        padding = 0;
+    }
+
+    private String name() {
+        String name = trim(header, 0, 100);
+        if ("ustar".equals(trim(header, 257, 5))) {
+            String prefix = trim(header, 345, 155);
+            if (!prefix.isEmpty()) {
+                return prefix + "/" + name;
+            }
+        }
+        return name;
+    }
+
+    private static String pax(byte[] records) {
+        String path = null;
+        String text = new String(records, StandardCharsets.UTF_8);
+        int position = 0;
+        while (position < text.length()) {
+            int space = text.indexOf(' ', position);
+            int newline = text.indexOf('\n', space);
+            if (space < 0 || newline < 0) {
+                break;
+            }
+            String record = text.substring(space + 1, newline);
+            if (record.startsWith("path=")) {
+                path = record.substring(5);
+            }
+            position = newline + 1;
+        }
+        return path;
+    }
+
+    private static boolean isEnd(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Octal field, or big endian binary when its first bit is set (GNU extension for large values).
+     */
+    private static long number(byte[] block, int offset, int length) {
+        if ((block[offset] & 0x80) != 0) {
+            long value = block[offset] & 0x7f;
+            for (int i = 1; i < length; i++) {
+                value = (value << 8) | (block[offset + i] & 0xff);
+            }
+            return value;
+        }
+        String value = trim(block, offset, length).trim();
+        return value.isEmpty() ? 0 : Long.parseLong(value, 8);
+    }
+
+    private static String trim(byte[] bytes) {
+        return trim(bytes, 0, bytes.length);
+    }
+
+    private static String trim(byte[] block, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && block[end] != 0) {
+            end++;
+        }
+        return new String(block, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.files.archive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * @author Jerome Blanchard
+ */
+class ZipArchiveReader extends ArchiveReader {
+
+    private final ZipInputStream zip;
+
+    ZipArchiveReader(InputStream is) {
+        this.zip = new ZipInputStream(is);
+    }
+
+    @Override
+    public Entry next() throws IOException {
+        ZipEntry entry = zip.getNextEntry();
+        if (entry == null) {
+            return null;
+        }
+        return new Entry(entry.getName(), entry.isDirectory());
+    }
+
+    @Override
+    public InputStream content() {
+        return shield(zip);
+    }
+
+    @Override
+    public void close() throws IOException {
+        zip.close();
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.files.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fr.jayblanc.mbyte.store.files.Listing;
+import fr.jayblanc.mbyte.store.files.entity.Node;
+import fr.jayblanc.mbyte.store.metrics.MetricsService;
+import fr.jayblanc.mbyte.store.notification.NotificationService;
+import fr.jayblanc.mbyte.store.notification.entity.Event;
+import io.quarkus.vertx.ConsumeEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Read cache of node metadata and folder listing pages, in front of the database for the browsing operations.
+ * <p>
+ * Every change of the tree is notified, after commit, with the id of the node changed and with the id of its parent
+ * folder (folder.update). An event drops the node, the listings of the node and the listings of its parent, which show
+ * the node size and modification date. Events are delivered asynchronously: to keep a reader that loaded a node just
+ * before a commit from caching it after the invalidation, readers take a stamp before loading, and the entry is only
+ * stored if no invalidation happened since.
+ * <p>
+ * Entries are detached copies: cached nodes are never shared with a persistence context, and callers get their own
+ * copy.
+ *
+ * @author Jerome Blanchard
+ */
+@ApplicationScoped
+public class NodeCache {
+
+    private static final Logger LOGGER = Logger.getLogger(NodeCache.class.getName());
+
+    public static final String NODE_HIT_METRIC = "node.cache.hit";
+    public static final String NODE_MISS_METRIC = "node.cache.miss";
+    public static final String LISTING_HIT_METRIC = "listing.cache.hit";
+    public static final String LISTING_MISS_METRIC = "listing.cache.miss";
+
+    private final AtomicLong invalidations = new AtomicLong();
+    private boolean enabled;
+    private Cache<String, Node> nodes;
+    private Cache<ListingKey, Listing> listings;
+    private Cache<String, String> parents;
+
+    @Inject NodeCacheConfig config;
+    @Inject MetricsService metrics;
+
+    public NodeCache() {
+    }
+
+    public NodeCache(long maxSize, Duration expiry, MetricsService metrics) {
+        this.metrics = metrics;
+        this.build(true, maxSize, expiry);
+    }
+
+    @PostConstruct
+    void init() {
+        LOGGER.log(Level.INFO, "Initialising node cache");
+        this.build(config.enabled(), config.maxSize(), config.expiry());
+    }
+
+    /**
+     * @return the stamp to give back when caching what is loaded next
+     */
+    public long stamp() {
+        return invalidations.get();
+    }
+
+    public Optional<Node> get(String id) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Node node = nodes.getIfPresent(id);
+        metrics.incMetric(node != null ? NODE_HIT_METRIC : NODE_MISS_METRIC);
+        return Optional.ofNullable(node).map(NodeCache::copy);
+    }
+
+    public void put(Node node, long stamp) {
+        if (enabled && stamp == invalidations.get()) {
+            nodes.put(node.getId(), copy(node));
+            parents.put(node.getId(), node.getParent());
+        }
+    }
+
+    /**
+     * @param page identifies the page in the listings of the folder: order, cursor, offset and limit
+     */
+    public Optional<Listing> getListing(String parent, String page) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Listing listing = listings.getIfPresent(new ListingKey(parent, page));
+        metrics.incMetric(listing != null ? LISTING_HIT_METRIC : LISTING_MISS_METRIC);
+        return Optional.ofNullable(listing).map(NodeCache::copy);
+    }
+
+    public void putListing(String parent, String page, Listing listing, long stamp) {
+        if (enabled && stamp == invalidations.get()) {
+            listings.put(new ListingKey(parent, page), copy(listing));
+            listing.nodes().forEach(node -> parents.put(node.getId(), parent));
+        }
+    }
+
+    public void invalidate(String id) {
+        if (!enabled || id == null) {
+            return;
+        }
+        invalidations.incrementAndGet();
+        String parent = parents.getIfPresent(id);
+        nodes.invalidate(id);
+        listings.asMap().keySet().removeIf(key -> key.parent().equals(id) || key.parent().equals(parent));
+    }
+
+    @ConsumeEvent(NotificationService.NOTIFICATION_TOPIC)
+    public void onMessage(Event event) {
+        LOGGER.log(Level.FINE, "Node cache invalidation for node: " + event.getSourceId());
+        this.invalidate(event.getSourceId());
+    }
+
+    public long size() {
+        return enabled ? nodes.estimatedSize() + listings.estimatedSize() : 0;
+    }
+
+    //INTERNAL OPERATIONS
+
+    private void build(boolean enabled, long maxSize, Duration expiry) {
+        this.enabled = enabled;
+        this.nodes = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(expiry).executor(Runnable::run).build();
+        this.listings = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(expiry).executor(Runnable::run).build();
+        this.parents = Caffeine.newBuilder().maximumSize(maxSize).executor(Runnable::run).build();
+    }
+
+    private static Listing copy(Listing listing) {
+        return new Listing(listing.nodes().stream().map(NodeCache::copy).toList(), listing.size(), listing.next());
+    }
+
+    private static Node copy(Node node) {
+        Node copy = new Node(node.getType(), node.getParent(), node.getId(), node.getName());
+        copy.setVersion(node.getVersion());
+        copy.setMimetype(node.getMimetype());
+        copy.setSize(node.getSize());
+        copy.setCreation(node.getCreation());
+        copy.setModification(node.getModification());
+        copy.setContent(node.getContent());
+        copy.setAncestry(node.getAncestry());
+        return copy;
+    }
+
+    private record ListingKey(String parent, String page) {
+    }
+
+}
@@ -29,10 +29,18 @@ import java.util.Objects;
         @NamedQuery(name = "Node.findAll", query = "SELECT n FROM Node n"),
         @NamedQuery(name = "Node.findChildrenForName", query = "SELECT n FROM Node n WHERE n.parent = :parent AND n.name = :name"),
         @NamedQuery(name = "Node.countChildren", query = "SELECT count(n) FROM Node n WHERE n.parent = :parent"),
+        @NamedQuery(name = "Node.findReferencedContents", query = "SELECT DISTINCT n.content FROM Node n WHERE n.content IN :contents"),
+        @NamedQuery(name = "Node.findContentsAfter", query = "SELECT DISTINCT n.content FROM Node n WHERE n.content > :cursor ORDER BY n.content"),
+        @NamedQuery(name = "Node.findByContent", query = "SELECT n FROM Node n WHERE n.content = :content"),
+        @NamedQuery(name = "Node.findByIds", query = "SELECT n FROM Node n WHERE n.id IN :ids"),
 })
 @Table(indexes = {
         @Index(name = "parent", columnList = "parent"),
         @Index(name = "parent_name", columnList = "parent, name"),
+        @Index(name = "parent_modification", columnList = "parent, modification, id"),
+        @Index(name = "parent_size", columnList = "parent, size, id"),
+        @Index(name = "parent_type", columnList = "parent, type, name"),
+        @Index(name = "content", columnList = "content"),
 })
 public class Node implements Comparable<Node>, Serializable {
 
@@ -52,6 +60,11 @@ public class Node implements Comparable<Node>, Serializable {
     private long creation;
     private long modification;
     private String content;
+    /**
+     * Materialized path: ids of the ancestors from the root down to the node itself, each one prefixed with a slash.
+     */
+    @Column(columnDefinition = "text")
+    private String ancestry;
 
     public Node() {
         this.creation = this.modification = System.currentTimeMillis();
@@ -146,6 +159,14 @@ public class Node implements Comparable<Node>, Serializable {
         this.modification = modification;
     }
 
+    public String getAncestry() {
+        return ancestry;
+    }
+
+    public void setAncestry(String ancestry) {
+        this.ancestry = ancestry;
+    }
+
     public boolean isRoot() {
         return this.id.equals(FileService.ROOT_NODE_ID);
     }
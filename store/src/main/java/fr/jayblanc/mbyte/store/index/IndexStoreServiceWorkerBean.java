@@ -68,7 +68,7 @@ public class IndexStoreServiceWorkerBean implements IndexStoreServiceWorker {
             LOGGER.log(Level.INFO, "Handle job: " + job.getId());
             StringBuilder report = new StringBuilder();
             try {
-                if (job.getType().endsWith("create") || job.getType().endsWith("update")) {
+                if (job.getType().endsWith("create") || job.getType().endsWith("update") || job.getType().endsWith("import")) {
                     Optional<IndexableContent> content = providers.stream()
                             .map(provider -> provider.getIndexableContent(job.getNode()))
                             .filter(Objects::nonNull).findFirst();
@@ -82,6 +82,18 @@ public class IndexStoreServiceWorkerBean implements IndexStoreServiceWorker {
                     }
                 }
 
+                if (job.getType().endsWith("import")) {
+                    // a whole batch of nodes imported at once: the folder and its direct children, sub folders having their own event
+                    for (IndexableContentProvider provider : providers) {
+                        for (String child : provider.getIndexableChildren(job.getNode())) {
+                            IndexableContent content = provider.getIndexableContent(child);
+                            if (content != null) {
+                                indexStore.index(content);
+                            }
+                        }
+                    }
+                }
+
                 if (job.getType().endsWith("remove")) {
                     indexStore.remove(job.getNode());
                 }
@@ -16,8 +16,18 @@
  */
 package fr.jayblanc.mbyte.store.index;
 
+import java.util.List;
+
 public interface IndexableContentProvider {
 
     IndexableContent getIndexableContent(String id);
 
+    /**
+     * Identifiers of the contents to index along with the given one, when a single event stands for a batch of contents
+     * (see folder.import).
+     */
+    default List<String> getIndexableChildren(String id) {
+        return List.of();
+    }
+
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.limit;
+
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Per identity request rate limits and bandwidth shaping.
+ *
+ * @author Jerome Blanchard
+ */
+public interface RateLimitService {
+
+    enum Route {
+        READ, WRITE;
+
+        public static Route of(String method) {
+            return switch (method) {
+                case "GET", "HEAD", "OPTIONS" -> READ;
+                default -> WRITE;
+            };
+        }
+    }
+
+    enum Direction {
+        UPLOAD, DOWNLOAD
+    }
+
+    /**
+     * @return 0 when the request is admitted, otherwise the nanoseconds to wait before it would be
+     */
+    long tryAcquire(String identity, Route route);
+
+    boolean isShaped(Direction direction);
+
+    /**
+     * Accounts bytes transferred by an identity.
+     *
+     * @return the nanoseconds to wait before transferring more, 0 when the transfer is within the bandwidth
+     */
+    long reserve(String identity, Direction direction, long bytes);
+
+    /**
+     * @return the stream itself when the direction is not shaped, otherwise a stream pausing reads to stay within the
+     * bandwidth of the identity
+     */
+    InputStream shape(String identity, Direction direction, InputStream input);
+
+    Map<String, Long> listMetrics();
+
+}
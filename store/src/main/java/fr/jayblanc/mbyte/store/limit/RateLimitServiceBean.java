@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.limit;
+
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.io.InputStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps one token bucket per identity and route (requests) or direction (bytes). Buckets are created on first use and
+ * dropped once full again, so the map only holds the identities active in the last seconds. Counters are striped
+ * adders: the hot path takes no lock, whatever the number of concurrent requests.
+ *
+ * @author Jerome Blanchard
+ */
+@ApplicationScoped
+public class RateLimitServiceBean implements RateLimitService {
+
+    private static final Logger LOGGER = Logger.getLogger(RateLimitService.class.getName());
+
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final Map<Route, LongAdder> admitted = new EnumMap<>(Route.class);
+    private final Map<Route, LongAdder> rejected = new EnumMap<>(Route.class);
+    private final Map<Direction, LongAdder> bytes = new EnumMap<>(Direction.class);
+    private final Map<Direction, LongAdder> delays = new EnumMap<>(Direction.class);
+
+    @Inject RateLimitConfig config;
+
+    public RateLimitServiceBean() {
+        for (Route route : Route.values()) {
+            admitted.put(route, new LongAdder());
+            rejected.put(route, new LongAdder());
+        }
+        for (Direction direction : Direction.values()) {
+            bytes.put(direction, new LongAdder());
+            delays.put(direction, new LongAdder());
+        }
+    }
+
+    @Override
+    public long tryAcquire(String identity, Route route) {
+        if (!config.enabled()) {
+            return 0;
+        }
+        RateLimitConfig.Bucket limit = this.limit(route);
+        long now = System.nanoTime();
+        long wait = buckets.computeIfAbsent(route.name() + ":" + identity, key -> new TokenBucket(limit.rate(), limit.burst(), now)).tryAcquire(1, now);
+        if (wait > 0) {
+            LOGGER.log(Level.FINE, "{0} request rejected for identity: {1}", new Object[]{route, identity});
+            rejected.get(route).increment();
+        } else {
+            admitted.get(route).increment();
+        }
+        return wait;
+    }
+
+    @Override
+    public boolean isShaped(Direction direction) {
+        return config.enabled() && this.bandwidth(direction) > 0;
+    }
+
+    @Override
+    public long reserve(String identity, Direction direction, long size) {
+        if (!this.isShaped(direction)) {
+            return 0;
+        }
+        long rate = this.bandwidth(direction);
+        long now = System.nanoTime();
+        // one second of bandwidth can be sent at once, so that short transfers are not slowed down
+        long wait = buckets.computeIfAbsent(direction.name() + ":" + identity, key -> new TokenBucket(rate, rate, now)).reserve(size, now);
+        bytes.get(direction).add(size);
+        delays.get(direction).add(wait);
+        return wait;
+    }
+
+    @Override
+    public InputStream shape(String identity, Direction direction, InputStream input) {
+        if (!this.isShaped(direction)) {
+            return input;
+        }
+        return new ThrottledInputStream(input, size -> this.reserve(identity, direction, size));
+    }
+
+    @Override
+    public Map<String, Long> listMetrics() {
+        Map<String, Long> metrics = new TreeMap<>();
+        metrics.put("identities", (long) buckets.size());
+        for (Route route : Route.values()) {
+            String prefix = route.name().toLowerCase();
+            metrics.put(prefix + ".rate", (long) this.limit(route).rate());
+            metrics.put(prefix + ".burst", (long) this.limit(route).burst());
+            metrics.put(prefix + ".admitted", admitted.get(route).sum());
+            metrics.put(prefix + ".rejected", rejected.get(route).sum());
+        }
+        for (Direction direction : Direction.values()) {
+            String prefix = direction.name().toLowerCase();
+            metrics.put(prefix + ".rate", this.bandwidth(direction));
+            metrics.put(prefix + ".bytes", bytes.get(direction).sum());
+            metrics.put(prefix + ".delayed.ms", TimeUnit.NANOSECONDS.toMillis(delays.get(direction).sum()));
+        }
+        return metrics;
+    }
+
+    @Scheduled(every = "1m")
+    void sweep() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(bucket -> bucket.isFull(now));
+    }
+
+    //INTERNAL OPERATIONS
+
+    private RateLimitConfig.Bucket limit(Route route) {
+        return route == Route.READ ? config.read() : config.write();
+    }
+
+    private long bandwidth(Direction direction) {
+        return direction == Direction.UPLOAD ? config.uploadRate() : config.downloadRate();
+    }
+
+}
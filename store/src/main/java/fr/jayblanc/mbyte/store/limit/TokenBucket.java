@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.limit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock free token bucket, implemented as a generic cell rate algorithm: instead of a token count refilled over time, the
+ * bucket only keeps the theoretical arrival time of the next token, which is advanced by one emission interval per token
+ * taken. A request fits when that time is not further than burst intervals ahead of now. The whole state is one long,
+ * updated with a single compare and set, so concurrent requests of the same identity never block each other.
+ * <p>
+ * Times are in nanoseconds from {@link System#nanoTime()}, passed by the caller.
+ *
+ * @author Jerome Blanchard
+ */
+public class TokenBucket {
+
+    private final long interval;
+    private final long tolerance;
+    private final AtomicLong tat;
+
+    /**
+     * @param rate tokens per second
+     * @param burst tokens that can be taken at once by an idle bucket
+     */
+    public TokenBucket(double rate, long burst, long now) {
+        this.interval = Math.max(1L, (long) (1_000_000_000d / rate));
+        this.tolerance = Math.max(1L, burst) * interval;
+        this.tat = new AtomicLong(now);
+    }
+
+    /**
+     * Takes the tokens only when they are all available.
+     *
+     * @return 0 when the tokens are taken, otherwise the nanoseconds to wait before they would be
+     */
+    public long tryAcquire(long tokens, long now) {
+        while (true) {
+            long current = tat.get();
+            long next = Math.max(current, now) + tokens * interval;
+            long wait = next - now - tolerance;
+            if (wait > 0) {
+                return wait;
+            }
+            if (tat.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Always takes the tokens, going in debt if needed; used to shape a stream rather than reject it.
+     *
+     * @return the nanoseconds the caller has to wait for the tokens to be earned, 0 when they were available
+     */
+    public long reserve(long tokens, long now) {
+        while (true) {
+            long current = tat.get();
+            long next = Math.max(current, now) + tokens * interval;
+            if (tat.compareAndSet(current, next)) {
+                return Math.max(0L, next - now - tolerance);
+            }
+        }
+    }
+
+    /**
+     * A full bucket behaves exactly like a new one and can be dropped.
+     */
+    public boolean isFull(long now) {
+        return tat.get() <= now;
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.upload;
+
+import fr.jayblanc.mbyte.store.data.exception.DataNotFoundException;
+import fr.jayblanc.mbyte.store.data.exception.DataStoreException;
+import fr.jayblanc.mbyte.store.files.exceptions.NodeAlreadyExistsException;
+import fr.jayblanc.mbyte.store.files.exceptions.NodeNotFoundException;
+import fr.jayblanc.mbyte.store.files.exceptions.NodePersistenceException;
+import fr.jayblanc.mbyte.store.files.exceptions.NodeTypeException;
+import fr.jayblanc.mbyte.store.notification.NotificationServiceException;
+import fr.jayblanc.mbyte.store.upload.exceptions.UploadSessionException;
+import fr.jayblanc.mbyte.store.upload.exceptions.UploadSessionNotFoundException;
+
+import java.io.InputStream;
+
+/**
+ * Resumable uploads: a file is sent as numbered chunks, in any order and possibly in parallel, then committed as a new
+ * node once every chunk has been received.
+ *
+ * @author Jerome Blanchard
+ */
+public interface UploadService {
+
+    UploadSession create(String parent, String name, long size, long chunkSize) throws UploadSessionException, NodeNotFoundException, NodeTypeException;
+
+    UploadSession get(String id) throws UploadSessionNotFoundException;
+
+    UploadSession putChunk(String id, int index, InputStream data) throws UploadSessionNotFoundException, UploadSessionException;
+
+    String commit(String id) throws UploadSessionNotFoundException, UploadSessionException, DataStoreException, DataNotFoundException, NodeNotFoundException, NodeAlreadyExistsException,
+            NodeTypeException, NodePersistenceException, NotificationServiceException;
+
+    void abort(String id) throws UploadSessionNotFoundException;
+
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.upload;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.jayblanc.mbyte.store.data.DataDescriptor;
+import fr.jayblanc.mbyte.store.data.DataStore;
+import fr.jayblanc.mbyte.store.data.DataStoreConfig;
+import fr.jayblanc.mbyte.store.data.exception.DataNotFoundException;
+import fr.jayblanc.mbyte.store.data.exception.DataStoreException;
+import fr.jayblanc.mbyte.store.data.hash.HashAlgorithm;
+import fr.jayblanc.mbyte.store.data.hash.Hasher;
+import fr.jayblanc.mbyte.store.files.FileService;
+import fr.jayblanc.mbyte.store.files.entity.Node;
+import fr.jayblanc.mbyte.store.files.exceptions.*;
+import fr.jayblanc.mbyte.store.notification.NotificationServiceException;
+import fr.jayblanc.mbyte.store.upload.exceptions.UploadSessionException;
+import fr.jayblanc.mbyte.store.upload.exceptions.UploadSessionNotFoundException;
+import io.quarkus.runtime.Startup;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.*;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Chunks of a session are written at their offset in a single staging file (positioned writes, so they can arrive in
+ * any order or in parallel). The content hash is advanced as soon as a contiguous prefix of chunks is available,
+ * re-reading those chunks from the page cache, so that at commit time only the tail remains to be hashed and the staging
+ * file is simply moved into the data store.
+ *
+ * @author Jerome Blanchard
+ */
+@Startup
+@Singleton
+public class UploadServiceBean implements UploadService {
+
+    private static final Logger LOGGER = Logger.getLogger(UploadService.class.getName());
+    private static final String SESSION_FILE = "session.json";
+    private static final String DATA_FILE = "data";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Inject UploadConfig config;
+    @Inject DataStore datastore;
+    @Inject DataStoreConfig datastoreConfig;
+    @Inject FileService files;
+    @Inject ObjectMapper mapper;
+
+    private final Map<String, Staging> stagings = new ConcurrentHashMap<>();
+    private Path base;
+
+    public UploadServiceBean() {
+    }
+
+    @Startup
+    public void init() {
+        this.base = Paths.get(config.home());
+        LOGGER.log(Level.FINEST, "Initializing service with base folder: " + base);
+        try {
+            Files.createDirectories(base);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "unable to initialize upload service", e);
+        }
+    }
+
+    @Override
+    public UploadSession create(String parent, String name, long size, long chunkSize) throws UploadSessionException, NodeNotFoundException, NodeTypeException {
+        LOGGER.log(Level.INFO, "Creating upload session for name: " + name + " in parent: " + parent);
+        if (size < 0 || size > config.maxSize()) {
+            throw new UploadSessionException("size must be between 0 and " + config.maxSize() + " bytes");
+        }
+        if (chunkSize <= 0 || chunkSize > config.chunkMaxSize()) {
+            throw new UploadSessionException("chunk size must be between 1 and " + config.chunkMaxSize() + " bytes");
+        }
+        if (UploadSession.chunks(size, chunkSize) > Integer.MAX_VALUE) {
+            throw new UploadSessionException("chunk size is too small for a content of " + size + " bytes");
+        }
+        Node pnode = files.get(parent);
+        if (!pnode.isFolder()) {
+            throw new NodeTypeException("Parent must be a node of type TREE");
+        }
+        UploadSession session = new UploadSession();
+        session.setId(UUID.randomUUID().toString());
+        session.setParent(pnode.getId());
+        session.setName(name);
+        session.setSize(size);
+        session.setChunkSize(chunkSize);
+        Staging staging = new Staging(session);
+        try {
+            Files.createDirectories(staging.folder);
+            try (RandomAccessFile file = new RandomAccessFile(staging.data.toFile(), "rw")) {
+                // sparse file, chunks are written at their own offset
+                file.setLength(size);
+            }
+            this.save(staging);
+        } catch (IOException e) {
+            throw new UploadSessionException("unable to create upload session staging area", e);
+        }
+        stagings.put(session.getId(), staging);
+        return staging.snapshot();
+    }
+
+    @Override
+    public UploadSession get(String id) throws UploadSessionNotFoundException {
+        return this.load(id).snapshot();
+    }
+
+    @Override
+    public UploadSession putChunk(String id, int index, InputStream data) throws UploadSessionNotFoundException, UploadSessionException {
+        LOGGER.log(Level.FINE, "Receiving chunk " + index + " for upload session: " + id);
+        Staging staging = this.load(id);
+        UploadSession session = staging.session;
+        if (index < 0 || index >= session.getChunks()) {
+            throw new UploadSessionException("chunk index must be between 0 and " + (session.getChunks() - 1));
+        }
+        try {
+            if (staging.isReceived(index)) {
+                // retry of a chunk whose acknowledgement has been lost, content is already there
+                data.transferTo(OutputStream.nullOutputStream());
+                return staging.snapshot();
+            }
+            long length = session.getChunkLength(index);
+            try (FileChannel channel = FileChannel.open(staging.data, StandardOpenOption.WRITE)) {
+                if (!writeChunk(channel, session.getChunkOffset(index), length, data)) {
+                    throw new UploadSessionException("chunk " + index + " must be " + length + " bytes long");
+                }
+            }
+            staging.receive(index);
+            this.save(staging);
+            staging.hash();
+        } catch (IOException e) {
+            throw new UploadSessionException("unable to write chunk " + index + " of upload session " + id, e);
+        }
+        return staging.snapshot();
+    }
+
+    @Override
+    public String commit(String id) throws UploadSessionNotFoundException, UploadSessionException, DataStoreException, DataNotFoundException, NodeNotFoundException,
+            NodeAlreadyExistsException, NodeTypeException, NodePersistenceException, NotificationServiceException {
+        LOGGER.log(Level.INFO, "Committing upload session: " + id);
+        Staging staging = this.load(id);
+        UploadSession session = staging.session;
+        DataDescriptor data;
+        synchronized (staging) {
+            if (session.getModification() < System.currentTimeMillis() - config.expiry().toMillis()) {
+                // not purged yet, but its content may already have been collected (store.gc.grace covers the expiry only)
+                throw new UploadSessionNotFoundException("upload session " + id + " has expired");
+            }
+            if (session.getKey() == null) {
+                if (!session.isComplete()) {
+                    throw new UploadSessionException("upload session " + id + " is missing " + (session.getChunks() - session.getReceived().size()) + " chunks");
+                }
+                try {
+                    if (Files.size(staging.data) != session.getSize()) {
+                        throw new UploadSessionException("staging file of upload session " + id + " does not match the announced size");
+                    }
+                    String key = staging.hash();
+                    data = datastore.put(staging.data, key, session.getName());
+                    session.setKey(key);
+                    this.save(staging);
+                } catch (IOException e) {
+                    throw new UploadSessionException("unable to hash content of upload session " + id, e);
+                }
+            } else {
+                // content has been moved to the store by a previous commit attempt that failed while creating the node
+                data = new DataDescriptor(session.getKey(), session.getSize(), null);
+                data.setType(datastore.type(session.getKey(), session.getName()));
+            }
+        }
+        String nid = files.add(session.getParent(), session.getName(), data);
+        this.delete(staging);
+        return nid;
+    }
+
+    @Override
+    public void abort(String id) throws UploadSessionNotFoundException {
+        LOGGER.log(Level.INFO, "Aborting upload session: " + id);
+        this.delete(this.load(id));
+    }
+
+    @Scheduled(every = "1h")
+    public void purge() {
+        LOGGER.log(Level.FINE, "Purging expired upload sessions");
+        long limit = System.currentTimeMillis() - config.expiry().toMillis();
+        try (DirectoryStream<Path> folders = Files.newDirectoryStream(base)) {
+            for (Path folder : folders) {
+                try {
+                    Staging staging = this.load(folder.getFileName().toString());
+                    if (staging.session.getModification() < limit) {
+                        LOGGER.log(Level.INFO, "Upload session expired: " + staging.session.getId());
+                        this.delete(staging);
+                    }
+                } catch (UploadSessionNotFoundException e) {
+                    LOGGER.log(Level.WARNING, "Removing unreadable upload session folder: " + folder);
+                    this.deleteFolder(folder);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to purge expired upload sessions", e);
+        }
+    }
+
+    //INTERNAL OPERATIONS
+
+    /**
+     * Writes exactly length bytes of data at the given offset. The stream is then probed for one more byte that is never
+     * written, so an oversized chunk cannot spill over the next chunk or grow the staging file.
+     *
+     * @return true if data holds exactly length bytes
+     */
+    static boolean writeChunk(FileChannel channel, long offset, long length, InputStream data) throws IOException {
+        ReadableByteChannel in = Channels.newChannel(data);
+        long written = 0;
+        while (written < length) {
+            long count = channel.transferFrom(in, offset + written, length - written);
+            if (count <= 0) {
+                return false;
+            }
+            written += count;
+        }
+        return data.read() == -1;
+    }
+
+    private Staging load(String id) throws UploadSessionNotFoundException {
+        Staging staging = stagings.get(id);
+        if (staging != null) {
+            return staging;
+        }
+        Path file = base.resolve(id).resolve(SESSION_FILE);
+        if (!base.resolve(id).getParent().equals(base) || !Files.exists(file)) {
+            throw new UploadSessionNotFoundException("unable to find an upload session with id: " + id);
+        }
+        try {
+            UploadSession session = mapper.readerFor(UploadSession.class).without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES).readValue(file.toFile());
+            // hashing state is not persisted, it is rebuilt from the chunks already on disk
+            return stagings.computeIfAbsent(id, key -> new Staging(session));
+        } catch (IOException e) {
+            throw new UploadSessionNotFoundException("unable to read upload session with id: " + id, e);
+        }
+    }
+
+    private void save(Staging staging) throws IOException {
+        synchronized (staging) {
+            staging.session.setModification(System.currentTimeMillis());
+            Path tmp = staging.folder.resolve(SESSION_FILE + ".tmp");
+            mapper.writeValue(tmp.toFile(), staging.session);
+            Files.move(tmp, staging.folder.resolve(SESSION_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private void delete(Staging staging) {
+        stagings.remove(staging.session.getId());
+        this.deleteFolder(staging.folder);
+    }
+
+    private void deleteFolder(Path folder) {
+        try (Stream<Path> paths = Files.walk(folder)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Unable to delete upload staging file: " + path, e);
+                }
+            });
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to delete upload staging folder: " + folder, e);
+        }
+    }
+
+    /**
+     * In memory side of a session: staging paths and incremental hashing state.
+     */
+    class Staging {
+
+        private final UploadSession session;
+        private final Path folder;
+        private final Path data;
+        private final Hasher hasher;
+        private int hashed = 0;
+        private String hash;
+
+        Staging(UploadSession session) {
+            this.session = session;
+            this.folder = base.resolve(session.getId());
+            this.data = folder.resolve(DATA_FILE);
+            // the key computed here must be the one the data store would compute for the same content
+            this.hasher = HashAlgorithm.forKeys(datastoreConfig.hash().algorithm()).create();
+        }
+
+        /**
+         * The session itself keeps changing under this monitor as chunks arrive, callers get a copy to serialize.
+         */
+        synchronized UploadSession snapshot() {
+            return session.copy();
+        }
+
+        synchronized boolean isReceived(int index) {
+            return session.getReceived().contains(index);
+        }
+
+        synchronized void receive(int index) {
+            session.getReceived().add(index);
+        }
+
+        /**
+         * Feeds the digest with every chunk of the contiguous received prefix that has not been hashed yet.
+         *
+         * @return the content hash once all the chunks have been hashed, null otherwise
+         */
+        synchronized String hash() throws IOException {
+            if (hash != null) {
+                return hash;
+            }
+            if (hashed < session.getChunks() && session.getReceived().contains(hashed)) {
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                try (FileChannel channel = FileChannel.open(data, StandardOpenOption.READ)) {
+                    while (hashed < session.getChunks() && session.getReceived().contains(hashed)) {
+                        long position = session.getChunkOffset(hashed);
+                        long end = position + session.getChunkLength(hashed);
+                        while (position < end) {
+                            buffer.clear().limit((int) Math.min(BUFFER_SIZE, end - position));
+                            int r = channel.read(buffer, position);
+                            if (r < 0) {
+                                throw new IOException("unexpected end of staging file for upload session: " + session.getId());
+                            }
+                            hasher.update(buffer.array(), 0, r);
+                            position += r;
+                        }
+                        hashed++;
+                    }
+                }
+            }
+            if (hashed == session.getChunks()) {
+                hash = hasher.digest();
+            }
+            return hash;
+        }
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.upload;
+
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * State of a resumable upload: the target node (parent and name), the announced size, the chunk size chosen by the
+ * client and the indexes of the chunks already received.
+ *
+ * @author Jerome Blanchard
+ */
+public class UploadSession {
+
+    private String id;
+    private String parent;
+    private String name;
+    private long size;
+    private long chunkSize;
+    private long creation;
+    private long modification;
+    private SortedSet<Integer> received;
+    private String key;
+
+    public UploadSession() {
+        this.creation = this.modification = System.currentTimeMillis();
+        this.received = new TreeSet<>();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getParent() {
+        return parent;
+    }
+
+    public void setParent(String parent) {
+        this.parent = parent;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(long chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public long getCreation() {
+        return creation;
+    }
+
+    public void setCreation(long creation) {
+        this.creation = creation;
+    }
+
+    public long getModification() {
+        return modification;
+    }
+
+    public void setModification(long modification) {
+        this.modification = modification;
+    }
+
+    public SortedSet<Integer> getReceived() {
+        return received;
+    }
+
+    public void setReceived(SortedSet<Integer> received) {
+        this.received = received;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public int getChunks() {
+        return Math.toIntExact(chunks(size, chunkSize));
+    }
+
+    public long getChunkOffset(int index) {
+        return index * chunkSize;
+    }
+
+    public long getChunkLength(int index) {
+        return Math.min(chunkSize, size - getChunkOffset(index));
+    }
+
+    public boolean isComplete() {
+        return received.size() == getChunks();
+    }
+
+    /**
+     * @return an independent copy, received chunks included, that can be serialized while chunks keep arriving
+     */
+    public UploadSession copy() {
+        UploadSession copy = new UploadSession();
+        copy.id = id;
+        copy.parent = parent;
+        copy.name = name;
+        copy.size = size;
+        copy.chunkSize = chunkSize;
+        copy.creation = creation;
+        copy.modification = modification;
+        copy.received = new TreeSet<>(received);
+        copy.key = key;
+        return copy;
+    }
+
+    /**
+     * Number of chunks needed to hold size bytes, computed without overflowing for sizes close to Long.MAX_VALUE.
+     */
+    public static long chunks(long size, long chunkSize) {
+        return size / chunkSize + (size % chunkSize == 0 ? 0 : 1);
+    }
+
+    @Override
+    public String toString() {
+        return "UploadSession{" +
+                "id='" + id + '\'' +
+                ", parent='" + parent + '\'' +
+                ", name='" + name + '\'' +
+                ", size=" + size +
+                ", chunkSize=" + chunkSize +
+                ", received=" + received.size() + "/" + getChunks() +
+                ", key='" + key + '\'' +
+                '}';
+    }
+}
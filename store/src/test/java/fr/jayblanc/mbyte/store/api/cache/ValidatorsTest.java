@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.api.cache;
+
+import fr.jayblanc.mbyte.store.files.entity.Node;
+import jakarta.ws.rs.core.EntityTag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class ValidatorsTest {
+
+    @Test
+    public void testMetadataTagFollowsVersion() {
+        Node node = this.node("n1", 3);
+        assertEquals("\"n1.3\"", Validators.format(Validators.metadata(node)));
+        assertFalse(Validators.metadata(node).isWeak());
+        node.setVersion(4);
+        assertEquals("\"n1.4\"", Validators.format(Validators.metadata(node)));
+    }
+
+    @Test
+    public void testListingTagFollowsChildren() {
+        Node folder = this.node("f", 2);
+        Node child = this.node("c1", 1);
+        String tag = Validators.listing(folder, List.of(child)).getValue();
+        assertEquals(tag, Validators.listing(folder, List.of(this.node("c1", 1))).getValue());
+        child.setVersion(2);
+        assertNotEquals(tag, Validators.listing(folder, List.of(child)).getValue());
+        assertNotEquals(tag, Validators.listing(folder, List.of()).getValue());
+    }
+
+    @Test
+    public void testLastModifiedIsTruncatedToSeconds() {
+        Node node = this.node("n1", 0);
+        node.setModification(1700000000123L);
+        assertEquals(1700000000000L, Validators.lastModified(node).getTime());
+    }
+
+    @Test
+    public void testHashAddressedContent() {
+        Node node = this.node("n1", 0);
+        node.setContent("abcd");
+        assertTrue(Validators.isHashAddressed(node, "abcd"));
+        assertFalse(Validators.isHashAddressed(node, "abce"));
+        assertFalse(Validators.isHashAddressed(node, null));
+        assertEquals("\"abcd\"", Validators.format(Validators.content(node)));
+    }
+
+    @Test
+    public void testConditionalRequests() {
+        EntityTag tag = new EntityTag("abcd");
+        Date modified = new Date(1700000000000L);
+        String date = Validators.HTTP_DATE.format(modified.toInstant());
+        String earlier = Validators.HTTP_DATE.format(modified.toInstant().minusSeconds(60));
+        assertTrue(Validators.isNotModified("\"abcd\"", null, tag, modified));
+        assertTrue(Validators.isNotModified("\"x\", W/\"abcd\"", null, tag, modified));
+        assertTrue(Validators.isNotModified("*", null, tag, modified));
+        // If-None-Match takes precedence over If-Modified-Since
+        assertFalse(Validators.isNotModified("\"x\"", date, tag, modified));
+        assertTrue(Validators.isNotModified(null, date, tag, modified));
+        assertFalse(Validators.isNotModified(null, earlier, tag, modified));
+        assertFalse(Validators.isNotModified(null, "garbage", tag, modified));
+        assertFalse(Validators.isNotModified(null, null, tag, modified));
+
+        assertTrue(Validators.matchesIfRange(null, tag, modified));
+        assertTrue(Validators.matchesIfRange("\"abcd\"", tag, modified));
+        assertFalse(Validators.matchesIfRange("W/\"abcd\"", tag, modified));
+        assertTrue(Validators.matchesIfRange(date, tag, modified));
+        assertFalse(Validators.matchesIfRange(earlier, tag, modified));
+    }
+
+    private Node node(String id, long version) {
+        Node node = new Node();
+        node.setId(id);
+        node.setVersion(version);
+        return node;
+    }
+
+}
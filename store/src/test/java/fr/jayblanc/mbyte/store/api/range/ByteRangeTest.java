@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.api.range;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class ByteRangeTest {
+
+    @Test
+    public void testSingleRanges() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=0-99", 1000);
+        assertEquals(1, ranges.size());
+        assertEquals(0, ranges.get(0).getFirst());
+        assertEquals(100, ranges.get(0).getLength());
+        assertEquals("bytes 0-99/1000", ranges.get(0).toContentRange(1000));
+
+        ranges = ByteRange.parse("bytes=900-", 1000);
+        assertEquals("bytes 900-999/1000", ranges.get(0).toContentRange(1000));
+
+        ranges = ByteRange.parse("bytes=-100", 1000);
+        assertEquals("bytes 900-999/1000", ranges.get(0).toContentRange(1000));
+
+        ranges = ByteRange.parse("bytes=500-5000", 1000);
+        assertEquals("bytes 500-999/1000", ranges.get(0).toContentRange(1000));
+    }
+
+    @Test
+    public void testMultipleRanges() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=500-599, 0-99,90-199", 1000);
+        assertEquals(2, ranges.size());
+        assertEquals("0-199", ranges.get(0).toString());
+        assertEquals("500-599", ranges.get(1).toString());
+    }
+
+    @Test
+    public void testUnsatisfiableRanges() {
+        assertTrue(ByteRange.parse("bytes=1000-", 1000).isEmpty());
+        assertTrue(ByteRange.parse("bytes=-10", 0).isEmpty());
+        assertEquals("bytes */1000", ByteRange.toUnsatisfiedContentRange(1000));
+    }
+
+    @Test
+    public void testIgnoredRanges() {
+        assertNull(ByteRange.parse(null, 1000));
+        assertNull(ByteRange.parse("items=0-10", 1000));
+        assertNull(ByteRange.parse("bytes=abc-", 1000));
+        assertNull(ByteRange.parse("bytes=10-5", 1000));
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.api.resources;
+
+import fr.jayblanc.mbyte.store.auth.AuthenticationConfig;
+import fr.jayblanc.mbyte.store.files.FileService;
+import io.quarkus.oidc.UserInfo;
+import io.quarkus.security.identity.IdentityProviderManager;
+import io.quarkus.security.identity.SecurityIdentity;
+import io.quarkus.security.runtime.QuarkusPrincipal;
+import io.quarkus.security.runtime.QuarkusSecurityIdentity;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.quarkus.vertx.http.runtime.security.ChallengeData;
+import io.quarkus.vertx.http.runtime.security.HttpAuthenticationMechanism;
+import io.restassured.response.ExtractableResponse;
+import io.restassured.response.Response;
+import io.smallrye.mutiny.Uni;
+import io.vertx.ext.web.RoutingContext;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Alternative;
+import jakarta.inject.Inject;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Jerome Blanchard
+ */
+@QuarkusTest
+@TestProfile(NodesStreamRoutesTest.OwnerProfile.class)
+public class NodesStreamRoutesTest {
+
+    // several socket reads, so that part of the body arrives while the parent is being checked
+    private static final int SIZE = 4 * 1024 * 1024 + 17;
+
+    @Test
+    public void rawBodyTest() {
+        byte[] data = random(SIZE);
+        String name = UUID.randomUUID() + ".bin";
+        String id = created(given().contentType("application/octet-stream").body(new ByteArrayInputStream(data))
+                .when().post(NodesStreamRoutes.PATH + "/" + FileService.ROOT_NODE_ID + "?name=" + name));
+        assertStored(id, data);
+    }
+
+    @Test
+    public void multipartBodyTest() {
+        byte[] data = random(SIZE);
+        String name = UUID.randomUUID() + ".bin";
+        String id = created(given().multiPart("data", name, data, "application/octet-stream")
+                .when().post(NodesStreamRoutes.PATH + "/" + FileService.ROOT_NODE_ID));
+        assertStored(id, data);
+    }
+
+    @Test
+    public void conditionalAndRangeTest() {
+        byte[] data = random(1024);
+        String id = created(given().contentType("application/octet-stream").body(data)
+                .when().post(NodesStreamRoutes.PATH + "/" + FileService.ROOT_NODE_ID + "?name=" + UUID.randomUUID() + ".bin"));
+        String content = NodesStreamRoutes.PATH + "/" + id + "/content";
+        String tag = "\"" + DigestUtils.sha256Hex(data) + "\"";
+
+        given().header("If-None-Match", tag).when().get(content).then().statusCode(304);
+
+        byte[] range = given().header("Range", "bytes=10-19").when().get(content).then().statusCode(206)
+                .header("Content-Range", "bytes 10-19/1024").extract().asByteArray();
+        assertArrayEquals(Arrays.copyOfRange(data, 10, 20), range);
+
+        given().header("Range", "bytes=2048-").when().get(content).then().statusCode(416)
+                .header("Content-Range", "bytes */1024");
+    }
+
+    private static String created(Response response) {
+        ExtractableResponse<Response> created = response.then().statusCode(201).extract();
+        String location = created.header("Location");
+        return location.substring(location.lastIndexOf('/') + 1);
+    }
+
+    private static void assertStored(String id, byte[] data) {
+        ExtractableResponse<Response> content = given().when().get(NodesStreamRoutes.PATH + "/" + id + "/content")
+                .then().statusCode(200).extract();
+        assertEquals("\"" + DigestUtils.sha256Hex(data) + "\"", content.header("ETag"));
+        assertEquals(Integer.toString(data.length), content.header("Content-Length"));
+        assertArrayEquals(data, content.asByteArray());
+    }
+
+    private static byte[] random(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Authenticates every request as the store owner, with the user info the routes check.
+     */
+    public static class OwnerProfile implements QuarkusTestProfile {
+        @Override
+        public Set<Class<?>> getEnabledAlternatives() {
+            return Set.of(OwnerAuthentication.class);
+        }
+    }
+
+    @Alternative
+    @ApplicationScoped
+    public static class OwnerAuthentication implements HttpAuthenticationMechanism {
+
+        @Inject AuthenticationConfig auth;
+
+        @Override
+        public Uni<SecurityIdentity> authenticate(RoutingContext context, IdentityProviderManager identityProviderManager) {
+            return Uni.createFrom().item(QuarkusSecurityIdentity.builder()
+                    .setPrincipal(new QuarkusPrincipal(auth.owner()))
+                    .addRole("user")
+                    .addAttribute("userinfo", new UserInfo("{\"preferred_username\":\"" + auth.owner() + "\"}"))
+                    .build());
+        }
+
+        @Override
+        public Uni<ChallengeData> getChallenge(RoutingContext context) {
+            return Uni.createFrom().nullItem();
+        }
+
+        @Override
+        public int getPriority() {
+            return DEFAULT_PRIORITY + 1;
+        }
+    }
+
+}
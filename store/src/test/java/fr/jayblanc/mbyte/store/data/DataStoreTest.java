@@ -19,6 +19,8 @@ package fr.jayblanc.mbyte.store.data;
 import fr.jayblanc.mbyte.store.data.exception.DataNotFoundException;
 import fr.jayblanc.mbyte.store.data.exception.DataStoreException;
 import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.Multi;
+import io.vertx.mutiny.core.buffer.Buffer;
 import jakarta.inject.Inject;
 import org.apache.commons.io.IOUtils;
 import org.junit.jupiter.api.Test;
@@ -26,8 +28,14 @@ import org.junit.jupiter.api.Test;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -42,6 +50,12 @@ public class DataStoreTest {
     @Inject
     DataStore store;
 
+    @Inject
+    DataStoreConfig config;
+
+    @Inject
+    AsyncDataStore async;
+
     @Test
     void testExists() {
 
@@ -93,4 +107,90 @@ public class DataStoreTest {
         assertEquals(KEY, KEY2);
     }
 
+    @Test
+    public void singlePassDescriptorTest() throws DataStoreException {
+        LOGGER.log(Level.INFO, "Starting Single Pass Descriptor Test");
+        String content = "This is a test";
+        DataDescriptor descriptor = store.put(new ByteArrayInputStream(content.getBytes()), "test.txt");
+        assertEquals(store.put(new ByteArrayInputStream(content.getBytes())), descriptor.getKey());
+        assertEquals(14, descriptor.getSize());
+        assertEquals("text/plain", descriptor.getType());
+    }
+
+    @Test
+    public void shardedLayoutTest() throws DataStoreException {
+        LOGGER.log(Level.INFO, "Starting Sharded Layout Test");
+        String KEY = store.put(new ByteArrayInputStream("This is a sharded test".getBytes()));
+        Path file = Paths.get(config.home(), KEY.substring(0, 2), KEY.substring(2, 4), KEY);
+        assertTrue(Files.exists(file));
+        assertFalse(Files.exists(Paths.get(config.home(), KEY)));
+    }
+
+    @Test
+    public void deleteTest() throws DataStoreException, DataNotFoundException {
+        LOGGER.log(Level.INFO, "Starting Delete Test");
+        String KEY = store.put(new ByteArrayInputStream("This is a test to delete".getBytes()));
+        assertTrue(store.modified(KEY) <= System.currentTimeMillis());
+        try (Stream<String> keys = store.keys()) {
+            assertTrue(keys.anyMatch(KEY::equals));
+        }
+        store.delete(KEY);
+        assertFalse(store.exists(KEY));
+        assertThrows(DataNotFoundException.class, () -> store.get(KEY));
+        try (Stream<String> keys = store.keys()) {
+            assertTrue(keys.noneMatch(KEY::equals));
+        }
+    }
+
+    @Test
+    public void deleteBeforeTest() throws DataStoreException, DataNotFoundException {
+        LOGGER.log(Level.INFO, "Starting Delete Before Test");
+        String KEY = store.put(new ByteArrayInputStream("This is a test to delete when old enough".getBytes()));
+        assertFalse(store.delete(KEY, store.modified(KEY)));
+        assertTrue(store.exists(KEY));
+        assertTrue(store.delete(KEY, store.modified(KEY) + 1));
+        assertFalse(store.exists(KEY));
+        assertThrows(DataNotFoundException.class, () -> store.delete(KEY, System.currentTimeMillis()));
+    }
+
+    @Test
+    public void compressedContentTest() throws DataStoreException, DataNotFoundException, IOException {
+        LOGGER.log(Level.INFO, "Starting Compressed Content Test");
+        String content = "This is a compressible test line.\n".repeat(1000);
+        DataDescriptor descriptor = store.put(new ByteArrayInputStream(content.getBytes()), "test.txt");
+        String KEY = descriptor.getKey();
+        assertEquals(content.length(), descriptor.getSize());
+        assertEquals(content.length(), store.size(KEY));
+        assertTrue(store.file(KEY).isEmpty());
+        assertEquals(content, new String(IOUtils.toByteArray(store.get(KEY))));
+        assertEquals(content.substring(100, 200), new String(IOUtils.toByteArray(store.get(KEY, 100, 100))));
+    }
+
+    @Test
+    public void extractedTextCacheTest() throws DataStoreException, DataNotFoundException, IOException {
+        LOGGER.log(Level.INFO, "Starting Extracted Text Cache Test");
+        String KEY = store.put(new ByteArrayInputStream("This is a text to extract".getBytes()));
+        String text = store.extract(KEY, "test.txt", "text/plain");
+        Path folder = Paths.get(config.home(), "text", KEY.substring(0, 2), KEY.substring(2, 4));
+        try (Stream<Path> files = Files.list(folder)) {
+            assertTrue(files.anyMatch(path -> path.getFileName().toString().startsWith(KEY)));
+        }
+        assertEquals(text, store.extract(KEY, "test.txt", "text/plain"));
+    }
+
+    @Test
+    public void asyncPutGetTest() throws DataStoreException, DataNotFoundException, IOException {
+        String content = "This is an asynchronous test, ".repeat(5000);
+        Multi<Buffer> buffers = Multi.createFrom().items(content.substring(0, 70000), content.substring(70000)).map(Buffer::buffer);
+        DataDescriptor data = async.put(buffers, "async.txt").await().atMost(Duration.ofSeconds(10));
+        assertEquals(content.length(), data.getSize());
+        assertEquals("text/plain", data.getType());
+        assertEquals(content, new String(IOUtils.toByteArray(store.get(data.getKey()))));
+
+        String read = async.get(data.getKey()).map(Buffer::toString).collect().with(Collectors.joining()).await().atMost(Duration.ofSeconds(10));
+        assertEquals(content, read);
+        String range = async.get(data.getKey(), 30, 30).map(Buffer::toString).collect().with(Collectors.joining()).await().atMost(Duration.ofSeconds(10));
+        assertEquals(content.substring(30, 60), range);
+    }
+
 }
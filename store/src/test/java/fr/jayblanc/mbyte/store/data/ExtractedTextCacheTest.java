@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class ExtractedTextCacheTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    public void testExtractorVersionInvalidation() throws IOException {
+        Path tmp = Files.createDirectories(folder.resolve("tmp"));
+        String key = DigestUtils.sha256Hex("content");
+        ExtractedTextCache v1 = new ExtractedTextCache(folder.resolve("text"), tmp, "v1");
+        assertEquals(Optional.empty(), v1.get(key));
+        v1.put(key, "extracted text");
+        assertEquals(Optional.of("extracted text"), v1.get(key));
+
+        ExtractedTextCache v2 = new ExtractedTextCache(folder.resolve("text"), tmp, "v2");
+        assertEquals(Optional.empty(), v2.get(key));
+        v2.put(key, "better extracted text");
+        assertEquals(1, v2.purge(k -> true));
+        assertEquals(Optional.empty(), v1.get(key));
+        assertEquals(Optional.of("better extracted text"), v2.get(key));
+        assertEquals(1, v2.purge(k -> false));
+        assertEquals(Optional.empty(), v2.get(key));
+    }
+
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data;
+
+import fr.jayblanc.mbyte.store.data.exception.DataNotFoundException;
+import fr.jayblanc.mbyte.store.data.exception.DataStoreException;
+import fr.jayblanc.mbyte.store.data.tier.AccessTracker;
+import fr.jayblanc.mbyte.store.metrics.MetricsService;
+import fr.jayblanc.mbyte.store.metrics.MetricsServiceBean;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class TieredDataStoreBeanTest {
+
+    private Path folder;
+    private MemoryDataStore hot;
+    private MemoryDataStore cold;
+    private List<Runnable> promotions;
+    private MetricsService metrics;
+    private TieredDataStoreBean store;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        folder = Files.createTempDirectory("mbyte-tier");
+        hot = new MemoryDataStore();
+        cold = new MemoryDataStore();
+        promotions = new ArrayList<>();
+        metrics = new MetricsServiceBean();
+        store = new TieredDataStoreBean(hot, cold, new AccessTracker(folder.resolve(".access")), Duration.ofDays(7), promotions::add, metrics);
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        try (Stream<Path> files = Files.list(folder)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(folder);
+    }
+
+    @Test
+    public void demoteAndPromoteTest() throws Exception {
+        String key = store.put(new ByteArrayInputStream(bytes("cold content")));
+        String fresh = store.put(new ByteArrayInputStream(bytes("fresh content")));
+        assertTrue(hot.exists(key));
+
+        // accessed just now, nothing to move
+        assertFalse(store.demote(key, System.currentTimeMillis() - 1000));
+        assertTrue(store.demote(key, System.currentTimeMillis() + 1000));
+        assertFalse(hot.exists(key));
+        assertTrue(cold.exists(key));
+        assertTrue(hot.exists(fresh));
+
+        // no file of the cold tier is handed out, it would be deleted by the promotion
+        assertEquals(Optional.empty(), store.file(key));
+        assertTrue(promotions.isEmpty());
+        assertThrows(DataNotFoundException.class, () -> store.file("0".repeat(64)));
+
+        // reads are transparent and schedule a promotion
+        assertEquals("cold content", read(store.get(key)));
+        assertEquals("content", read(store.get(key, 5, 100)));
+        assertEquals(12, store.size(key));
+        assertEquals(1, promotions.size());
+        promotions.remove(0).run();
+        assertTrue(hot.exists(key));
+        assertFalse(cold.exists(key));
+        assertEquals("cold content", read(store.get(key)));
+        assertTrue(promotions.isEmpty());
+    }
+
+    @Test
+    public void migrateTest() throws Exception {
+        String key = store.put(new ByteArrayInputStream(bytes("content")));
+        // never accessed since tracking started, aged from its write time
+        hot.modified.put(key, System.currentTimeMillis() - Duration.ofDays(8).toMillis());
+        TieredDataStoreBean restarted = new TieredDataStoreBean(hot, cold, new AccessTracker(folder.resolve("other")), Duration.ofDays(7), promotions::add, metrics);
+        restarted.migrate();
+        assertFalse(hot.exists(key));
+        assertTrue(cold.exists(key));
+        assertEquals(List.of(key), restarted.keys().toList());
+
+        restarted.delete(key);
+        assertFalse(restarted.exists(key));
+        assertThrows(DataNotFoundException.class, () -> restarted.get(key));
+    }
+
+    @Test
+    public void deleteKeepsRecentBlobTest() throws Exception {
+        String key = store.put(new ByteArrayInputStream(bytes("content")));
+        long limit = System.currentTimeMillis() - 1000;
+        hot.modified.put(key, limit - 1000);
+        assertTrue(store.demote(key, System.currentTimeMillis() + 1000));
+        cold.modified.put(key, limit - 1000);
+
+        // put again while only the cold copy exists: the fresh hot copy keeps the blob
+        store.put(new ByteArrayInputStream(bytes("content")));
+        assertFalse(store.delete(key, limit));
+        assertTrue(store.exists(key));
+
+        hot.modified.put(key, limit - 1000);
+        assertTrue(store.delete(key, limit));
+        assertFalse(store.exists(key));
+        assertThrows(DataNotFoundException.class, () -> store.delete(key, limit));
+    }
+
+    @Test
+    public void corruptedSourceIsKeptTest() throws Exception {
+        String key = store.put(new ByteArrayInputStream(bytes("content")));
+        hot.blobs.put(key, bytes("altered"));
+        assertThrows(DataStoreException.class, () -> store.demote(key, System.currentTimeMillis() + 1000));
+        assertTrue(hot.exists(key));
+        assertFalse(cold.exists(key));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String read(InputStream is) throws IOException {
+        try (is) {
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Blobs in memory, under the SHA-256 of their content.
+     */
+    public static class MemoryDataStore implements DataStore {
+
+        public final Map<String, byte[]> blobs = new ConcurrentHashMap<>();
+        public final Map<String, Long> modified = new ConcurrentHashMap<>();
+
+        @Override
+        public boolean exists(String key) {
+            return blobs.containsKey(key);
+        }
+
+        @Override
+        public String put(InputStream is) throws DataStoreException {
+            return this.put(is, null).getKey();
+        }
+
+        @Override
+        public DataDescriptor put(InputStream is, String name) throws DataStoreException {
+            try {
+                byte[] data = is.readAllBytes();
+                String key = DigestUtils.sha256Hex(data);
+                blobs.put(key, data);
+                modified.put(key, System.currentTimeMillis());
+                return new DataDescriptor(key, data.length, "application/octet-stream");
+            } catch (IOException e) {
+                throw new DataStoreException("unable to read content", e);
+            }
+        }
+
+        @Override
+        public DataDescriptor put(Path file, String key, String name) throws DataStoreException {
+            try (InputStream is = Files.newInputStream(file)) {
+                return this.put(is, name);
+            } catch (IOException e) {
+                throw new DataStoreException("unable to read file", e);
+            }
+        }
+
+        @Override
+        public Path tmpfile() {
+            return Path.of(System.getProperty("java.io.tmpdir")).resolve(UUID.randomUUID().toString());
+        }
+
+        @Override
+        public InputStream get(String key) throws DataNotFoundException {
+            return new ByteArrayInputStream(this.blob(key));
+        }
+
+        @Override
+        public InputStream get(String key, long offset, long length) throws DataNotFoundException {
+            byte[] data = this.blob(key);
+            int start = (int) Math.min(offset, data.length);
+            return new ByteArrayInputStream(data, start, (int) Math.min(length, data.length - start));
+        }
+
+        @Override
+        public Optional<Path> file(String key) throws DataNotFoundException {
+            this.blob(key);
+            return Optional.empty();
+        }
+
+        @Override
+        public String type(String key, String name) throws DataNotFoundException {
+            this.blob(key);
+            return "application/octet-stream";
+        }
+
+        @Override
+        public long size(String key) throws DataNotFoundException {
+            return this.blob(key).length;
+        }
+
+        @Override
+        public String extract(String key, String name, String type) throws DataNotFoundException {
+            return new String(this.blob(key), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public long modified(String key) throws DataNotFoundException {
+            this.blob(key);
+            return modified.get(key);
+        }
+
+        @Override
+        public Stream<String> keys() {
+            return new ArrayList<>(blobs.keySet()).stream();
+        }
+
+        @Override
+        public void delete(String key) {
+            blobs.remove(key);
+            modified.remove(key);
+        }
+
+        @Override
+        public synchronized boolean delete(String key, long before) throws DataNotFoundException {
+            if (this.modified(key) >= before) {
+                return false;
+            }
+            this.delete(key);
+            return true;
+        }
+
+        @Override
+        public boolean verify(String key, ReadPacer pacer) throws DataStoreException, DataNotFoundException {
+            byte[] data = this.blob(key);
+            try {
+                // paced as the stores read, one 64 KiB buffer at a time
+                for (int offset = 0; offset < data.length; offset += 65536) {
+                    pacer.pace(Math.min(65536, data.length - offset));
+                }
+            } catch (IOException e) {
+                throw new DataStoreException("verification of key interrupted: " + key, e);
+            }
+            return key.equals(DigestUtils.sha256Hex(data));
+        }
+
+        @Override
+        public void compact(long before) {
+        }
+
+        private byte[] blob(String key) throws DataNotFoundException {
+            byte[] data = blobs.get(key);
+            if (data == null) {
+                throw new DataNotFoundException("no blob for key: " + key);
+            }
+            return data;
+        }
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.cache;
+
+import fr.jayblanc.mbyte.store.metrics.MetricsService;
+import fr.jayblanc.mbyte.store.metrics.MetricsServiceBean;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class BlobCacheTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    public void testMappedAndLoadedEntries() throws IOException {
+        MetricsService metrics = new MetricsServiceBean();
+        long hits = metrics.getMetric(BlobCache.HIT_METRIC);
+        BlobCache cache = new BlobCache(1024 * 1024, 64 * 1024, metrics);
+        byte[] content = random(10000);
+        Path file = Files.write(folder.resolve("raw"), content);
+
+        assertTrue(cache.get("raw").isEmpty());
+        assertArrayEquals(content, read(cache.map("raw", file)));
+        assertArrayEquals(content, read(cache.load("decoded", new ByteArrayInputStream(content), content.length)));
+        // every reader gets its own view
+        assertArrayEquals(content, read(cache.get("raw").orElseThrow()));
+        assertArrayEquals(content, read(cache.get("raw").orElseThrow()));
+        assertTrue(cache.get("decoded").orElseThrow().isDirect());
+        assertEquals(20000, cache.weight());
+        assertEquals(3, metrics.getMetric(BlobCache.HIT_METRIC) - hits);
+
+        cache.invalidate("raw");
+        assertTrue(cache.get("raw").isEmpty());
+        assertThrows(IOException.class, () -> cache.load("short", new ByteArrayInputStream(content), content.length + 1));
+        assertFalse(cache.accept(64 * 1024 + 1));
+    }
+
+    @Test
+    public void testByteBudget() throws IOException {
+        MetricsService metrics = new MetricsServiceBean();
+        long evictions = metrics.getMetric(BlobCache.EVICTION_METRIC);
+        BlobCache cache = new BlobCache(100 * 1024, 64 * 1024, metrics);
+        for (int i = 0; i < 50; i++) {
+            cache.load("blob" + i, new ByteArrayInputStream(random(10 * 1024)), 10 * 1024);
+        }
+        assertTrue(cache.weight() <= 100 * 1024);
+        assertTrue(metrics.getMetric(BlobCache.EVICTION_METRIC) - evictions >= 40);
+        assertEquals(cache.stats().evictionCount(), metrics.getMetric(BlobCache.EVICTION_METRIC) - evictions);
+    }
+
+    @Test
+    public void testAdmission() throws IOException {
+        BlobCache cache = new BlobCache(1024 * 1024, 64 * 1024, new MetricsServiceBean());
+        // one shot reads are not cached, the second read of a blob is
+        assertFalse(cache.admit("blob", 1000));
+        assertFalse(cache.admit("other", 1000));
+        assertTrue(cache.admit("blob", 1000));
+        assertFalse(cache.admit("blob", 1000));
+        assertFalse(cache.admit("large", 64 * 1024 + 1));
+        assertFalse(cache.admit("large", 64 * 1024 + 1));
+        assertTrue(cache.get("large").isEmpty());
+    }
+
+    @Test
+    public void testByteBufferInputStream() throws IOException {
+        byte[] content = random(1000);
+        ByteBuffer buffer = ByteBuffer.wrap(content).position(100).limit(300);
+        try (InputStream is = new ByteBufferInputStream(buffer)) {
+            assertEquals(200, is.available());
+            assertEquals(content[100] & 0xff, is.read());
+            assertEquals(9, is.skip(9));
+            byte[] rest = is.readAllBytes();
+            assertEquals(190, rest.length);
+            assertEquals(content[110], rest[0]);
+            assertEquals(-1, is.read());
+        }
+    }
+
+    private static byte[] read(ByteBuffer buffer) throws IOException {
+        try (InputStream is = new ByteBufferInputStream(buffer)) {
+            return is.readAllBytes();
+        }
+    }
+
+    private static byte[] random(int size) {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+
+}
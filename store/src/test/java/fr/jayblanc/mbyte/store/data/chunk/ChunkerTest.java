@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.chunk;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class ChunkerTest {
+
+    private static final Chunker CHUNKER = new Chunker(4096);
+
+    @Test
+    public void testChunksBoundsAndContent() throws IOException {
+        byte[] content = random(1024 * 1024, 1);
+        List<byte[]> chunks = chunk(content);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        for (int i = 0; i < chunks.size(); i++) {
+            byte[] chunk = chunks.get(i);
+            assertTrue(chunk.length <= CHUNKER.getMax());
+            if (i < chunks.size() - 1) {
+                assertTrue(chunk.length > CHUNKER.getMin());
+            }
+            baos.write(chunk);
+        }
+        assertArrayEquals(content, baos.toByteArray());
+        assertEquals(chunks.size(), chunk(content).size());
+    }
+
+    @Test
+    public void testInsertionOnlyChangesLocalChunks() throws IOException {
+        byte[] content = random(1024 * 1024, 2);
+        byte[] edited = new byte[content.length + 10];
+        System.arraycopy(content, 0, edited, 0, 500000);
+        System.arraycopy(content, 500000, edited, 500010, content.length - 500000);
+        Set<String> before = new HashSet<>();
+        for (byte[] chunk : chunk(content)) {
+            before.add(DigestUtils.sha256Hex(chunk));
+        }
+        List<byte[]> after = chunk(edited);
+        long changed = after.stream().filter(chunk -> !before.contains(DigestUtils.sha256Hex(chunk))).count();
+        assertTrue(changed <= 3, "an insertion should change at most a few chunks, changed: " + changed);
+    }
+
+    @Test
+    public void testManifestRangeReassembly() throws IOException {
+        byte[] content = random(256 * 1024, 3);
+        Map<String, byte[]> store = new HashMap<>();
+        Manifest manifest = new Manifest();
+        for (byte[] chunk : chunk(content)) {
+            String key = DigestUtils.sha256Hex(chunk);
+            store.put(key, chunk);
+            manifest.add(key, chunk.length);
+        }
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        manifest.write(serialized);
+        Manifest read = Manifest.read(new ByteArrayInputStream(serialized.toByteArray()));
+        assertEquals(content.length, read.getSize());
+        assertEquals(manifest.getChunks(), read.getChunks());
+
+        ManifestInputStream.ChunkOpener opener = (key, offset, length) -> new ByteArrayInputStream(store.get(key), (int) offset, (int) length);
+        try (InputStream is = new ManifestInputStream(read, opener)) {
+            assertArrayEquals(content, is.readAllBytes());
+        }
+        try (InputStream is = new ManifestInputStream(read, 10000, 50000, opener)) {
+            assertArrayEquals(Arrays.copyOfRange(content, 10000, 60000), is.readAllBytes());
+        }
+        try (InputStream is = new ManifestInputStream(read, content.length - 10, 100, opener)) {
+            assertArrayEquals(Arrays.copyOfRange(content, content.length - 10, content.length), is.readAllBytes());
+        }
+    }
+
+    private static List<byte[]> chunk(byte[] content) throws IOException {
+        List<byte[]> chunks = new ArrayList<>();
+        Chunker.Reader reader = CHUNKER.reader(new ByteArrayInputStream(content));
+        byte[] chunk;
+        while ((chunk = reader.next()) != null) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    private static byte[] random(int size, long seed) {
+        byte[] content = new byte[size];
+        new Random(seed).nextBytes(content);
+        return content;
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.compress;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class CompressedBlobTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    public void testPolicy() {
+        CompressionPolicy policy = new CompressionPolicy(7.0);
+        byte[] text = text(65536);
+        byte[] random = new byte[65536];
+        new Random(1).nextBytes(random);
+        assertTrue(policy.accept("text/plain", text));
+        assertTrue(policy.accept("application/octet-stream", text));
+        assertFalse(policy.accept("application/octet-stream", random));
+        assertFalse(policy.accept("image/jpeg", text));
+        assertFalse(policy.accept("application/vnd.openxmlformats-officedocument.wordprocessingml.document", text));
+        assertFalse(policy.accept("text/plain", Arrays.copyOf(text, 100)));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        byte[] content = text(1024 * 1024);
+        Path file = folder.resolve("blob");
+        long size = CompressedBlob.write(file, Arrays.copyOf(content, 1000), new ByteArrayInputStream(content, 1000, content.length - 1000), 6);
+        assertEquals(content.length, size);
+        assertEquals(content.length, CompressedBlob.size(file));
+        assertTrue(Files.size(file) < content.length / 3);
+        try (InputStream is = CompressedBlob.open(file)) {
+            assertArrayEquals(content, is.readAllBytes());
+        }
+        try (InputStream is = CompressedBlob.open(file, 500000, 1000)) {
+            assertArrayEquals(Arrays.copyOfRange(content, 500000, 501000), is.readAllBytes());
+        }
+    }
+
+    private static byte[] text(int length) {
+        Random random = new Random(42);
+        String[] words = {"store", "node", "blob", "folder", "content", "lorem", "ipsum", "dolor"};
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < length) {
+            builder.append(words[random.nextInt(words.length)]).append(' ');
+        }
+        return builder.substring(0, length).getBytes(StandardCharsets.UTF_8);
+    }
+
+}
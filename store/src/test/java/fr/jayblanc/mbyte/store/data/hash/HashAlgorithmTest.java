@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.hash;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class HashAlgorithmTest {
+
+    @Test
+    public void testKnownVectors() {
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", hash("SHA-256", "abc"));
+        assertEquals("af1349b9f5f9a1a6a0404dea36dcc9499bcb25c9adc112b7cc9a93cae41f3262", hash("BLAKE3", ""));
+        assertEquals("ef46db3751d8e999", hash("XXH64", ""));
+        assertEquals("d24ec4f1a98c6e5b", hash("XXH64", "a"));
+        assertEquals("44bc2cf5ad770999", hash("XXH64", "abc"));
+        assertEquals("fbcea83c8a378bf1", hash("XXH64", "Nobody inspects the spammish repetition"));
+    }
+
+    @Test
+    public void testIncrementalUpdates() {
+        byte[] content = new byte[100000];
+        new Random(1).nextBytes(content);
+        for (String name : new String[] {"SHA-256", "BLAKE3", "XXH64"}) {
+            Hasher whole = HashAlgorithm.forName(name).create();
+            whole.update(content, 0, content.length);
+            Hasher pieces = HashAlgorithm.forName(name).create();
+            int offset = 0;
+            int length = 1;
+            while (offset < content.length) {
+                int n = Math.min(length, content.length - offset);
+                pieces.update(content, offset, n);
+                offset += n;
+                length = (length * 7 + 3) % 97;
+            }
+            assertEquals(whole.digest(), pieces.digest(), name);
+        }
+    }
+
+    @Test
+    public void testBufferUpdates() {
+        byte[] content = new byte[20000];
+        new Random(3).nextBytes(content);
+        for (String name : new String[] {"SHA-256", "BLAKE3", "XXH64"}) {
+            Hasher bytes = HashAlgorithm.forName(name).create();
+            bytes.update(content, 100, content.length - 100);
+            Hasher heap = HashAlgorithm.forName(name).create();
+            ByteBuffer wrapped = ByteBuffer.wrap(content).position(100);
+            heap.update(wrapped);
+            assertFalse(wrapped.hasRemaining());
+            Hasher direct = HashAlgorithm.forName(name).create();
+            direct.update(ByteBuffer.allocateDirect(content.length).put(content).flip().position(100));
+            String expected = bytes.digest();
+            assertEquals(expected, heap.digest(), name);
+            assertEquals(expected, direct.digest(), name);
+        }
+    }
+
+    @Test
+    public void testSingleByteReads() throws IOException {
+        byte[] content = new byte[50000];
+        new Random(2).nextBytes(content);
+        HashedFilterInputStream bulk = new HashedFilterInputStream(new ByteArrayInputStream(content), HashAlgorithm.forName("SHA-256").create(),
+                HashAlgorithm.forName("XXH64").create(), 16);
+        bulk.readAllBytes();
+        HashedFilterInputStream single = new HashedFilterInputStream(new ByteArrayInputStream(content), HashAlgorithm.forName("SHA-256").create(),
+                HashAlgorithm.forName("XXH64").create(), 16);
+        for (int i = 0; i < 1000; i++) {
+            single.read();
+        }
+        single.readNBytes(10000);
+        while (single.read() != -1) {
+            // single bytes again, to the end
+        }
+        assertEquals(bulk.getHash(), single.getHash());
+        assertEquals(bulk.getChecksum(), single.getChecksum());
+        assertEquals(content.length, single.getSize());
+        assertArrayEquals(bulk.getPrefix(), single.getPrefix());
+    }
+
+    @Test
+    public void testUnknownAlgorithm() {
+        assertThrows(IllegalArgumentException.class, () -> HashAlgorithm.forName("MD4"));
+    }
+
+    @Test
+    public void testKeyAlgorithms() {
+        assertEquals("SHA-256", HashAlgorithm.forKeys("sha-256").getName());
+        assertEquals("BLAKE3", HashAlgorithm.forKeys("BLAKE3").getName());
+        // 64 bits digests are checksums, not content keys
+        assertThrows(IllegalArgumentException.class, () -> HashAlgorithm.forKeys("XXH64"));
+    }
+
+    private static String hash(String algorithm, String content) {
+        Hasher hasher = HashAlgorithm.forName(algorithm).create();
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        hasher.update(bytes, 0, bytes.length);
+        return hasher.digest();
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.pack;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class PackStoreTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    public void testPutGetReopen() throws IOException {
+        try (PackStore packs = new PackStore(folder, 1024)) {
+            for (int i = 0; i < 50; i++) {
+                packs.put(key(i), content(i));
+            }
+            packs.put(key(0), content(0));
+            assertEquals(50, packs.keys().count());
+            assertArrayEquals(content(7), packs.get(key(7)).orElseThrow());
+            assertEquals(content(7).length, packs.size(key(7)));
+            assertEquals(Optional.empty(), packs.get(key(100)));
+            assertEquals(-1, packs.size(key(100)));
+        }
+        // segments have rotated, sealed ones have an index
+        assertTrue(segments(".pack") > 1);
+        assertEquals(segments(".pack") - 1, segments(".idx"));
+        try (PackStore packs = new PackStore(folder, 1024)) {
+            assertEquals(50, packs.keys().count());
+            for (int i = 0; i < 50; i++) {
+                assertArrayEquals(content(i), packs.get(key(i)).orElseThrow());
+            }
+        }
+    }
+
+    @Test
+    public void testTornTailIsTruncated() throws IOException {
+        try (PackStore packs = new PackStore(folder, 1 << 20)) {
+            packs.put(key(1), content(1));
+            packs.put(key(2), content(2));
+        }
+        Path segment;
+        try (Stream<Path> files = Files.list(folder)) {
+            segment = files.filter(path -> path.toString().endsWith(".pack")).findFirst().orElseThrow();
+        }
+        long size = Files.size(segment);
+        // a crash in the middle of the last append
+        Files.write(segment, new byte[] { 0x4d, 0x42, 0x50, 0x31, 1, 2, 3 }, StandardOpenOption.APPEND);
+        try (PackStore packs = new PackStore(folder, 1 << 20)) {
+            assertEquals(size, Files.size(segment));
+            assertArrayEquals(content(2), packs.get(key(2)).orElseThrow());
+            packs.put(key(3), content(3));
+            assertArrayEquals(content(3), packs.get(key(3)).orElseThrow());
+        }
+    }
+
+    @Test
+    public void testDeleteAndCompact() throws IOException {
+        try (PackStore packs = new PackStore(folder, 1024)) {
+            for (int i = 0; i < 50; i++) {
+                packs.put(key(i), content(i));
+            }
+            int before = segments(".pack");
+            for (int i = 0; i < 40; i++) {
+                assertTrue(packs.delete(key(i)));
+            }
+            assertFalse(packs.delete(key(0)));
+            assertTrue(packs.compact() > 0);
+            assertTrue(segments(".pack") < before + 1);
+            assertEquals(10, packs.keys().count());
+            for (int i = 40; i < 50; i++) {
+                assertArrayEquals(content(i), packs.get(key(i)).orElseThrow());
+            }
+            // deleted then stored again, no tombstone may hide it after a restart
+            packs.put(key(5), content(5));
+        }
+        try (PackStore packs = new PackStore(folder, 1024)) {
+            assertEquals(11, packs.keys().count());
+            assertFalse(packs.contains(key(4)));
+            assertArrayEquals(content(5), packs.get(key(5)).orElseThrow());
+            for (int i = 40; i < 50; i++) {
+                assertArrayEquals(content(i), packs.get(key(i)).orElseThrow());
+            }
+        }
+    }
+
+    private int segments(String extension) throws IOException {
+        try (Stream<Path> files = Files.list(folder)) {
+            return (int) files.filter(path -> path.toString().endsWith(extension)).count();
+        }
+    }
+
+    private static String key(int i) {
+        return DigestUtils.sha256Hex(content(i));
+    }
+
+    private static byte[] content(int i) {
+        return ("small blob number " + i + " ").repeat(i % 5 + 1).getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.s3;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round trips against a live S3 compatible server, for instance a local MinIO:
+ * <pre>
+ * docker run -p 9000:9000 minio/minio server /data
+ * S3_ENDPOINT=http://localhost:9000 S3_BUCKET=mbyte ./mvnw test -Dtest=S3ClientTest
+ * </pre>
+ * The bucket must exist, credentials default to the MinIO ones.
+ *
+ * @author Jerome Blanchard
+ */
+@EnabledIfEnvironmentVariable(named = "S3_ENDPOINT", matches = ".+")
+public class S3ClientTest {
+
+    private S3Client client;
+    private String prefix;
+    private Path folder;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        client = new S3Client(URI.create(System.getenv("S3_ENDPOINT")), env("S3_REGION", "us-east-1"), env("S3_BUCKET", "mbyte"),
+                env("S3_ACCESS_KEY", "minioadmin"), env("S3_SECRET_KEY", "minioadmin"));
+        prefix = "test-" + UUID.randomUUID() + "/";
+        folder = Files.createTempDirectory("mbyte-s3");
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        for (String name : client.list(prefix).toList()) {
+            client.delete(name);
+        }
+        try (var files = Files.list(folder)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(folder);
+    }
+
+    @Test
+    public void putGetRangeDeleteTest() throws IOException {
+        byte[] data = random(100_000);
+        Path file = Files.write(folder.resolve("small"), data);
+        String name = prefix + "ab/cd/small";
+        assertTrue(client.head(name).isEmpty());
+        client.put(name, file, data.length);
+
+        Optional<S3Client.S3Object> head = client.head(name);
+        assertTrue(head.isPresent());
+        assertEquals(data.length, head.get().size());
+        try (InputStream is = client.get(name, 0, -1)) {
+            assertArrayEquals(data, is.readAllBytes());
+        }
+        try (InputStream is = client.get(name, 1000, 500)) {
+            assertArrayEquals(Arrays.copyOfRange(data, 1000, 1500), is.readAllBytes());
+        }
+        try (InputStream is = client.get(name, 99_000, Long.MAX_VALUE)) {
+            assertEquals(1000, is.readAllBytes().length);
+        }
+        client.touch(name, data.length);
+        assertEquals(List.of(name), client.list(prefix).toList());
+
+        client.delete(name);
+        assertTrue(client.head(name).isEmpty());
+        assertThrows(NoSuchFileException.class, () -> client.get(name, 0, -1));
+    }
+
+    @Test
+    public void multipartTest() throws IOException {
+        int partSize = (int) S3Client.MIN_PART_SIZE;
+        byte[] data = random(2 * partSize + 1234);
+        Path file = Files.write(folder.resolve("large"), data);
+        String name = prefix + "large";
+        String upload = client.createMultipartUpload(name);
+        List<String> etags = new ArrayList<>();
+        for (long offset = 0; offset < data.length; offset += partSize) {
+            etags.add(client.uploadPart(name, upload, etags.size() + 1, file, offset, Math.min(partSize, data.length - offset)));
+        }
+        client.completeMultipartUpload(name, upload, etags);
+        try (InputStream is = client.get(name, 0, -1)) {
+            assertArrayEquals(data, is.readAllBytes());
+        }
+    }
+
+    @Test
+    public void touchByPartsTest() throws IOException {
+        byte[] data = random(2 * (int) S3Client.MIN_PART_SIZE + 1234);
+        Path file = Files.write(folder.resolve("copied"), data);
+        String name = prefix + "copied";
+        client.put(name, file, data.length);
+        // same path as objects over 5 GiB, with the smallest parts S3 accepts
+        client.touch(name, data.length, S3Client.MIN_PART_SIZE);
+        assertEquals(data.length, client.head(name).orElseThrow().size());
+        try (InputStream is = client.get(name, 0, -1)) {
+            assertArrayEquals(data, is.readAllBytes());
+        }
+    }
+
+    private static byte[] random(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private static String env(String name, String fallback) {
+        return Optional.ofNullable(System.getenv(name)).orElse(fallback);
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.tier;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class AccessTrackerTest {
+
+    @Test
+    public void touchSaveLoadTest() throws IOException {
+        Path folder = Files.createTempDirectory("mbyte-access");
+        Path file = folder.resolve(".access");
+        AccessTracker tracker = new AccessTracker(file);
+        tracker.load();
+        assertTrue(tracker.get("key1").isEmpty());
+
+        long before = System.currentTimeMillis();
+        tracker.touch("key1");
+        tracker.touch("key2");
+        tracker.forget("key2");
+        assertTrue(tracker.get("key1").getAsLong() >= before);
+        assertTrue(tracker.get("key2").isEmpty());
+        tracker.save();
+
+        AccessTracker loaded = new AccessTracker(file);
+        loaded.load();
+        assertEquals(1, loaded.size());
+        assertEquals(tracker.get("key1").getAsLong(), loaded.get("key1").getAsLong());
+
+        Files.writeString(file, "garbage\nkey3 12\n");
+        loaded.load();
+        assertEquals(12, loaded.get("key3").getAsLong());
+        // more recent accesses are kept over saved ones
+        assertEquals(tracker.get("key1").getAsLong(), loaded.get("key1").getAsLong());
+
+        Files.delete(file);
+        Files.delete(folder);
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.files;
+
+import fr.jayblanc.mbyte.store.data.TieredDataStoreBeanTest.MemoryDataStore;
+import fr.jayblanc.mbyte.store.data.exception.DataStoreException;
+import fr.jayblanc.mbyte.store.metrics.MetricsServiceBean;
+import fr.jayblanc.mbyte.store.upload.UploadConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class ContentCollectorTest {
+
+    private static final long HOUR = Duration.ofHours(1).toMillis();
+
+    private MemoryDataStore store;
+    private final Set<String> references = new HashSet<>();
+    private final List<Integer> batches = new ArrayList<>();
+    private Duration expiry = Duration.ofMinutes(30);
+
+    @BeforeEach
+    public void setup() {
+        store = new MemoryDataStore();
+    }
+
+    @Test
+    public void sweepTest() throws Exception {
+        String referenced = this.put("referenced", 2 * HOUR);
+        String collected = this.put("collected", 2 * HOUR);
+        String recent = this.put("recent", 0);
+        references.add(referenced);
+
+        this.collector().collect();
+
+        assertTrue(store.exists(referenced));
+        assertFalse(store.exists(collected));
+        // written less than the grace period ago, it may belong to an upload whose node is not created yet
+        assertTrue(store.exists(recent));
+        assertEquals(List.of(2, 1), batches);
+    }
+
+    @Test
+    public void graceCoversUploadExpiryTest() throws Exception {
+        expiry = Duration.ofHours(24);
+        String uncommitted = this.put("uncommitted", 2 * HOUR);
+        String expired = this.put("expired", 25 * HOUR);
+
+        this.collector().collect();
+
+        // a session that failed to create its node can be committed again until it expires
+        assertTrue(store.exists(uncommitted));
+        assertFalse(store.exists(expired));
+    }
+
+    private ContentCollector collector() {
+        ContentCollector collector = new ContentCollector() {
+            @Override
+            Set<String> referenced(List<String> keys) {
+                batches.add(keys.size());
+                Set<String> found = new HashSet<>(keys);
+                found.retainAll(references);
+                return found;
+            }
+        };
+        collector.datastore = store;
+        collector.metrics = new MetricsServiceBean();
+        collector.config = new ContentCollectorConfig() {
+            @Override
+            public Duration grace() {
+                return Duration.ofHours(1);
+            }
+
+            @Override
+            public int batchSize() {
+                return 2;
+            }
+        };
+        collector.uploads = new UploadConfig() {
+            @Override
+            public String home() {
+                return null;
+            }
+
+            @Override
+            public long chunkMaxSize() {
+                return 0;
+            }
+
+            @Override
+            public long maxSize() {
+                return 0;
+            }
+
+            @Override
+            public Duration expiry() {
+                return expiry;
+            }
+        };
+        return collector;
+    }
+
+    private String put(String content, long age) throws DataStoreException {
+        String key = store.put(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+        store.modified.put(key, System.currentTimeMillis() - age);
+        return key;
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.files;
+
+import fr.jayblanc.mbyte.store.data.TieredDataStoreBeanTest.MemoryDataStore;
+import fr.jayblanc.mbyte.store.data.exception.DataStoreException;
+import fr.jayblanc.mbyte.store.metrics.MetricsServiceBean;
+import fr.jayblanc.mbyte.store.notification.NotificationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class ContentScrubberTest {
+
+    private Path folder;
+    private MemoryDataStore store;
+    private MetricsServiceBean metrics;
+    private final SortedMap<String, List<String>> references = new TreeMap<>();
+    private final List<String> notified = new ArrayList<>();
+    private final List<String> cursors = new ArrayList<>();
+    private int rate = 1000;
+    private int failAfter = Integer.MAX_VALUE;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        folder = Files.createTempDirectory("mbyte-scrub");
+        store = new MemoryDataStore();
+        metrics = new MetricsServiceBean();
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(folder.resolve("cursor"));
+        Files.delete(folder);
+    }
+
+    @Test
+    public void corruptedAndMissingTest() throws Exception {
+        this.put("valid", "n1");
+        String corrupted = this.put("corrupted", "n2");
+        store.blobs.put(corrupted, bytes("altered"));
+        String missing = key('3');
+        references.put(missing, List.of("n3"));
+        // node removed and blob collected after the batch was read
+        String removed = key('4');
+        references.put(removed, List.of());
+        long verified = metrics.getMetric("scrub.verified");
+        long corruptions = metrics.getMetric("scrub.corrupted");
+        long missings = metrics.getMetric("scrub.missing");
+
+        this.scrubber().scrub();
+
+        assertEquals(Set.of("file.corrupted:n2", "file.missing:n3"), new HashSet<>(notified));
+        assertEquals(verified + 2, metrics.getMetric("scrub.verified"));
+        assertEquals(corruptions + 1, metrics.getMetric("scrub.corrupted"));
+        assertEquals(missings + 1, metrics.getMetric("scrub.missing"));
+        // a complete pass starts the next one from the beginning
+        assertEquals("", Files.readString(folder.resolve("cursor")));
+    }
+
+    @Test
+    public void cursorResumeTest() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            this.put("content " + i, "n" + i);
+        }
+        List<String> keys = new ArrayList<>(references.keySet());
+        Files.writeString(folder.resolve("cursor"), keys.get(1));
+        long verified = metrics.getMetric("scrub.verified");
+
+        // batches of two, the pass is aborted when the second one is read
+        failAfter = 1;
+        this.scrubber().scrub();
+        assertEquals(keys.get(1), cursors.get(0));
+        assertEquals(verified + 2, metrics.getMetric("scrub.verified"));
+        assertEquals(keys.get(3), Files.readString(folder.resolve("cursor")));
+
+        // the next pass resumes after the last complete batch
+        failAfter = Integer.MAX_VALUE;
+        cursors.clear();
+        this.scrubber().scrub();
+        assertEquals(keys.get(3), cursors.get(0));
+        assertEquals(verified + 3, metrics.getMetric("scrub.verified"));
+        assertEquals("", Files.readString(folder.resolve("cursor")));
+    }
+
+    @Test
+    public void readsArePacedTest() throws Exception {
+        byte[] large = new byte[3 * 512 * 1024];
+        new Random(1).nextBytes(large);
+        String key = store.put(new ByteArrayInputStream(large));
+        references.put(key, List.of("n1"));
+        rate = 1;
+
+        long start = System.nanoTime();
+        this.scrubber().scrub();
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        // 1.5 MiB at 1 MB/s, the first MiB being the burst of an idle budget
+        assertTrue(elapsed >= 400, "blob verified in " + elapsed + " ms");
+    }
+
+    private ContentScrubber scrubber() {
+        ContentScrubber scrubber = new ContentScrubber() {
+            @Override
+            List<String> contents(String cursor, int limit) {
+                if (cursors.size() >= failAfter) {
+                    throw new IllegalStateException("database unavailable");
+                }
+                cursors.add(cursor);
+                return references.keySet().stream().filter(key -> key.compareTo(cursor) > 0).limit(limit).toList();
+            }
+
+            @Override
+            List<String> holders(String key) {
+                return references.get(key);
+            }
+        };
+        scrubber.datastore = store;
+        scrubber.metrics = metrics;
+        scrubber.notification = new NotificationService() {
+            @Override
+            public void notify(String type, String source) {
+                notified.add(type + ":" + source);
+            }
+
+            @Override
+            public void notify(String owner, String type, String source) {
+                this.notify(type, source);
+            }
+        };
+        Path cursor = folder.resolve("cursor");
+        scrubber.config = new ContentScrubberConfig() {
+            @Override
+            public int rate() {
+                return rate;
+            }
+
+            @Override
+            public int batchSize() {
+                return 2;
+            }
+
+            @Override
+            public long pauseRequests() {
+                return Long.MAX_VALUE;
+            }
+
+            @Override
+            public String cursor() {
+                return cursor.toString();
+            }
+        };
+        return scrubber;
+    }
+
+    private String put(String content, String node) throws DataStoreException {
+        String key = store.put(new ByteArrayInputStream(bytes(content)));
+        references.put(key, List.of(node));
+        return key;
+    }
+
+    private static String key(char c) {
+        return String.valueOf(c).repeat(64);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.files;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class FileServiceBeanTest {
+
+    @Test
+    public void importPathTest() {
+        assertEquals(List.of("a", "b", "c.txt"), FileServiceBean.importPath("a/b/c.txt"));
+        assertEquals(List.of("a", "b"), FileServiceBean.importPath("./a//b/"));
+        assertEquals(List.of("a", "b.txt"), FileServiceBean.importPath("a\\b.txt"));
+        assertEquals(List.of(), FileServiceBean.importPath("a/../../etc/passwd"));
+        assertEquals(List.of(), FileServiceBean.importPath("/"));
+        assertEquals(List.of(), FileServiceBean.importPath("a/b*c/d.txt"));
+        assertEquals(List.of(), FileServiceBean.importPath("a/100%.txt"));
+    }
+
+    @Test
+    public void ancestryTest() {
+        String root = FileServiceBean.ancestry("", "root");
+        assertEquals("/root", root);
+        String child = FileServiceBean.ancestry(FileServiceBean.ancestry(root, "a"), "b");
+        assertEquals("/root/a/b", child);
+        assertEquals(List.of("root", "a", "b"), FileServiceBean.lineage(child));
+        assertEquals(List.of("root"), FileServiceBean.lineage(root));
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.files;
+
+import fr.jayblanc.mbyte.store.files.entity.Node;
+import fr.jayblanc.mbyte.store.files.exceptions.ListingCursorException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class ListingOrderTest {
+
+    @Test
+    public void testQueries() {
+        assertEquals("SELECT n FROM Node n WHERE n.parent = :parent ORDER BY n.name ASC, n.id ASC", ListingOrder.NAME.query(false, false));
+        assertEquals("SELECT n FROM Node n WHERE n.parent = :parent AND ((n.size < :k0) OR (n.size = :k0 AND n.id < :k1)) ORDER BY n.size DESC, n.id DESC",
+                ListingOrder.SIZE.query(true, true));
+        assertEquals("SELECT n FROM Node n WHERE n.parent = :parent AND ((n.type > :k0) OR (n.type = :k0 AND n.name > :k1) OR (n.type = :k0 AND n.name = :k1 AND n.id > :k2))"
+                + " ORDER BY n.type ASC, n.name ASC, n.id ASC", ListingOrder.TYPE.query(false, true));
+    }
+
+    @Test
+    public void testCursorRoundTrip() throws ListingCursorException {
+        Node node = new Node(Node.Type.BLOB, "root", "n1", "report 2024.pdf");
+        node.setSize(42);
+        node.setModification(1700000000000L);
+        assertEquals(List.of(Node.Type.BLOB, "report 2024.pdf", "n1"), ListingOrder.TYPE.parse(ListingOrder.TYPE.cursor(node, false), false));
+        assertEquals(List.of(1700000000000L, "n1"), ListingOrder.MODIFICATION.parse(ListingOrder.MODIFICATION.cursor(node, true), true));
+        assertEquals(ListingOrder.SIZE, ListingOrder.of("size"));
+    }
+
+    @Test
+    public void testForeignCursors() {
+        Node node = new Node(Node.Type.TREE, "root", "n1", "docs");
+        String cursor = ListingOrder.NAME.cursor(node, false);
+        assertThrows(ListingCursorException.class, () -> ListingOrder.NAME.parse(cursor, true));
+        assertThrows(ListingCursorException.class, () -> ListingOrder.SIZE.parse(cursor, false));
+        assertThrows(ListingCursorException.class, () -> ListingOrder.NAME.parse("not a cursor!", false));
+    }
+
+}
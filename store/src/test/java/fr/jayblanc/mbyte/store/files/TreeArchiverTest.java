@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.files;
+
+import fr.jayblanc.mbyte.store.files.entity.Node;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class TreeArchiverTest {
+
+    @Test
+    public void writeTreeTest() throws IOException {
+        Map<String, List<Node>> tree = new HashMap<>();
+        tree.put("root", List.of(folder("root", "docs", "docs"), folder("root", "empty", "empty"), blob("root", "a", "readme.txt", "text/plain")));
+        tree.put("docs", List.of(blob("docs", "b", "photo.jpg", "image/jpeg"), blob("docs", "c", "../escape", "text/plain")));
+        TreeArchiver archiver = new TreeArchiver(parent -> tree.getOrDefault(parent, List.of()),
+                node -> new ByteArrayInputStream(("content of " + node.getName()).getBytes(StandardCharsets.UTF_8)));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertEquals(3, archiver.write("root", output));
+
+        Map<String, String> entries = new TreeMap<>();
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                entries.put(entry.getName(), new String(zis.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        assertEquals(Set.of("readme.txt", "docs/photo.jpg", "docs/.._escape", "empty/"), entries.keySet());
+        assertEquals("content of readme.txt", entries.get("readme.txt"));
+        assertEquals("content of photo.jpg", entries.get("docs/photo.jpg"));
+        assertEquals("", entries.get("empty/"));
+    }
+
+    @Test
+    public void entryNameTest() {
+        assertEquals("a_b", TreeArchiver.entryName("a/b"));
+        assertEquals("a_b", TreeArchiver.entryName("a\\b"));
+        assertEquals("_", TreeArchiver.entryName(".."));
+        assertEquals("_", TreeArchiver.entryName(""));
+    }
+
+    private static Node folder(String parent, String id, String name) {
+        return new Node(Node.Type.TREE, parent, id, name);
+    }
+
+    private static Node blob(String parent, String id, String name, String type) {
+        Node node = new Node(Node.Type.BLOB, parent, id, name);
+        node.setContent(id);
+        node.setMimetype(type);
+        return node;
+    }
+
+}
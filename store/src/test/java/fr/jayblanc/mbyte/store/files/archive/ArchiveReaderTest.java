@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.files.archive;
+
+import fr.jayblanc.mbyte.store.files.exceptions.ArchiveFormatException;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class ArchiveReaderTest {
+
+    private static final String LONG_NAME = "folder/" + "x".repeat(150) + "/" + "y".repeat(120) + ".txt";
+
+    @Test
+    public void zipTest() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(output)) {
+            zip.putNextEntry(new ZipEntry("folder/"));
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("folder/a.txt"));
+            zip.write(bytes("content a"));
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("b.txt"));
+            zip.write(bytes("content b"));
+            zip.closeEntry();
+        }
+        Map<String, String> entries = read(new ByteArrayInputStream(output.toByteArray()));
+        assertEquals(Map.of("folder/", "<dir>", "folder/a.txt", "content a", "b.txt", "content b"), entries);
+    }
+
+    @Test
+    public void tarTest() throws Exception {
+        for (int mode : new int[] { TarArchiveOutputStream.LONGFILE_POSIX, TarArchiveOutputStream.LONGFILE_GNU }) {
+            byte[] tar = tar(mode);
+            Map<String, String> entries = read(new ByteArrayInputStream(tar));
+            assertEquals("<dir>", entries.get("folder/"));
+            assertEquals("content a", entries.get("folder/a.txt"));
+            assertEquals("", entries.get("empty.txt"));
+            assertEquals("x".repeat(1000), entries.get(LONG_NAME));
+            assertFalse(entries.containsKey("link"));
+            assertEquals(4, entries.size());
+        }
+    }
+
+    @Test
+    public void gzippedTarTest() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(output)) {
+            gzip.write(tar(TarArchiveOutputStream.LONGFILE_POSIX));
+        }
+        assertEquals(4, read(new ByteArrayInputStream(output.toByteArray())).size());
+    }
+
+    @Test
+    public void unsupportedTest() {
+        assertThrows(ArchiveFormatException.class, () -> ArchiveReader.open(new ByteArrayInputStream(bytes("not an archive at all"))));
+        assertThrows(ArchiveFormatException.class, () -> ArchiveReader.open(InputStream.nullInputStream()));
+    }
+
+    private static byte[] tar(int mode) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(output)) {
+            tar.setLongFileMode(mode);
+            tar.putArchiveEntry(new TarArchiveEntry("folder/"));
+            tar.closeArchiveEntry();
+            file(tar, "folder/a.txt", bytes("content a"));
+            file(tar, "empty.txt", new byte[0]);
+            file(tar, LONG_NAME, bytes("x".repeat(1000)));
+            TarArchiveEntry link = new TarArchiveEntry("link", TarArchiveEntry.LF_SYMLINK);
+            link.setLinkName("folder/a.txt");
+            tar.putArchiveEntry(link);
+            tar.closeArchiveEntry();
+        }
+        return output.toByteArray();
+    }
+
+    private static void file(TarArchiveOutputStream tar, String name, byte[] content) throws IOException {
+        TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setSize(content.length);
+        tar.putArchiveEntry(entry);
+        tar.write(content);
+        tar.closeArchiveEntry();
+    }
+
+    private static Map<String, String> read(InputStream is) throws Exception {
+        Map<String, String> entries = new LinkedHashMap<>();
+        try (ArchiveReader reader = ArchiveReader.open(is)) {
+            ArchiveReader.Entry entry;
+            while ((entry = reader.next()) != null) {
+                if (entry.directory()) {
+                    entries.put(entry.path(), "<dir>");
+                } else if (entry.path().startsWith("folder/a")) {
+                    // partially read entries are skipped
+                    try (InputStream content = reader.content()) {
+                        entries.put(entry.path(), new String(content.readAllBytes(), StandardCharsets.UTF_8));
+                    }
+                } else {
+                    entries.put(entry.path(), new String(reader.content().readAllBytes(), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
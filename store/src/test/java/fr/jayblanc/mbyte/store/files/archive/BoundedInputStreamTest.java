@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.files.archive;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class BoundedInputStreamTest {
+
+    @Test
+    public void testWithinLimit() throws IOException {
+        BoundedInputStream is = new BoundedInputStream(new ByteArrayInputStream(new byte[100]), 100);
+        assertEquals(100, is.readAllBytes().length);
+        assertFalse(is.isExceeded());
+    }
+
+    @Test
+    public void testOverLimit() {
+        BoundedInputStream is = new BoundedInputStream(new ByteArrayInputStream(new byte[101]), 100);
+        assertThrows(IOException.class, () -> is.transferTo(OutputStream.nullOutputStream()));
+        assertTrue(is.isExceeded());
+
+        InputStream single = new BoundedInputStream(new ByteArrayInputStream(new byte[2]), 1);
+        assertDoesNotThrow(() -> single.read());
+        assertThrows(IOException.class, single::read);
+    }
+
+}
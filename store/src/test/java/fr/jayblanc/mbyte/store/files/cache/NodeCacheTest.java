@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.files.cache;
+
+import fr.jayblanc.mbyte.store.files.Listing;
+import fr.jayblanc.mbyte.store.files.entity.Node;
+import fr.jayblanc.mbyte.store.metrics.MetricsServiceBean;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class NodeCacheTest {
+
+    @Test
+    public void testCopiesAreReturned() {
+        NodeCache cache = new NodeCache(100, Duration.ofMinutes(1), new MetricsServiceBean());
+        Node node = new Node(Node.Type.TREE, "root", "f1", "docs");
+        cache.put(node, cache.stamp());
+        node.setSize(12);
+        Node cached = cache.get("f1").orElseThrow();
+        assertEquals(0, cached.getSize());
+        cached.setSize(3);
+        assertEquals(0, cache.get("f1").orElseThrow().getSize());
+    }
+
+    @Test
+    public void testEventsInvalidateNodeAndListings() {
+        NodeCache cache = new NodeCache(100, Duration.ofMinutes(1), new MetricsServiceBean());
+        Node folder = new Node(Node.Type.TREE, "root", "f1", "docs");
+        Node child = new Node(Node.Type.TREE, "f1", "f2", "2024");
+        long stamp = cache.stamp();
+        cache.put(folder, stamp);
+        cache.putListing("root", "NAME.ASC", new Listing(List.of(folder), 1, null), stamp);
+        cache.putListing("f1", "NAME.ASC", new Listing(List.of(child), 1, null), stamp);
+        cache.putListing("f2", "NAME.ASC", new Listing(List.of(), 0, null), stamp);
+
+        // a change in f2 changes its size, as listed in f1, but nothing in root
+        cache.invalidate("f2");
+        assertTrue(cache.get("f1").isPresent());
+        assertTrue(cache.getListing("root", "NAME.ASC").isPresent());
+        assertFalse(cache.getListing("f1", "NAME.ASC").isPresent());
+        assertFalse(cache.getListing("f2", "NAME.ASC").isPresent());
+
+        cache.invalidate("f1");
+        assertFalse(cache.get("f1").isPresent());
+        assertFalse(cache.getListing("root", "NAME.ASC").isPresent());
+    }
+
+    @Test
+    public void testLoadRacingAnInvalidationIsNotCached() {
+        NodeCache cache = new NodeCache(100, Duration.ofMinutes(1), new MetricsServiceBean());
+        long stamp = cache.stamp();
+        cache.invalidate("f1");
+        cache.put(new Node(Node.Type.TREE, "root", "f1", "docs"), stamp);
+        assertFalse(cache.get("f1").isPresent());
+        cache.put(new Node(Node.Type.TREE, "root", "f1", "docs"), cache.stamp());
+        assertTrue(cache.get("f1").isPresent());
+    }
+
+}
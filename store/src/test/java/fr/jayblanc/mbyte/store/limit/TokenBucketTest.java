@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testBurstThenRate() {
+        TokenBucket bucket = new TokenBucket(10, 5, 0);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, bucket.tryAcquire(1, 0));
+        }
+        long wait = bucket.tryAcquire(1, 0);
+        assertEquals(SECOND / 10, wait);
+        assertEquals(0, bucket.tryAcquire(1, wait));
+        assertTrue(bucket.tryAcquire(1, wait) > 0);
+        assertFalse(bucket.isFull(wait));
+        assertTrue(bucket.isFull(SECOND));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, bucket.tryAcquire(1, 2 * SECOND));
+        }
+    }
+
+    @Test
+    public void testRejectedTokensAreNotTaken() {
+        TokenBucket bucket = new TokenBucket(1, 2, 0);
+        assertTrue(bucket.tryAcquire(3, 0) > 0);
+        assertEquals(0, bucket.tryAcquire(2, 0));
+    }
+
+    @Test
+    public void testReserveGoesInDebt() {
+        TokenBucket bucket = new TokenBucket(1000, 1000, 0);
+        assertEquals(0, bucket.reserve(1000, 0));
+        assertEquals(SECOND, bucket.reserve(1000, 0));
+        assertEquals(2 * SECOND, bucket.reserve(1000, 0));
+        assertTrue(bucket.tryAcquire(1, SECOND) > 0);
+    }
+
+    @Test
+    public void testConcurrentAcquire() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(0.001, 1000, 0);
+        AtomicInteger admitted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 5000; i++) {
+            executor.execute(() -> {
+                if (bucket.tryAcquire(1, 0) == 0) {
+                    admitted.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(1000, admitted.get());
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.upload;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class UploadServiceBeanTest {
+
+    private Path file;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        file = Files.createTempFile("mbyte-upload", ".data");
+        Files.write(file, new byte[8]);
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testOversizedChunkDoesNotSpill() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            // second chunk received first, then an oversized first chunk
+            assertTrue(UploadServiceBean.writeChunk(channel, 4, 4, stream("efgh")));
+            assertFalse(UploadServiceBean.writeChunk(channel, 0, 4, stream("abcdX")));
+        }
+        assertEquals(8, Files.size(file));
+        assertEquals("efgh", new String(Files.readAllBytes(file), 4, 4, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testLastChunkSize() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            assertFalse(UploadServiceBean.writeChunk(channel, 4, 4, stream("efghX")));
+            assertEquals(8, Files.size(file));
+            assertFalse(UploadServiceBean.writeChunk(channel, 4, 4, stream("efg")));
+            assertTrue(UploadServiceBean.writeChunk(channel, 4, 4, stream("efgh")));
+        }
+        assertEquals("efgh", new String(Files.readAllBytes(file), 4, 4, StandardCharsets.US_ASCII));
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.US_ASCII));
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.upload;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class UploadSessionTest {
+
+    @Test
+    public void testChunksLayout() {
+        UploadSession session = new UploadSession();
+        session.setSize(10);
+        session.setChunkSize(4);
+        assertEquals(3, session.getChunks());
+        assertEquals(0, session.getChunkOffset(0));
+        assertEquals(4, session.getChunkLength(0));
+        assertEquals(8, session.getChunkOffset(2));
+        assertEquals(2, session.getChunkLength(2));
+
+        session.setSize(8);
+        assertEquals(2, session.getChunks());
+        assertEquals(4, session.getChunkLength(1));
+    }
+
+    @Test
+    public void testCompletion() {
+        UploadSession session = new UploadSession();
+        session.setSize(10);
+        session.setChunkSize(4);
+        session.getReceived().add(2);
+        session.getReceived().add(0);
+        assertFalse(session.isComplete());
+        session.getReceived().add(1);
+        assertTrue(session.isComplete());
+
+        UploadSession empty = new UploadSession();
+        empty.setSize(0);
+        empty.setChunkSize(4);
+        assertEquals(0, empty.getChunks());
+        assertTrue(empty.isComplete());
+    }
+
+    @Test
+    public void testCopyIsIndependent() {
+        UploadSession session = new UploadSession();
+        session.setId("s1");
+        session.setSize(10);
+        session.setChunkSize(4);
+        session.getReceived().add(0);
+        UploadSession copy = session.copy();
+        session.getReceived().add(1);
+        session.setKey("abcd");
+        assertEquals("s1", copy.getId());
+        assertEquals(10, copy.getSize());
+        assertEquals(1, copy.getReceived().size());
+        assertNull(copy.getKey());
+    }
+
+    @Test
+    public void testChunksOverflow() {
+        assertEquals(2, UploadSession.chunks(Long.MAX_VALUE, Long.MAX_VALUE / 2 + 1));
+        assertTrue(UploadSession.chunks(1L << 40, 1) > Integer.MAX_VALUE);
+        UploadSession session = new UploadSession();
+        session.setSize(1L << 40);
+        session.setChunkSize(1);
+        assertThrows(ArithmeticException.class, session::getChunks);
+    }
+
+}